@@ -0,0 +1,115 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.RailflowLauncher;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ParseCommand;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import picocli.CommandLine;
+
+/**
+ * Measures the whole 'parse' sub command against a local Jira stub: reading the
+ * report, looking up the defects, and creating, commenting and closing them.
+ * Two reports of the same tests are parsed one after the other; the first run
+ * creates the defects of the failing test cases and the second one comments on
+ * the defects still failing and closes the ones now passing. The stub latency
+ * and its share of failed and throttled requests are set with the
+ * 'benchmark.latency-ms', 'benchmark.error-rate' and 'benchmark.throttle-rate'
+ * properties, and the report size with 'benchmark.testcases' and
+ * 'benchmark.failure-rate'. The results are printed and written to
+ * 'benchmark/e2e.json' in the build directory.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class EndToEndBenchmark {
+
+	private static final String customFieldId = "customfield_10034";
+
+	public static void main(String[] args) throws IOException {
+		int testCases = Integer.getInteger("benchmark.testcases", 100000);
+		double failureRate = Double.parseDouble(System.getProperty("benchmark.failure-rate", "0.05"));
+		long latencyMillis = Long.getLong("benchmark.latency-ms", 20);
+		double errorRate = Double.parseDouble(System.getProperty("benchmark.error-rate", "0"));
+		double throttleRate = Double.parseDouble(System.getProperty("benchmark.throttle-rate", "0"));
+		Path target = Paths.get(System.getProperty("benchmark.target", "target"));
+
+		Path workDirectory = Files.createTempDirectory("railflow-e2e");
+		Path firstReport = workDirectory.resolve("first-run.xml");
+		Path secondReport = workDirectory.resolve("second-run.xml");
+
+		// same tests, different outcomes
+		int suites = Math.max(1, testCases / 50);
+		new JUnitReportGenerator(suites, Math.min(50, testCases), failureRate, 42, 1).write(firstReport);
+		new JUnitReportGenerator(suites, Math.min(50, testCases), failureRate, 42, 2).write(secondReport);
+
+		// only warnings and errors of the application are printed
+		((Logger) LoggerFactory.getLogger("com.railflow")).setLevel(Level.WARN);
+
+		JSONObject results = new JSONObject().put("testCases", suites * Math.min(50, testCases))
+				.put("failureRate", failureRate).put("latencyMillis", latencyMillis).put("errorRate", errorRate)
+				.put("throttleRate", throttleRate);
+
+		try (JiraStub stub = new JiraStub(customFieldId, latencyMillis, errorRate, throttleRate)) {
+			System.setProperty("jira.api.instance", stub.getUrl());
+			System.setProperty("railflow.cache.dir", workDirectory.resolve("cache").toString());
+
+			try (AnnotationConfigApplicationContext context = RailflowLauncher.createContext()) {
+				System.out.println(String.format("%-12s %10s %12s %10s %10s %8s %8s", "run", "seconds", "testcases/s",
+						"requests", "requests/s", "429", "500"));
+
+				results.put("firstRun", run(context, stub, "first-run", firstReport, suites * Math.min(50, testCases)));
+				results.put("secondRun", run(context, stub, "second-run", secondReport, suites * Math.min(50, testCases)));
+				results.put("defects", stub.getIssues());
+			}
+		}
+
+		Path output = target.resolve("benchmark").resolve("e2e.json");
+		Files.createDirectories(output.getParent());
+		Files.write(output, results.toString(2).getBytes(StandardCharsets.UTF_8));
+		System.out.println(String.format("Results written to %s", output));
+	}
+
+	// parses the report with a new command line and prints the requests made
+	private static JSONObject run(AnnotationConfigApplicationContext context, JiraStub stub, String name, Path report,
+			int testCases) {
+		stub.resetCounters();
+		PrintStream out = System.out;
+		long startedAt = System.nanoTime();
+
+		try {
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			new CommandLine(context.getBean(ParseCommand.class)).parseWithHandler(new CommandLine.RunLast(),
+					new String[] { report.toString() });
+		} finally {
+			System.setOut(out);
+		}
+
+		double seconds = (System.nanoTime() - startedAt) / 1e9;
+		Map<String, Long> endpoints = stub.getRequestsByEndpoint();
+
+		System.out.println(String.format("%-12s %10.2f %12.0f %10s %10.0f %8s %8s", name, seconds, testCases / seconds,
+				stub.getRequests(), stub.getRequests() / seconds, stub.getThrottled(), stub.getErrors()));
+		endpoints.forEach((endpoint, count) -> System.out.println(String.format("    %-50s %8s", endpoint, count)));
+
+		return new JSONObject().put("seconds", seconds).put("testCasesPerSecond", testCases / seconds)
+				.put("requests", stub.getRequests()).put("requestsPerSecond", stub.getRequests() / seconds)
+				.put("throttled", stub.getThrottled()).put("errors", stub.getErrors()).put("endpoints", endpoints);
+	}
+
+}
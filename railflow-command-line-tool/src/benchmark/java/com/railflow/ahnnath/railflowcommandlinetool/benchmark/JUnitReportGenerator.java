@@ -0,0 +1,141 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes JUnit reports of any size for the benchmarks. Reports look like the
+ * ones written by Maven Surefire: every test suite is a class, and failing test
+ * cases carry a message, a stack trace and some standard output. The same seed
+ * always gives the same test cases, and the outcome seed decides which of them
+ * fail, so reports of successive runs of the same tests can be generated.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class JUnitReportGenerator {
+
+	private final int suites;
+	private final int testCasesPerSuite;
+	private final double failureRate;
+	private final long seed;
+	private final long outcomeSeed;
+
+	public JUnitReportGenerator(int suites, int testCasesPerSuite, double failureRate, long seed) {
+		this(suites, testCasesPerSuite, failureRate, seed, seed);
+	}
+
+	/**
+	 * @param suites            number of test suites.
+	 * @param testCasesPerSuite number of test cases of every suite.
+	 * @param failureRate       share of failing test cases, between 0 and 1.
+	 * @param seed              seed of the generated names and times.
+	 * @param outcomeSeed       seed of the failing test cases.
+	 **/
+	public JUnitReportGenerator(int suites, int testCasesPerSuite, double failureRate, long seed, long outcomeSeed) {
+		this.suites = suites;
+		this.testCasesPerSuite = testCasesPerSuite;
+		this.failureRate = failureRate;
+		this.seed = seed;
+		this.outcomeSeed = outcomeSeed;
+	}
+
+	/**
+	 * Writes a report to a file: {@code JUnitReportGenerator <file> <test cases>
+	 * [failure rate] [seed]}. Test suites have 50 test cases.
+	 **/
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: JUnitReportGenerator <file> <test cases> [failure rate] [seed]");
+			System.exit(1);
+		}
+
+		int testCases = Integer.parseInt(args[1]);
+		double failureRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+		JUnitReportGenerator generator = new JUnitReportGenerator(Math.max(1, testCases / 50),
+				Math.min(50, testCases), failureRate, seed);
+		generator.write(Paths.get(args[0]));
+		System.out.println(String.format("%s test cases written to %s", generator.getTestCases(), args[0]));
+	}
+
+	public int getTestCases() {
+		return suites * testCasesPerSuite;
+	}
+
+	public byte[] generate() {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(1 << 30, getTestCases() * 160L));
+			write(out);
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public void write(Path file) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			write(out);
+		}
+	}
+
+	public void write(OutputStream out) throws IOException {
+		Random random = new Random(seed);
+		Random outcomes = new Random(outcomeSeed);
+		Writer writer = new OutputStreamWriter(new BufferedOutputStream(out, 1 << 16), StandardCharsets.UTF_8);
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n");
+
+		for (int suite = 0; suite < suites; suite++) {
+			String className = String.format("io.railflow.module%s.Feature%sTest", suite % 17, suite);
+			StringBuilder testCases = new StringBuilder();
+			int failures = 0;
+			double suiteTime = 0;
+
+			for (int testCase = 0; testCase < testCasesPerSuite; testCase++) {
+				double time = random.nextInt(2000) / 1000.0;
+				suiteTime += time;
+
+				testCases.append(String.format(Locale.ROOT,
+						"    <testcase name=\"shouldHandleCase%s_%s\" classname=\"%s\" time=\"%.3f\"",
+						testCase, random.nextInt(1000), className, time));
+
+				if (outcomes.nextDouble() < failureRate) {
+					failures++;
+					testCases.append(">\n      <failure message=\"expected: &lt;true&gt; but was: &lt;false&gt;\" type=\"org.opentest4j.AssertionFailedError\"><![CDATA[org.opentest4j.AssertionFailedError: expected: <true> but was: <false>\n");
+					for (int frame = 0; frame < 12; frame++) {
+						testCases.append(String.format("\tat %s.shouldHandleCase%s(%sTest.java:%s)\n", className, testCase,
+								className, 40 + frame));
+					}
+					testCases.append("]]></failure>\n      <system-out><![CDATA[connecting to service\nretrying request\n]]></system-out>\n    </testcase>\n");
+				} else {
+					testCases.append("/>\n");
+				}
+			}
+
+			writer.write(String.format(Locale.ROOT,
+					"  <testsuite name=\"%s\" tests=\"%s\" failures=\"%s\" errors=\"0\" skipped=\"0\" time=\"%.3f\">\n",
+					className, testCasesPerSuite, failures, suiteTime));
+			writer.write("    <properties><property name=\"java.version\" value=\"11\"/></properties>\n");
+			writer.write(testCases.toString());
+			writer.write("  </testsuite>\n");
+		}
+
+		writer.write("</testsuites>\n");
+		writer.flush();
+	}
+
+}
@@ -0,0 +1,373 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Jira Cloud REST API, implementing the endpoints used
+ * by JiraApiService: issue search, single and bulk issue creation, metadata
+ * updates, comments, transitions and deletion. Issues are kept in memory. Every request can be
+ * delayed, and a share of them can fail with 500 or be throttled with 429 and
+ * a 'Retry-After' header, to see how the tool behaves against a slow or
+ * overloaded instance.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class JiraStub implements AutoCloseable {
+
+	private static final Pattern metadataPhrase = Pattern.compile("~'(?:\"(.*?)\"~0|([^'\"]+))'");
+	private static final Pattern statusEquals = Pattern.compile("status\\s*=\\s*'([^']*)'");
+	private static final Pattern statusIn = Pattern.compile("status in \\(([^)]*)\\)");
+	private static final Pattern issuePath = Pattern.compile("/rest/api/\\d/issue/([^/]+)(/(comment|transitions))?");
+
+	private static final String open = "To Do";
+	private static final String closed = "Done";
+	private static final String closeTransitionId = "31";
+	private static final String customFieldName = "railflow-metadata";
+
+	private final String customFieldId;
+	private final long latencyMillis;
+	private final double errorRate;
+	private final double throttleRate;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final Map<String, Issue> issues = new ConcurrentHashMap<String, Issue>();
+	private final Map<String, List<Issue>> issuesByMetadata = new ConcurrentHashMap<String, List<Issue>>();
+	private final AtomicLong nextId = new AtomicLong(10000);
+
+	private final Map<String, AtomicLong> requests = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+
+	/**
+	 * Starts the stub on a free local port.
+	 *
+	 * @param customFieldId id of the metadata custom field.
+	 * @param latencyMillis average delay of every response, in milliseconds.
+	 * @param errorRate     share of requests answered with 500.
+	 * @param throttleRate  share of requests answered with 429.
+	 **/
+	public JiraStub(String customFieldId, long latencyMillis, double errorRate, double throttleRate)
+			throws IOException {
+		this.customFieldId = customFieldId;
+		this.latencyMillis = latencyMillis;
+		this.errorRate = errorRate;
+		this.throttleRate = throttleRate;
+
+		this.executor = Executors.newFixedThreadPool(64, runnable -> {
+			Thread thread = new Thread(runnable, "jira-stub");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+		this.server.createContext("/rest/api/", this::handle);
+		this.server.setExecutor(executor);
+		this.server.start();
+	}
+
+	public String getUrl() {
+		return String.format("http://127.0.0.1:%s", server.getAddress().getPort());
+	}
+
+	public int getIssues() {
+		return issues.size();
+	}
+
+	public long getRequests() {
+		long total = 0;
+		for (AtomicLong count : requests.values()) {
+			total += count.get();
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of requests by endpoint, errors and throttled requests
+	 * included.
+	 **/
+	public Map<String, Long> getRequestsByEndpoint() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		requests.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+		return counts;
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getThrottled() {
+		return throttled.get();
+	}
+
+	public void resetCounters() {
+		requests.clear();
+		errors.set(0);
+		throttled.set(0);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		String endpoint = String.format("%s %s", method, path.replaceAll("/issue/\\d+", "/issue/{id}"));
+		requests.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+
+		try (InputStream in = exchange.getRequestBody()) {
+			String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			delay();
+
+			double fault = ThreadLocalRandom.current().nextDouble();
+			if (fault < throttleRate) {
+				throttled.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				respond(exchange, 429, new JSONObject().put("errorMessages", new JSONArray().put("Rate limit exceeded")));
+				return;
+			}
+			if (fault < throttleRate + errorRate) {
+				errors.incrementAndGet();
+				respond(exchange, 500, new JSONObject().put("errorMessages", new JSONArray().put("Internal error")));
+				return;
+			}
+
+			route(exchange, method, path, body);
+		} catch (RuntimeException e) {
+			respond(exchange, 400, new JSONObject().put("errorMessages", new JSONArray().put(String.valueOf(e))));
+		}
+	}
+
+	private void route(HttpExchange exchange, String method, String path, String body) throws IOException {
+		if (path.equals("/rest/api/3/search")) {
+			JSONObject query = "POST".equals(method) ? new JSONObject(body) : queryParameters(exchange);
+			respond(exchange, 200, search(query.getString("jql"), query.optInt("startAt", 0),
+					query.optInt("maxResults", 50)));
+			return;
+		}
+
+		if (path.equals("/rest/api/3/field")) {
+			respond(exchange, 200, new JSONArray()
+					.put(new JSONObject().put("id", "summary").put("name", "Summary").put("custom", false))
+					.put(new JSONObject().put("id", customFieldId).put("name", customFieldName).put("custom", true)));
+			return;
+		}
+
+		if (path.equals("/rest/api/3/issue/bulk") && "POST".equals(method)) {
+			JSONArray issueUpdates = new JSONObject(body).getJSONArray("issueUpdates");
+			JSONArray created = new JSONArray();
+			for (int i = 0; i < issueUpdates.length(); i++) {
+				created.put(toJson(create(issueUpdates.getJSONObject(i))));
+			}
+			respond(exchange, 201, new JSONObject().put("issues", created).put("errors", new JSONArray()));
+			return;
+		}
+
+		if (path.equals("/rest/api/3/issue") && "POST".equals(method)) {
+			respond(exchange, 201, toJson(create(new JSONObject(body))));
+			return;
+		}
+
+		Matcher matcher = issuePath.matcher(path);
+		if (!matcher.matches()) {
+			respond(exchange, 404, new JSONObject().put("errorMessages", new JSONArray().put("Not found")));
+			return;
+		}
+
+		Issue issue = issues.get(matcher.group(1));
+		String resource = matcher.group(3);
+		if (issue == null) {
+			respond(exchange, 404, new JSONObject().put("errorMessages", new JSONArray().put("Issue does not exist")));
+			return;
+		}
+
+		if ("comment".equals(resource)) {
+			respond(exchange, 201, new JSONObject().put("id", String.valueOf(nextId.incrementAndGet()))
+					.put("created", Instant.now().toString()));
+		} else if ("transitions".equals(resource) && "GET".equals(method)) {
+			respond(exchange, 200, new JSONObject().put("transitions",
+					new JSONArray().put(new JSONObject().put("id", "11").put("name", open))
+							.put(new JSONObject().put("id", closeTransitionId).put("name", closed))));
+		} else if ("transitions".equals(resource)) {
+			String transitionId = new JSONObject(body).getJSONObject("transition").getString("id");
+			if (!closeTransitionId.equals(transitionId)) {
+				respond(exchange, 400, new JSONObject().put("errorMessages", new JSONArray().put("Unknown transition")));
+				return;
+			}
+			issue.status = closed;
+			respond(exchange, 204, null);
+		} else if ("PUT".equals(method)) {
+			String metadata = new JSONObject(body).getJSONObject("fields").optString(customFieldId, null);
+			if (metadata != null) {
+				issuesByMetadata.getOrDefault(issue.metadata, new ArrayList<Issue>()).remove(issue);
+				issue.metadata = metadata;
+				issuesByMetadata.computeIfAbsent(metadata, key -> new CopyOnWriteArrayList<Issue>()).add(issue);
+			}
+			respond(exchange, 204, null);
+		} else if ("DELETE".equals(method)) {
+			issues.remove(issue.id);
+			issuesByMetadata.getOrDefault(issue.metadata, new ArrayList<Issue>()).remove(issue);
+			respond(exchange, 204, null);
+		} else {
+			respond(exchange, 200, toJson(issue));
+		}
+	}
+
+	/**
+	 * Answers the JQL queries made by JiraApiService: metadata phrases combined
+	 * with a status filter, and queries without phrases, which match every issue
+	 * that has metadata. The query that checks the custom field exists matches
+	 * one more issue without metadata.
+	 **/
+	private JSONObject search(String jql, int startAt, int maxResults) {
+		Set<String> statuses = new HashSet<String>();
+		Matcher status = statusEquals.matcher(jql);
+		while (status.find()) {
+			statuses.add(status.group(1));
+		}
+		Matcher statusList = statusIn.matcher(jql);
+		while (statusList.find()) {
+			for (String name : statusList.group(1).split(",")) {
+				statuses.add(name.trim().replace("'", ""));
+			}
+		}
+
+		List<Issue> matches = new ArrayList<Issue>();
+		Matcher phrase = metadataPhrase.matcher(jql);
+		boolean anyPhrase = false;
+
+		while (phrase.find()) {
+			anyPhrase = true;
+			String metadata = phrase.group(1) != null ? phrase.group(1) : phrase.group(2);
+			for (Issue issue : issuesByMetadata.getOrDefault(metadata, new ArrayList<Issue>())) {
+				if (statuses.isEmpty() || statuses.contains(issue.status)) {
+					matches.add(issue);
+				}
+			}
+		}
+		if (!anyPhrase) {
+			matches.addAll(issues.values());
+		}
+
+		int total = matches.size() + (jql.contains("' is EMPTY") ? 1 : 0);
+		JSONArray page = new JSONArray();
+		for (int i = startAt; i < Math.min(matches.size(), startAt + maxResults); i++) {
+			page.put(toJson(matches.get(i)));
+		}
+
+		return new JSONObject().put("startAt", startAt).put("maxResults", maxResults).put("total", total)
+				.put("issues", page);
+	}
+
+	private Issue create(JSONObject payload) {
+		JSONObject fields = payload.getJSONObject("fields");
+		long id = nextId.incrementAndGet();
+		Issue issue = new Issue(String.valueOf(id),
+				String.format("%s-%s", fields.getJSONObject("project").getString("key"), id),
+				fields.optString(customFieldId, null));
+
+		issues.put(issue.id, issue);
+		if (issue.metadata != null) {
+			issuesByMetadata.computeIfAbsent(issue.metadata, key -> new CopyOnWriteArrayList<Issue>()).add(issue);
+		}
+		return issue;
+	}
+
+	private JSONObject toJson(Issue issue) {
+		JSONObject fields = new JSONObject().put("status", new JSONObject().put("name", issue.status));
+		if (issue.metadata != null) {
+			fields.put(customFieldId, issue.metadata);
+		}
+		return new JSONObject().put("id", issue.id).put("key", issue.key).put("fields", fields);
+	}
+
+	private void delay() {
+		if (latencyMillis <= 0) {
+			return;
+		}
+		try {
+			// between half and one and a half times the average latency
+			Thread.sleep(latencyMillis / 2 + ThreadLocalRandom.current().nextLong(latencyMillis + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static JSONObject queryParameters(HttpExchange exchange) {
+		JSONObject parameters = new JSONObject();
+		String query = exchange.getRequestURI().getRawQuery();
+
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int separator = parameter.indexOf('=');
+				if (separator > 0) {
+					parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+							URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return parameters;
+	}
+
+	private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static final class Issue {
+
+		private final String id;
+		private final String key;
+		private volatile String metadata;
+		private volatile String status = open;
+
+		private Issue(String id, String key, String metadata) {
+			this.id = id;
+			this.key = key;
+			this.metadata = metadata;
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+
+/**
+ * Measures the construction of the metadata key of a test case, which is done
+ * once per test case of every report. 'metadata' builds the legacy key,
+ * 'fingerprint' the default hash of the class name and test name, and
+ * 'concat' the legacy key with plain concatenation as a reference for the cost
+ * of 'String.format'.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+	private final TestSuiteResult suite = new TestSuiteResult(1, "io.railflow.module3.Feature42Test", "50", "12.345", 2);
+	private final MetadataFingerprint fingerprint = MetadataFingerprint.of("classname,name");
+	private int index = 0;
+
+	@Benchmark
+	public String metadata() {
+		return new TestCaseResult(suite, ++index, "shouldHandleCase7_345", "io.railflow.module3.Feature42Test", false)
+				.getMetadata();
+	}
+
+	@Benchmark
+	public String fingerprint() {
+		return new TestCaseResult(suite, ++index, "shouldHandleCase7_345", "io.railflow.module3.Feature42Test", false,
+				fingerprint).getMetadata();
+	}
+
+	@Benchmark
+	public String concat() {
+		TestCaseResult testCase = new TestCaseResult(suite, ++index, "shouldHandleCase7_345",
+				"io.railflow.module3.Feature42Test", false);
+		return suite.getName() + "-" + suite.getTests() + "-" + suite.getTime() + "-" + testCase.getName() + "-"
+				+ testCase.getClassName();
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ReconciliationPipeline;
+import com.railflow.ahnnath.railflowcommandlinetool.util.JUnitStreamReader;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Measures the parsing throughput of the path used by DomParser: the streaming
+ * reader alone, and the reader feeding a reconciliation pipeline whose batches
+ * are discarded. Reports are read from memory, so disk access is not measured.
+ * The bundled reports are read from 'benchmark.reports' (the 'test files'
+ * directory of the repository by default); the generated ones have 1,000 and
+ * 20,000 test cases with 5% failures.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "junit.xml", "junit_f.xml", "generated-1000", "generated-20000" })
+	public String report;
+
+	private byte[] content;
+	private final JUnitStreamReader reader = new JUnitStreamReader();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if (report.startsWith("generated-")) {
+			int testCases = Integer.parseInt(report.substring("generated-".length()));
+			content = new JUnitReportGenerator(testCases / 50, 50, 0.05, 42).generate();
+		} else {
+			content = Files.readAllBytes(Paths.get(System.getProperty("benchmark.reports", "../resources/test files"), report));
+		}
+	}
+
+	@Benchmark
+	public void read(Blackhole blackhole) throws IOException, XMLStreamException, UnirestException {
+		reader.read(new ByteArrayInputStream(content), new TestCaseListener() {
+
+			@Override
+			public void onTestSuite(TestSuiteResult testSuite) {
+				blackhole.consume(testSuite);
+			}
+
+			@Override
+			public void onTestCase(TestCaseResult testCase) {
+				blackhole.consume(testCase.getMetadata());
+			}
+		});
+	}
+
+	@Benchmark
+	public void readThroughPipeline(Blackhole blackhole)
+			throws IOException, XMLStreamException, UnirestException, InterruptedException {
+		try (ReconciliationPipeline pipeline = new ReconciliationPipeline(
+				(batch, changes) -> blackhole.consume(batch.size()), 4, 2000, 500)) {
+			reader.read(new ByteArrayInputStream(content), new TestCaseListener() {
+
+				@Override
+				public void onTestSuite(TestSuiteResult testSuite) {
+					blackhole.consume(testSuite);
+				}
+
+				@Override
+				public void onTestCase(TestCaseResult testCase) throws IOException {
+					try {
+						pipeline.submit(testCase);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+			});
+		}
+	}
+
+}
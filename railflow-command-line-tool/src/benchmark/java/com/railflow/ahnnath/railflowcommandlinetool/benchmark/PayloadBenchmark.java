@@ -0,0 +1,65 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+
+/**
+ * Measures the JSON payloads sent to Jira to create and close defects, built
+ * and serialized to the request body.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+
+	private final JiraApiService jiraService = new JiraApiService();
+	private final String metadata = "io.railflow.module3.Feature42Test-50-12.345-shouldHandleCase7_345-io.railflow.module3.Feature42Test";
+
+	@Setup(Level.Trial)
+	public void setUp() throws ReflectiveOperationException {
+		// the values are injected by Spring in the application
+		setField("targetProject", "CXJI");
+		setField("apiCustomField", "railflow-metadata");
+		setField("apiCustomFieldId", "customfield_10034");
+	}
+
+	@Benchmark
+	public String createDefectPayload() {
+		return jiraService.buildDefectPayload(metadata, "shouldHandleCase7_345 io.railflow.module3.Feature42Test")
+				.toString();
+	}
+
+	@Benchmark
+	public String closeIssuePayload() {
+		return jiraService.buildClosePayload("31").toString();
+	}
+
+	private void setField(String name, String value) throws ReflectiveOperationException {
+		Field field = JiraApiService.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(jiraService, value);
+	}
+
+}
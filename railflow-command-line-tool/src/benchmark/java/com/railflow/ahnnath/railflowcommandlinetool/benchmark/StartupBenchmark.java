@@ -0,0 +1,105 @@
+package com.railflow.ahnnath.railflowcommandlinetool.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Measures the cold start of the command line utility: the wall-clock time of
+ * a new JVM (or native process) that runs 'railflow-cli -v' and exits. Every
+ * launch path found in the build directory is measured: the Spring Boot
+ * application, the launcher without Spring Boot, the launcher with the AppCDS
+ * archive of the 'appcds' profile and the image of the 'native' profile. The
+ * results are printed and written to 'benchmark/startup.json' in the build
+ * directory so they can be compared between builds.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class StartupBenchmark {
+
+	private static final String bootApplication = "com.railflow.ahnnath.railflowcommandlinetool.RailflowCommandLineToolApplication";
+	private static final String launcher = "com.railflow.ahnnath.railflowcommandlinetool.RailflowLauncher";
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int iterations = Integer.getInteger("benchmark.iterations", 10);
+		Path target = Paths.get(System.getProperty("benchmark.target", "target"));
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		String classpath = System.getProperty("java.class.path");
+
+		Map<String, List<String>> commands = new LinkedHashMap<String, List<String>>();
+		commands.put("spring-boot", Arrays.asList(java, "-cp", classpath, bootApplication, "-v"));
+		commands.put("launcher", Arrays.asList(java, "-cp", classpath, launcher, "-v"));
+
+		File[] cliJars = target.toFile().listFiles((directory, name) -> name.endsWith("-cli.jar"));
+		Path archive = target.resolve("railflow-cli.jsa");
+		if (cliJars != null && cliJars.length > 0 && Files.exists(archive)) {
+			commands.put("launcher-appcds", Arrays.asList(java, String.format("-XX:SharedArchiveFile=%s", archive),
+					"-jar", cliJars[0].getPath(), "-v"));
+		}
+
+		Path image = target.resolve("railflow-cli");
+		if (Files.isExecutable(image)) {
+			commands.put("native", Arrays.asList(image.toString(), "-v"));
+		}
+
+		JSONArray results = new JSONArray();
+		System.out.println(String.format("%-16s %8s %8s %8s %8s", "launch", "min", "median", "p90", "max"));
+
+		for (Map.Entry<String, List<String>> command : commands.entrySet()) {
+			// the first start warms the page cache and is not measured
+			run(command.getValue());
+
+			long[] millis = new long[iterations];
+			for (int i = 0; i < iterations; i++) {
+				millis[i] = run(command.getValue());
+			}
+			Arrays.sort(millis);
+
+			long median = millis[iterations / 2];
+			long p90 = millis[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.9) - 1)];
+			System.out.println(String.format("%-16s %6s ms %6s ms %6s ms %6s ms", command.getKey(), millis[0], median,
+					p90, millis[iterations - 1]));
+
+			results.put(new JSONObject().put("launch", command.getKey()).put("iterations", iterations)
+					.put("minMillis", millis[0]).put("medianMillis", median).put("p90Millis", p90)
+					.put("maxMillis", millis[iterations - 1]));
+		}
+
+		Path output = target.resolve("benchmark").resolve("startup.json");
+		Files.createDirectories(output.getParent());
+		Files.write(output, results.toString(2).getBytes(StandardCharsets.UTF_8));
+		System.out.println(String.format("Results written to %s", output));
+	}
+
+	// starts the process and returns the milliseconds until it exited
+	private static long run(List<String> command) throws IOException, InterruptedException {
+		List<String> arguments = new ArrayList<String>(command);
+		long startedAt = System.nanoTime();
+
+		Process process = new ProcessBuilder(arguments).redirectErrorStream(true)
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+		int exitCode = process.waitFor();
+		long millis = (System.nanoTime() - startedAt) / 1_000_000;
+
+		if (exitCode != 0) {
+			throw new IllegalStateException(String.format("%s exited with code %s", command, exitCode));
+		}
+
+		return millis;
+	}
+
+}
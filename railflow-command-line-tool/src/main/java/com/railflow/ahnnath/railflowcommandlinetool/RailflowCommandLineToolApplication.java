@@ -5,8 +5,12 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ApplyCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.FlushCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.MigrateCommand;
 import com.railflow.ahnnath.railflowcommandlinetool.commands.ParseCommand;
 import com.railflow.ahnnath.railflowcommandlinetool.commands.RailflowCliCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ServeCommand;
 
 import picocli.CommandLine;
 
@@ -30,17 +34,31 @@ public class RailflowCommandLineToolApplication implements CommandLineRunner {
 
 	private RailflowCliCommand mainCommand;
 	private ParseCommand parseCommand;
+	private ApplyCommand applyCommand;
+	private ServeCommand serveCommand;
+	private MigrateCommand migrateCommand;
+	private FlushCommand flushCommand;
 
 	@Autowired
-	public RailflowCommandLineToolApplication(RailflowCliCommand mainCommand, ParseCommand parseCommand) {
+	public RailflowCommandLineToolApplication(RailflowCliCommand mainCommand, ParseCommand parseCommand,
+			ApplyCommand applyCommand, ServeCommand serveCommand, MigrateCommand migrateCommand,
+			FlushCommand flushCommand) {
 		this.mainCommand = mainCommand;
 		this.parseCommand = parseCommand;
+		this.applyCommand = applyCommand;
+		this.serveCommand = serveCommand;
+		this.migrateCommand = migrateCommand;
+		this.flushCommand = flushCommand;
 	}
 
 	@Override
 	public void run(String... args) throws Exception {
 		CommandLine commandLine = new CommandLine(mainCommand);
 		commandLine.addSubcommand("parse", parseCommand);
+		commandLine.addSubcommand("apply", applyCommand);
+		commandLine.addSubcommand("serve", serveCommand);
+		commandLine.addSubcommand("migrate", migrateCommand);
+		commandLine.addSubcommand("flush", flushCommand);
 
 		commandLine.parseWithHandler(new CommandLine.RunLast(), args);
 
@@ -0,0 +1,100 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.TestRailsApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransportConfiguration;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ApplyCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.FlushCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.MigrateCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ParseCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.RailflowCliCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ServeCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ActionExecutor;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.CommentThrottle;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.DefectReconciler;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.JiraResultSink;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.JsonExportSink;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.TestRailReporter;
+import com.railflow.ahnnath.railflowcommandlinetool.serve.IngestService;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionOutbox;
+import com.railflow.ahnnath.railflowcommandlinetool.store.CommentLedger;
+import com.railflow.ahnnath.railflowcommandlinetool.store.DefectIndex;
+import com.railflow.ahnnath.railflowcommandlinetool.store.JiraFieldCache;
+import com.railflow.ahnnath.railflowcommandlinetool.store.OutcomeStore;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ParseResultCache;
+import com.railflow.ahnnath.railflowcommandlinetool.store.TestRailCaseCache;
+import com.railflow.ahnnath.railflowcommandlinetool.util.DomParser;
+import com.railflow.ahnnath.railflowcommandlinetool.util.FingerprintConfiguration;
+
+import picocli.CommandLine;
+
+/**
+ * Starts the command line utility without Spring Boot. The components are
+ * registered one by one in a plain application context, so there is no
+ * classpath scanning and no auto-configuration, and the properties are read
+ * from 'application.properties' and the system properties only. This is the
+ * main class of the 'cli' jar, the AppCDS archive and the native image built
+ * by the 'appcds' and 'native' profiles.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class RailflowLauncher {
+
+	// every component of the application; new components must be added here
+	static final Class<?>[] components = { RunMetrics.class, HttpTransportConfiguration.class,
+			FingerprintConfiguration.class, DefectIndex.class, CommentLedger.class, ParseResultCache.class,
+			OutcomeStore.class, ActionJournal.class, ActionOutbox.class, TestRailCaseCache.class, JiraFieldCache.class,
+			JiraApiService.class, TestRailsApiService.class, CommentThrottle.class, ActionExecutor.class,
+			DefectReconciler.class, TestRailReporter.class, JiraResultSink.class, JsonExportSink.class, DomParser.class,
+			IngestService.class, RailflowCliCommand.class, ParseCommand.class, ApplyCommand.class, ServeCommand.class,
+			MigrateCommand.class, FlushCommand.class };
+
+	private RailflowLauncher() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Spring Boot configures logging on the other path
+		if (System.getProperty("logback.configurationFile") == null) {
+			System.setProperty("logback.configurationFile", "railflow-logback.xml");
+		}
+
+		try (AnnotationConfigApplicationContext context = createContext()) {
+			CommandLine commandLine = new CommandLine(context.getBean(RailflowCliCommand.class));
+			commandLine.addSubcommand("parse", context.getBean(ParseCommand.class));
+			commandLine.addSubcommand("apply", context.getBean(ApplyCommand.class));
+			commandLine.addSubcommand("serve", context.getBean(ServeCommand.class));
+			commandLine.addSubcommand("migrate", context.getBean(MigrateCommand.class));
+			commandLine.addSubcommand("flush", context.getBean(FlushCommand.class));
+
+			commandLine.parseWithHandler(new CommandLine.RunLast(), args);
+		}
+	}
+
+	/**
+	 * Creates the context with every component of the application. System
+	 * properties take precedence over 'application.properties'.
+	 **/
+	public static AnnotationConfigApplicationContext createContext() throws IOException {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources()
+				.addLast(new ResourcePropertySource("classpath:application.properties"));
+
+		context.registerBean(PropertySourcesPlaceholderConfigurer.class);
+		context.register(components);
+		context.refresh();
+
+		return context;
+	}
+
+}
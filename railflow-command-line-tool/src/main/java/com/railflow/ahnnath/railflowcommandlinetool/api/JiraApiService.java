@@ -1,30 +1,54 @@
 package com.railflow.ahnnath.railflowcommandlinetool.api;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.JsonNode;
-import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.NewDefect;
+import com.railflow.ahnnath.railflowcommandlinetool.store.DefectIndex;
+import com.railflow.ahnnath.railflowcommandlinetool.store.JiraFieldCache;
 
 /**
  * Contains methods and attributes that help make API with the Jira Cloud
- * Platform REST API.
- * 
+ * Platform REST API. Requests are sent through the shared
+ * {@link HttpTransport}; the methods that reconcile defects also come in
+ * non-blocking variants that return a {@link CompletableFuture}.
+ *
  * @author ahn-nath
- * @version 2.0
+ * @version 3.0
  * @since 1.0
- * 
+ *
  **/
 @Service
 public class JiraApiService {
@@ -44,46 +68,179 @@ public class JiraApiService {
 	@Value("${jira.api.custom-field-name}")
 	private String apiCustomField;
 
+	@Value("${jira.api.custom-field-id:}")
+	private String configuredCustomFieldId;
+
+	@Value("${jira.api.search.keys-per-query:50}")
+	private int keysPerQuery;
+
+	@Value("${jira.api.bulk-create-size:50}")
+	private int bulkCreateSize;
+
+	@Value("${jira.api.transitions.cache-size:64}")
+	private int transitionCacheSize;
+
+	@Value("${jira.api.transitions.cache-ttl-minutes:60}")
+	private long transitionCacheTtlMinutes;
+
+	@Value("${railflow.index.enabled:true}")
+	private boolean indexEnabled;
+
+	@Value("${railflow.index.full-sync-hours:168}")
+	private long fullSyncHours;
+
+	@Autowired
+	DefectIndex defectIndex;
+
+	@Autowired
+	JiraFieldCache fieldCache;
+
+	@Autowired
+	HttpTransport transport;
+
+	@Autowired
+	RunMetrics metrics;
+
 	private static final String open = "To Do";
 	private static final String closed = "Done";
 	private static final String resolutionName = "Done";
+	private static final String issueTypeName = "Bug";
+
+	private static final int searchPageSize = 100;
+
+	// maximum number of issues accepted by the bulk create endpoint
+	private static final int bulkCreateLimit = 50;
+
+	// extra minutes queried on incremental syncs to cover clock differences
+	private static final long syncOverlapMinutes = 5;
 
 	private static Logger logger = LoggerFactory.getLogger(JiraApiService.class);
-	private static ObjectMapper mapper = new ObjectMapper();
+
+	private TransitionCache transitionCache;
+	private String authorization;
+
+	// id of the metadata custom field, once configured or looked up
+	private volatile String apiCustomFieldId;
+
+	@PostConstruct
+	void init() {
+		transitionCache = new TransitionCache(transitionCacheSize, transitionCacheTtlMinutes);
+		authorization = String.format("Basic %s", Base64.getEncoder()
+				.encodeToString(String.format("%s:%s", apiEmail, apiToken).getBytes(StandardCharsets.UTF_8)));
+
+		if (configuredCustomFieldId != null && !configuredCustomFieldId.trim().isEmpty()) {
+			apiCustomFieldId = configuredCustomFieldId.trim();
+		}
+	}
 
 	/**
-	 * Receives the a custom issue field to check for and looks via JQL search on a
-	 * given Jira instance. If any result was found, it means the custom field is
-	 * present/exist.If custom field exist, the method returns true, otherwise it
-	 * returns false.
+	 * Receives the name of a custom issue field and looks for it in the fields of
+	 * the Jira instance. If the field exist, its id is kept, with the one of the
+	 * metadata field used by the requests of this service, and the method returns
+	 * true; otherwise it returns false. Ids found are cached on disk by the
+	 * {@link JiraFieldCache}, so most runs do not request the fields at all. A
+	 * 'jira.api.custom-field-id' that is set is used as the id of the metadata
+	 * field without looking it up.
 	 *
-	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issue-search/#api-rest-api-3-search-get
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issue-fields/#api-rest-api-3-field-get
 	 * @param apiCustomField to look for.
-	 * 
+	 *
 	 * @return boolean with the final outcome.
 	 * @throws UnirestException
-	 * 
+	 *
 	 *
 	 **/
 	public boolean doesRequiredCustomFieldExist(String apiCustomField) throws UnirestException {
-		int status;
-		boolean anyValues = false;
+		return resolveCustomFieldId(apiCustomField) != null;
+	}
 
-		// make GET request to check if custom field exist
-		HttpResponse<JsonNode> response = Unirest.get(String.format("%s/rest/api/3/search", apiInstanceUrl))
-				.basicAuth(apiEmail, apiToken).header("Accept", "application/json")
-				.queryString("jql", String.format("'%s' is not EMPTY OR '%s' is EMPTY", apiCustomField, apiCustomField))
-				.asJson();
+	/**
+	 * Resolves the id of the metadata custom field, like
+	 * {@link #doesRequiredCustomFieldExist(String)}, before a command sends the
+	 * requests that use it, so they never look it up themselves. When the field
+	 * does not exist or could not be looked up, the reason is logged and the
+	 * method returns false.
+	 *
+	 * @return boolean with the final outcome.
+	 **/
+	public boolean verifyRequiredCustomField() {
+		logger.info(String.format("Verifying if required custom field <%s> exist in %s", apiCustomField,
+				apiInstanceUrl));
 
-		// parse response
-		status = response.getStatus();
-		if (status == 200) {
-			JsonNode jsonNode = response.getBody();
-			anyValues = jsonNode.getObject().getInt("total") > 0 ? true : false;
+		try {
+			if (doesRequiredCustomFieldExist(apiCustomField)) {
+				logger.info(String.format("Successfully verified. The required custom field <%s> exist in %s",
+						apiCustomField, apiInstanceUrl));
+				return true;
+			}
+
+			logger.info(String.format(
+					"Unsuccessfully verified. The required custom field does not seem to exist in %s. Please create a custom field with name '%s' and try again",
+					apiInstanceUrl, apiCustomField));
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
+			logger.debug(e.getMessage());
 		}
 
-		return anyValues;
+		return false;
+	}
 
+	/**
+	 * Returns the id of the metadata custom field, such as 'customfield_10034',
+	 * resolved by {@link #verifyRequiredCustomField()}. The field is never looked
+	 * up here, since the requests that use it are built on other threads.
+	 *
+	 * @throws IllegalStateException if the id of the field was not resolved.
+	 **/
+	public String getCustomFieldId() {
+		String id = apiCustomFieldId;
+		if (id == null) {
+			throw new IllegalStateException(String.format(
+					"The id of the custom field '%s' was not resolved. Please create a custom field with name '%s' in %s and try again",
+					apiCustomField, apiCustomField, apiInstanceUrl));
+		}
+		return id;
+	}
+
+	// returns the id of a custom field by name, from the cache or from Jira
+	private synchronized String resolveCustomFieldId(String fieldName) throws UnirestException {
+		boolean metadataField = fieldName.equals(apiCustomField);
+		if (metadataField && apiCustomFieldId != null) {
+			return apiCustomFieldId;
+		}
+
+		String id = fieldCache.load(apiInstanceUrl, fieldName);
+		if (id == null) {
+			id = findCustomFieldId(fieldName);
+			if (id != null) {
+				fieldCache.save(apiInstanceUrl, fieldName, id);
+			}
+		}
+
+		if (metadataField && id != null) {
+			apiCustomFieldId = id;
+		}
+		return id;
+	}
+
+	// looks for a custom field by name in the fields of the instance
+	private String findCustomFieldId(String fieldName) throws UnirestException {
+		TransportResponse response = await(transport.sendAsync(get("/rest/api/3/field")));
+		if (response.getStatus() != 200) {
+			logger.info(String.format("Something happened and the fields of %s were not retrieved", apiInstanceUrl));
+			return null;
+		}
+
+		JSONArray fields = response.getJsonArray();
+		for (int i = 0; i < fields.length(); i++) {
+			JSONObject field = fields.getJSONObject(i);
+
+			if (field.optBoolean("custom") && fieldName.equalsIgnoreCase(field.optString("name"))) {
+				return field.getString("id");
+			}
+		}
+
+		return null;
 	}
 
 	/**
@@ -96,34 +253,334 @@ public class JiraApiService {
 	 * @param issueMetadata metadata to look for.
 	 * @param issueStatus   parameter used to filter by 'open' and 'closed'
 	 *                      issues/defects.
-	 * @return String object with issue id.
+	 * @return String object with issue id. When the defect index has been
+	 *         synchronized the issue is looked up locally.
 	 * @throws UnirestException
 	 * @throws JsonProcessingException
-	 * 
+	 *
 	 *
 	 **/
 	public String findDefectByStatus(String issueMetadata, int issueStatus)
 			throws UnirestException, JsonProcessingException {
-		int status = 500;
-		String issueId = null;
+		return await(findDefectByStatusAsync(issueMetadata, issueStatus));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #findDefectByStatus(String, int)}.
+	 *
+	 * @param issueMetadata metadata to look for.
+	 * @param issueStatus   parameter used to filter by 'open' and 'closed'
+	 *                      issues/defects.
+	 * @return CompletableFuture completed with the issue id, or null.
+	 **/
+	public CompletableFuture<String> findDefectByStatusAsync(String issueMetadata, int issueStatus) {
 		String issueType = issueStatus == 1 ? open : closed;
 
+		// once synchronized, the local index answers without a request
+		if (defectIndex.isSynced()) {
+			return CompletableFuture.completedFuture(defectIndex.find(issueMetadata, issueType));
+		}
+
 		// make GET request to retrieve specified defect/bug by status and metadata
-		HttpResponse<JsonNode> response = Unirest.get(String.format("%s/rest/api/3/search", apiInstanceUrl))
-				.basicAuth(apiEmail, apiToken).header("Accept", "application/json")
-				.queryString("jql",
-						String.format("'%s'~'\"%s\"~0'AND status='%s'", apiCustomField, issueMetadata, issueType))
-				.asJson();
+		return transport.sendAsync(get("/rest/api/3/search").queryString("jql",
+				String.format("%s AND status='%s'", buildMetadataClause(issueMetadata), issueType)))
+				.thenApply(response -> {
+					String issueId = null;
 
-		// parse response
-		status = response.getStatus();
-		if (status == 200) {
-			JsonNode jsonNode = response.getBody();
-			issueId = jsonNode.getObject().getInt("total") == 0 ? null
-					: jsonNode.getObject().getJSONArray("issues").getJSONObject(0).getString("id");
+					// parse response
+					if (response.getStatus() == 200) {
+						JSONObject body = response.getJson();
+						issueId = body.getInt("total") == 0 ? null
+								: body.getJSONArray("issues").getJSONObject(0).getString("id");
+					}
+
+					return issueId;
+				});
+	}
+
+	/**
+	 * Receives a collection of issue metadata values and looks for the open and
+	 * closed defects that match them. The values are split in chunks of
+	 * 'jira.api.search.keys-per-query' that are resolved with one paginated JQL
+	 * search each, so a whole report can be resolved with a few requests. The
+	 * chunks are searched concurrently. Values without any defect are not present
+	 * in the returned map.
+	 *
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issue-search/#api-rest-api-3-search-post
+	 * @param issueMetadata metadata values to look for.
+	 * @return Map object with the defects found by metadata.
+	 * @throws UnirestException
+	 *
+	 *
+	 **/
+	public Map<String, DefectLookup> findDefectsByMetadata(Collection<String> issueMetadata) throws UnirestException {
+		Map<String, DefectLookup> defects = new HashMap<String, DefectLookup>();
+
+		// once synchronized, the local index answers without any request
+		if (defectIndex.isSynced()) {
+			for (String metadata : issueMetadata) {
+				String openIssueId = defectIndex.find(metadata, open);
+				String closedIssueId = defectIndex.find(metadata, closed);
+
+				if (openIssueId != null || closedIssueId != null) {
+					defects.put(metadata, new DefectLookup(openIssueId, closedIssueId));
+				}
+			}
+			return defects;
+		}
+
+		List<String> keys = new ArrayList<String>(new HashSet<String>(issueMetadata));
+		List<CompletableFuture<Map<String, DefectLookup>>> chunks = new ArrayList<CompletableFuture<Map<String, DefectLookup>>>();
+
+		for (int from = 0; from < keys.size(); from += keysPerQuery) {
+			chunks.add(findDefectsChunkAsync(keys.subList(from, Math.min(from + keysPerQuery, keys.size()))));
+		}
+
+		for (CompletableFuture<Map<String, DefectLookup>> chunk : chunks) {
+			defects.putAll(await(chunk));
+		}
+
+		return defects;
+	}
+
+	/**
+	 * Resolves a chunk of metadata values with a single paginated JQL search. The
+	 * phrase search may return issues with similar metadata, so values are
+	 * compared for equality.
+	 **/
+	private CompletableFuture<Map<String, DefectLookup>> findDefectsChunkAsync(List<String> chunk) {
+		Set<String> expected = new HashSet<String>(chunk);
+		Map<String, DefectLookup> defects = new HashMap<String, DefectLookup>();
+		String customFieldId = getCustomFieldId();
+
+		return searchIssuesAsync(buildMetadataJql(chunk), 0, issue -> {
+			JSONObject fields = issue.getJSONObject("fields");
+			String metadata = fields.optString(customFieldId, null);
+
+			if (metadata != null && expected.contains(metadata)) {
+				DefectLookup defect = defects.computeIfAbsent(metadata, key -> new DefectLookup());
+				String statusName = fields.getJSONObject("status").getString("name");
+
+				if (open.equals(statusName) && defect.getOpenIssueId() == null) {
+					defect.setOpenIssueId(issue.getString("id"));
+				} else if (closed.equals(statusName) && defect.getClosedIssueId() == null) {
+					defect.setClosedIssueId(issue.getString("id"));
+				}
+			}
+		}).thenApply(complete -> defects);
+	}
+
+	/**
+	 * Builds the JQL query that matches any of the given metadata values in either
+	 * an open or closed status.
+	 **/
+	private String buildMetadataJql(List<String> keys) {
+		StringBuilder jql = new StringBuilder("(");
+
+		for (int i = 0; i < keys.size(); i++) {
+			if (i > 0) {
+				jql.append(" OR ");
+			}
+			jql.append(buildMetadataClause(keys.get(i)));
+		}
+
+		return jql.append(String.format(") AND status in ('%s','%s')", open, closed)).toString();
+	}
+
+	/**
+	 * Builds the JQL clause that matches a metadata value. Text fields only
+	 * support text search, so a fingerprint is searched as a single term, which
+	 * Jira resolves from its index, and legacy metadata as an exact phrase.
+	 **/
+	private String buildMetadataClause(String metadata) {
+		if (MetadataFingerprint.isFingerprint(metadata)) {
+			return String.format("'%s'~'%s'", apiCustomField, metadata);
+		}
+
+		return String.format("'%s'~'\"%s\"~0'", apiCustomField, metadata);
+	}
+
+	/**
+	 * Retrieves the metadata of every issue of the target project that has any,
+	 * for example to migrate it to another format.
+	 *
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issue-search/#api-rest-api-3-search-post
+	 * @return Map object with the metadata by issue id.
+	 * @throws UnirestException
+	 *
+	 **/
+	public Map<String, String> findDefectMetadata() throws UnirestException {
+		return findDefectMetadata(false);
+	}
+
+	/**
+	 * Retrieves the metadata of the issues of the target project that have any,
+	 * or of the open ones only.
+	 *
+	 * @param openOnly whether to leave out the issues that are not open.
+	 * @return Map object with the metadata by issue id.
+	 * @throws UnirestException
+	 *
+	 **/
+	public Map<String, String> findDefectMetadata(boolean openOnly) throws UnirestException {
+		Map<String, String> metadataByIssueId = new LinkedHashMap<String, String>();
+		String jql = String.format("project = '%s' AND '%s' is not EMPTY", targetProject.trim(), apiCustomField);
+		if (openOnly) {
+			jql = String.format("%s AND status = '%s'", jql, open);
+		}
+		String customFieldId = getCustomFieldId();
+
+		await(searchIssuesAsync(jql, 0, issue -> {
+			String metadata = issue.getJSONObject("fields").optString(customFieldId, null);
+
+			if (metadata != null) {
+				metadataByIssueId.put(issue.getString("id"), metadata);
+			}
+		}));
+
+		return metadataByIssueId;
+	}
+
+	/**
+	 * Replaces the metadata stored in the custom field of an issue. The issue is
+	 * not re-indexed: its update time changes, so the next sync of the defect
+	 * index retrieves it again.
+	 *
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issues/#api-rest-api-3-issue-issueidorkey-put
+	 * @param issueId  id corresponding to the issue to be updated.
+	 * @param metadata new metadata value.
+	 * @return CompletableFuture completed with true if the issue was updated.
+	 **/
+	public CompletableFuture<Boolean> updateDefectMetadataAsync(String issueId, String metadata) {
+		JSONObject payload = new JSONObject().put("fields", new JSONObject().put(getCustomFieldId(), metadata));
+
+		return transport.sendAsync(put(String.format("/rest/api/3/issue/%s", issueId), payload))
+				.thenApply(response -> {
+					int status = response.getStatus();
+					if (status == 200 || status == 204) {
+						return true;
+					}
+
+					logger.info(String.format("Something happened and the metadata of the issue [%s] was not updated",
+							issueId));
+					return false;
+				});
+	}
+
+	/**
+	 * Runs a JQL search page by page and passes every issue found to the handler.
+	 * Pages are requested one after the other, so the handler is never called
+	 * concurrently for the same search. Only the status and metadata fields of
+	 * the issues are requested.
+	 *
+	 * @return CompletableFuture completed with true if every page was retrieved.
+	 **/
+	private CompletableFuture<Boolean> searchIssuesAsync(String jql, int startAt, Consumer<JSONObject> handler) {
+		JSONObject payload = new JSONObject();
+		payload.put("jql", jql);
+		payload.put("startAt", startAt);
+		payload.put("maxResults", searchPageSize);
+		payload.put("fields", new JSONArray().put("status").put(getCustomFieldId()));
+
+		// make POST request so long queries are not limited by the URL length
+		return transport.sendAsync(post("/rest/api/3/search", payload)).thenCompose(response -> {
+			if (response.getStatus() != 200) {
+				logger.info(String.format("Something happened and the defects were not retrieved"));
+				return CompletableFuture.completedFuture(false);
+			}
+
+			JSONObject body = response.getJson();
+			JSONArray issues = body.getJSONArray("issues");
+
+			for (int i = 0; i < issues.length(); i++) {
+				handler.accept(issues.getJSONObject(i));
+			}
+
+			int nextStartAt = startAt + issues.length();
+			if (issues.length() == 0 || nextStartAt >= body.getInt("total")) {
+				return CompletableFuture.completedFuture(true);
+			}
+
+			return searchIssuesAsync(jql, nextStartAt, handler);
+		});
+	}
+
+	/**
+	 * Returns whether the local defect index knows an open defect with the given
+	 * metadata. It is always false while the index is not synchronized.
+	 *
+	 * @param issueMetadata metadata of the test case.
+	 **/
+	public boolean hasIndexedOpenDefect(String issueMetadata) {
+		return defectIndex.isSynced() && defectIndex.find(issueMetadata, open) != null;
+	}
+
+	/**
+	 * Brings the local defect index up to date. The first sync retrieves every
+	 * issue of the target project that has metadata; later syncs retrieve only the
+	 * issues updated since the previous sync, with a single JQL query. The
+	 * relative date used in the query does not depend on the time zone of the
+	 * Jira user. Deleted issues are not returned by an incremental sync, so every
+	 * issue is retrieved again once the last full sync is older than
+	 * 'railflow.index.full-sync-hours', and the indexed issues it did not return
+	 * are removed. A negative value only retrieves every issue on the first sync.
+	 *
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issue-search/#api-rest-api-3-search-post
+	 * @throws UnirestException
+	 *
+	 *
+	 **/
+	public void syncDefectIndex() throws UnirestException {
+		if (!indexEnabled) {
+			return;
 		}
 
-		return issueId;
+		long startedAt = System.nanoTime();
+		long lastSync = defectIndex.load();
+		long syncStartedAt = System.currentTimeMillis();
+		String jql = String.format("project = '%s' AND '%s' is not EMPTY", targetProject.trim(), apiCustomField);
+		boolean full = lastSync <= 0 || (fullSyncHours >= 0
+				&& syncStartedAt - defectIndex.getLastFullSync() >= TimeUnit.HOURS.toMillis(fullSyncHours));
+
+		if (!full) {
+			long minutes = TimeUnit.MILLISECONDS.toMinutes(syncStartedAt - lastSync) + syncOverlapMinutes;
+			jql = String.format("%s AND updated >= '-%sm'", jql, minutes);
+		}
+
+		AtomicInteger updated = new AtomicInteger();
+		Set<String> retrieved = ConcurrentHashMap.newKeySet();
+		String customFieldId = getCustomFieldId();
+		boolean complete = await(searchIssuesAsync(jql, 0, issue -> {
+			JSONObject fields = issue.getJSONObject("fields");
+			String metadata = fields.optString(customFieldId, null);
+
+			if (metadata != null) {
+				defectIndex.put(issue.getString("id"), issue.optString("key", ""), metadata,
+						fields.getJSONObject("status").getString("name"));
+				retrieved.add(issue.getString("id"));
+				updated.incrementAndGet();
+			}
+		}));
+
+		if (complete) {
+			int removed = full ? defectIndex.retainOnly(retrieved) : 0;
+			defectIndex.markSynced(syncStartedAt, full);
+			logger.info(String.format("The defect index was synchronized: %s updated, %s removed, %s indexed",
+					updated.get(), removed, defectIndex.size()));
+		} else {
+			logger.info("Something happened and the defect index was not synchronized. Defects will be searched on Jira");
+		}
+		metrics.recordPhase("index-sync", System.nanoTime() - startedAt);
+	}
+
+	/**
+	 * Writes the local defect index to disk so the next run only needs to sync the
+	 * issues updated in the meantime.
+	 **/
+	public void saveDefectIndex() {
+		if (indexEnabled) {
+			defectIndex.save();
+		}
 	}
 
 	/**
@@ -134,12 +591,169 @@ public class JiraApiService {
 	 * @param issueMetadata metadata to add to the created issue as a custom input.
 	 * @param issueTitle    summary or issue title.
 	 * @throws UnirestException
-	 * 
+	 *
 	 *
 	 **/
 	public String createDefect(String issueMetadata, String issueTitle) throws UnirestException {
-		int status = 500;
+		return await(createDefectAsync(issueMetadata, issueTitle));
+	}
 
+	/**
+	 * Non-blocking variant of {@link #createDefect(String, String)}.
+	 *
+	 * @param issueMetadata metadata to add to the created issue as a custom input.
+	 * @param issueTitle    summary or issue title.
+	 * @return CompletableFuture completed with the issue id, or null.
+	 **/
+	public CompletableFuture<String> createDefectAsync(String issueMetadata, String issueTitle) {
+		JSONObject payload = buildDefectPayload(issueMetadata, issueTitle);
+
+		// make POST request to create a new defect wth specific summary, metadata and
+		// properties
+		return transport.sendAsync(post("/rest/api/3/issue", payload)).thenApply(response -> {
+
+			// parse response
+			int status = response.getStatus();
+			if (status == 200 || status == 201) {
+
+				// issue created
+				JSONObject body = response.getJson();
+				String issueId = body.getString("id");
+				String issueKey = body.getString("key");
+				defectIndex.put(issueId, issueKey, issueMetadata, open);
+
+				logger.info(
+						String.format("The defect was created on Jira with the id %s and key %s", issueId, issueKey));
+				return issueId;
+			} else {
+				logger.info(String.format("Something happened and the the defect was not created"));
+			}
+
+			return null;
+		});
+	}
+
+	/**
+	 * Receives a list of new defects and creates them with as few requests as
+	 * possible, grouping them in requests of up to 'jira.api.bulk-create-size'
+	 * issues that are sent concurrently. Defects that Jira rejects are logged one
+	 * by one and left out of the returned map.
+	 *
+	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issues/#api-rest-api-3-issue-bulk-post
+	 * @param newDefects metadata and title of the defects to create.
+	 * @return Map object with the id of each created issue by metadata.
+	 * @throws UnirestException
+	 *
+	 *
+	 **/
+	public Map<String, String> createDefects(List<NewDefect> newDefects) throws UnirestException {
+		Map<String, String> issueIds = new HashMap<String, String>();
+
+		for (CompletableFuture<Map<String, String>> chunk : createDefectsAsync(newDefects)) {
+			issueIds.putAll(await(chunk));
+		}
+
+		return issueIds;
+	}
+
+	/**
+	 * Non-blocking variant of {@link #createDefects(List)} that returns the
+	 * result of each bulk request on its own, so the defects created by the
+	 * requests that succeeded are known even if another request failed.
+	 *
+	 * @param newDefects metadata and title of the defects to create.
+	 * @return List object with the ids of the issues created by each request, by
+	 *         metadata.
+	 **/
+	public List<CompletableFuture<Map<String, String>>> createDefectsAsync(List<NewDefect> newDefects) {
+		List<CompletableFuture<Map<String, String>>> chunks = new ArrayList<CompletableFuture<Map<String, String>>>();
+		int chunkSize = getBulkCreateSize();
+
+		for (int from = 0; from < newDefects.size(); from += chunkSize) {
+			chunks.add(createDefectsChunkAsync(newDefects.subList(from, Math.min(from + chunkSize, newDefects.size()))));
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Returns the number of defects created by each bulk request.
+	 **/
+	public int getBulkCreateSize() {
+		return Math.max(1, Math.min(bulkCreateSize, bulkCreateLimit));
+	}
+
+	/**
+	 * Creates a group of defects with a single bulk request. Jira returns the
+	 * created issues in the order they were sent, leaving out the elements listed
+	 * as failed, which is used to map each issue back to its metadata.
+	 **/
+	private CompletableFuture<Map<String, String>> createDefectsChunkAsync(List<NewDefect> chunk) {
+		JSONArray issueUpdates = new JSONArray();
+		for (NewDefect newDefect : chunk) {
+			issueUpdates.put(buildDefectPayload(newDefect.getMetadata(), newDefect.getTitle()));
+		}
+
+		JSONObject payload = new JSONObject();
+		payload.put("issueUpdates", issueUpdates);
+
+		// make POST request to create every defect of the chunk at once
+		return transport.sendAsync(post("/rest/api/3/issue/bulk", payload)).thenApply(response -> {
+			Map<String, String> issueIds = new HashMap<String, String>();
+
+			// parse response: the body lists created issues and failed elements
+			JSONObject body = response.getJson();
+			JSONArray issues = body.optJSONArray("issues");
+			JSONArray errors = body.optJSONArray("errors");
+			Set<Integer> failedElements = new HashSet<Integer>();
+
+			if (errors != null) {
+				for (int i = 0; i < errors.length(); i++) {
+					JSONObject error = errors.getJSONObject(i);
+					int element = error.optInt("failedElementNumber", -1);
+					failedElements.add(element);
+
+					String metadata = element >= 0 && element < chunk.size() ? chunk.get(element).getMetadata() : null;
+					logger.info(String.format("Something happened and the defect <%s> was not created: %s", metadata,
+							error.opt("elementErrors")));
+				}
+			}
+
+			if (issues == null) {
+				logger.info(String.format("Something happened and the defects were not created (status %s)",
+						response.getStatus()));
+				return issueIds;
+			}
+
+			int created = 0;
+			for (int element = 0; element < chunk.size() && created < issues.length(); element++) {
+				if (failedElements.contains(element)) {
+					continue;
+				}
+
+				JSONObject issue = issues.getJSONObject(created++);
+				String issueId = issue.getString("id");
+				issueIds.put(chunk.get(element).getMetadata(), issueId);
+				defectIndex.put(issueId, issue.getString("key"), chunk.get(element).getMetadata(), open);
+
+				logger.info(String.format("The defect was created on Jira with the id %s and key %s", issueId,
+						issue.getString("key")));
+			}
+
+			return issueIds;
+		});
+	}
+
+	/**
+	 * Builds the payload that creates a defect of type 'bug' with the given
+	 * metadata and title, as expected by both the single and bulk create
+	 * endpoints.
+	 *
+	 * @param issueMetadata metadata to add to the created issue as a custom input.
+	 * @param issueTitle    summary or issue title.
+	 * @return JSONObject with the 'fields' and 'properties' of the issue.
+	 **/
+	public JSONObject buildDefectPayload(String issueMetadata, String issueTitle) {
 		// main JSON objects
 		JSONObject payload = new JSONObject();
 		JSONObject fields = new JSONObject();
@@ -148,7 +762,7 @@ public class JiraApiService {
 		// corresponding to fields object
 		JSONObject issueType = new JSONObject();
 		JSONObject project = new JSONObject();
-		issueType.put("name", "Bug");
+		issueType.put("name", issueTypeName);
 		project.put("key", targetProject.trim());
 
 		// NOTE: replace property with custom field: readonlyfield
@@ -163,7 +777,7 @@ public class JiraApiService {
 		fields.put("issuetype", issueType);
 		fields.put("project", project);
 		fields.put("summary", issueTitle);
-		fields.put("customfield_10034", issueMetadata);
+		fields.put(getCustomFieldId(), issueMetadata);
 
 		// populate properties object
 		properties.put(property);
@@ -171,32 +785,9 @@ public class JiraApiService {
 		payload.put("fields", fields);
 		payload.put("properties", properties);
 
-		// make POST request to create a new defect wth specific summary, metadata and
-		// properties
-		HttpResponse<JsonNode> response = Unirest.post(String.format("%s/rest/api/3/issue", apiInstanceUrl))
-				.basicAuth(apiEmail, apiToken).header("Accept", "application/json")
-				.header("Content-Type", "application/json").body(payload).asJson();
-
-		// parse response
-		status = response.getStatus();
-		if (status == 200 || status == 201) {
-
-			// issue created
-			JsonNode jsonNode = response.getBody();
-			String issueId = jsonNode.getObject().getString("id");
-			String issueKey = jsonNode.getObject().getString("key");
-
-			logger.info(String.format("The defect was created on Jira with the id %s and key %s", issueId, issueKey));
-			return issueId;
-		} else {
-			logger.info(String.format("Something happened and the the defect was not created"));
-		}
-
-		return null;
-
+		return payload;
 	}
 
-
 	/**
 	 * Deletes an issue or defect by id.
 	 *
@@ -211,12 +802,12 @@ public class JiraApiService {
 		int status = 500;
 		boolean wasDeleted = false;
 
-		HttpResponse<JsonNode> response = Unirest
-				.delete(String.format("%s/rest/api/2/issue/%s", apiInstanceUrl, issueKey)).basicAuth(apiEmail, apiToken)
-				.header("Accept", "application/json").asJson();
+		TransportResponse response = await(
+				transport.sendAsync(delete(String.format("/rest/api/2/issue/%s", issueKey))));
 
 		status = response.getStatus();
 		if (status == 200 || status == 204) {
+			defectIndex.remove(issueKey);
 			wasDeleted = true;
 		}
 
@@ -231,38 +822,51 @@ public class JiraApiService {
 	 * @param issueId        id corresponding to the issue to be updated.
 	 * @throws UnirestException
 	 * @throws JsonProcessingException
-	 * 
+	 *
 	 *
 	 **/
 	public String addCommentToIssue(String commentContent, String issueId)
 			throws UnirestException, JsonProcessingException {
-		int status = 500;
+		return await(addCommentToIssueAsync(commentContent, issueId));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #addCommentToIssue(String, String)}.
+	 *
+	 * @param commentContent comment content to add.
+	 * @param issueId        id corresponding to the issue to be updated.
+	 * @return CompletableFuture completed with the comment id, or null.
+	 **/
+	public CompletableFuture<String> addCommentToIssueAsync(String commentContent, String issueId) {
 		JSONObject payload = new JSONObject();
 		payload.put("body", commentContent);
 
 		// make POST request to add comment to defect
-		HttpResponse<JsonNode> response = Unirest
-				.post(String.format("%s/rest/api/2/issue/%s/comment", apiInstanceUrl, issueId))
-				.basicAuth(apiEmail, apiToken).header("Accept", "application/json")
-				.header("Content-Type", "application/json").body(payload).asJson();
+		return transport.sendAsync(post(String.format("/rest/api/2/issue/%s/comment", issueId), payload))
+				.thenApply(response -> {
 
-		// parse response
-		status = response.getStatus();
-		if (status == 200 || status == 201) {
+					// parse response
+					int status = response.getStatus();
+					if (status == 200 || status == 201) {
 
-			// issue comment created
-			JsonNode jsonNode = response.getBody();
-			String commentId = jsonNode.getObject().getString("id");
-			String commentCreatedDate = jsonNode.getObject().getString("created");
+						// issue comment created
+						JSONObject body = response.getJson();
+						String commentId = body.getString("id");
+						String commentCreatedDate = body.getString("created");
 
-			logger.info(String.format("The comment was created on Jira with the id %s on %s", commentId,
-					commentCreatedDate));
-			return commentId;
-		} else {
-			logger.info(String.format("Something happened and the comment was not created"));
-		}
+						logger.info(String.format("The comment was created on Jira with the id %s on %s", commentId,
+								commentCreatedDate));
+						return commentId;
+					} else if (status == 404) {
+						defectIndex.remove(issueId);
+						logger.info(String.format("The comment was not created since the issue [%s] no longer exists",
+								issueId));
+					} else {
+						logger.info(String.format("Something happened and the comment was not created"));
+					}
 
-		return null;
+					return null;
+				});
 	}
 
 	/**
@@ -273,88 +877,215 @@ public class JiraApiService {
 	 * @return String object with issue id.
 	 * @throws UnirestException
 	 * @throws JsonProcessingException
-	 * 
+	 *
 	 *
 	 **/
 	public Map<String, String> getTransitionsByIssue(String issueId) throws UnirestException, JsonProcessingException {
-		int status = 500;
-		Map<String, String> transitionsMap = new HashMap<String, String>();
+		return await(getTransitionsByIssueAsync(issueId));
+	}
 
+	private CompletableFuture<Map<String, String>> getTransitionsByIssueAsync(String issueId) {
 		// make GET request to get transitions identifiers by issue and map them to name
-		HttpResponse<JsonNode> response = Unirest
-				.get(String.format("%s/rest/api/3/issue/%s/transitions", apiInstanceUrl, issueId))
-				.basicAuth(apiEmail, apiToken).header("Accept", "application/json").asJson();
+		return transport.sendAsync(get(String.format("/rest/api/3/issue/%s/transitions", issueId)))
+				.thenApply(response -> {
+					Map<String, String> transitionsMap = new HashMap<String, String>();
 
-		// parse response
-		status = response.getStatus();
-		if (status == 200) {
-
-			// transitions retrieved
-			JsonNode jsonNode = response.getBody();
-			JSONArray array = jsonNode.getObject().getJSONArray("transitions");
-
-			// get transition name and transition id to map
-			for (int i = 0; i < array.length(); i++) {
-				JSONObject object = array.getJSONObject(i);
-				String transitionName = object.getString("name");
-				String transitionId = object.getString("id");
-				transitionsMap.put(transitionName, transitionId);
-			}
-			logger.info(String.format("The map of transitions was retrieved %s",
-					mapper.writeValueAsString(transitionsMap)));
-		} else {
-			logger.info(String.format("Something happened and the transitions were not retrieved"));
-		}
+					// parse response
+					if (response.getStatus() == 200) {
+
+						// transitions retrieved
+						JSONArray array = response.getJson().getJSONArray("transitions");
+
+						// get transition name and transition id to map
+						for (int i = 0; i < array.length(); i++) {
+							JSONObject object = array.getJSONObject(i);
+							String transitionName = object.getString("name");
+							String transitionId = object.getString("id");
+							transitionsMap.put(transitionName, transitionId);
+						}
+						if (logger.isDebugEnabled()) {
+							logger.debug(String.format("The map of transitions was retrieved %s", transitionsMap));
+						}
+					} else {
+						logger.info(String.format("Something happened and the transitions were not retrieved"));
+					}
 
-		return transitionsMap;
+					return transitionsMap;
+				});
 	}
 
 	/**
-	 * Transition issue to 'closed' status.
+	 * Transition issue to 'closed' status. The id of the transition is resolved
+	 * once per project, issue type and status and kept in a
+	 * {@link TransitionCache}, so most issues are closed with a single request,
+	 * and issues closed at the same time wait for the same lookup. The cached id
+	 * is refreshed when Jira rejects it, unless the issue is already closed, as
+	 * it is when a close whose response was lost is sent again.
 	 *
 	 * @apiNote https://developer.atlassian.com/cloud/jira/platform/rest/v3/api-group-issues/#api-rest-api-3-issue-issueidorkey-transitions-post
 	 * @param issueId id corresponding to the issue to be updated.
 	 * @throws UnirestException
 	 * @throws JsonProcessingException
-	 * 
+	 *
 	 *
 	 **/
 
 	public void closeIssue(String issueId) throws UnirestException, JsonProcessingException {
-		int status = 500;
-		Map<String, String> transitionIds = getTransitionsByIssue(issueId);
-		String transitionId = transitionIds != null ? transitionIds.get(closed) : null;
-
-		// if we found a transition to specify, make API request
-		if (transitionId != null) {
-			JSONObject payload = new JSONObject();
-			JSONObject transition = new JSONObject();
-			JSONObject resolution = new JSONObject();
-
-			// corresponding to payload object
-			transition.put("id", transitionId);
-			resolution.put("name", resolutionName);
-
-			payload.put("transition", transition);
-			payload.put("resolution", resolution);
-
-
-			// make POST request to transition defect to a "closed" status
-			HttpResponse<JsonNode> response = Unirest
-					.post(String.format("%s/rest/api/2/issue/%s/transitions", apiInstanceUrl, issueId))
-					.basicAuth(apiEmail, apiToken).header("Accept", "application/json")
-					.header("Content-Type", "application/json").body(payload).asJson();
-			
-			status = response.getStatus();
-			if (status == 200 || status == 204) {
-				logger.info(String.format("The issue with the id [%s] was closed", issueId));
+		await(closeIssueAsync(issueId));
+	}
+
+	/**
+	 * Non-blocking variant of {@link #closeIssue(String)}.
+	 *
+	 * @param issueId id corresponding to the issue to be updated.
+	 * @return CompletableFuture completed with true if the issue was closed.
+	 **/
+	public CompletableFuture<Boolean> closeIssueAsync(String issueId) {
+		String cacheKey = TransitionCache.key(targetProject.trim(), issueTypeName, open);
+		String cachedTransitionId = transitionCache.get(cacheKey);
+
+		CompletableFuture<String> transitionId = cachedTransitionId != null
+				? CompletableFuture.completedFuture(cachedTransitionId)
+				: resolveCloseTransitionAsync(issueId, cacheKey);
+
+		return transitionId.thenCompose(resolvedId -> {
+
+			// if we found a transition to specify, make API request
+			if (resolvedId == null) {
+				logger.info(String.format("Something happened and the issue was not closed"));
+				return CompletableFuture.completedFuture(false);
 			}
-		}
 
-		else {
-			logger.info(String.format("Something happened and the issue was not closed"));
+			return postTransitionAsync(issueId, resolvedId).thenCompose(status -> {
+
+				// a close retried after a server error, or sent again from the outbox,
+				// is refused once the first one was applied
+				if (status == 400) {
+					return getIssueStatusAsync(issueId).thenCompose(issueStatus -> closed.equals(issueStatus)
+							? CompletableFuture.completedFuture(204)
+							: retryStaleTransitionAsync(issueId, cacheKey, cachedTransitionId, status));
+				}
+
+				return retryStaleTransitionAsync(issueId, cacheKey, cachedTransitionId, status);
+			}).thenApply(status -> {
+				if (status == 200 || status == 204) {
+					defectIndex.updateStatus(issueId, closed);
+					logger.info(String.format("The issue with the id [%s] was closed", issueId));
+					return true;
+				} else if (status == 404) {
+					defectIndex.remove(issueId);
+					logger.info(String.format("The issue with the id [%s] was not closed since it no longer exists",
+							issueId));
+				} else {
+					logger.info(String.format("Something happened and the issue was not closed"));
+				}
+
+				return false;
+			});
+		});
+	}
+
+	// the cached id may be stale, so resolve it again and retry once
+	private CompletableFuture<Integer> retryStaleTransitionAsync(String issueId, String cacheKey,
+			String cachedTransitionId, int status) {
+		if ((status != 400 && status != 404) || cachedTransitionId == null) {
+			return CompletableFuture.completedFuture(status);
 		}
 
+		transitionCache.evict(cacheKey);
+		return resolveCloseTransitionAsync(issueId, cacheKey)
+				.thenCompose(refreshedId -> refreshedId != null ? postTransitionAsync(issueId, refreshedId)
+						: CompletableFuture.completedFuture(status));
+	}
+
+	// returns the name of the status of an issue, or null if it was not retrieved
+	private CompletableFuture<String> getIssueStatusAsync(String issueId) {
+		return transport.sendAsync(get(String.format("/rest/api/3/issue/%s", issueId)).queryString("fields", "status"))
+				.thenApply(response -> {
+					if (response.getStatus() != 200) {
+						return null;
+					}
+
+					JSONObject status = response.getJson().getJSONObject("fields").optJSONObject("status");
+					return status != null ? status.optString("name", null) : null;
+				}).exceptionally(e -> null);
+	}
+
+	/**
+	 * Retrieves the transitions of an issue and caches the id of the transition to
+	 * the 'closed' status. Closes that miss the cache at the same time share the
+	 * request.
+	 **/
+	private CompletableFuture<String> resolveCloseTransitionAsync(String issueId, String cacheKey) {
+		return transitionCache.resolve(cacheKey,
+				() -> getTransitionsByIssueAsync(issueId).thenApply(transitionIds -> transitionIds.get(closed)));
+	}
+
+	// make POST request to transition defect to a "closed" status
+	private CompletableFuture<Integer> postTransitionAsync(String issueId, String transitionId) {
+		return transport
+				.sendAsync(post(String.format("/rest/api/2/issue/%s/transitions", issueId),
+						buildClosePayload(transitionId)))
+				.thenApply(TransportResponse::getStatus);
+	}
+
+	/**
+	 * Builds the payload that transitions an issue to the 'closed' status.
+	 *
+	 * @param transitionId id of the transition to the 'closed' status.
+	 * @return JSONObject with the transition and resolution.
+	 **/
+	public JSONObject buildClosePayload(String transitionId) {
+		JSONObject payload = new JSONObject();
+		JSONObject transition = new JSONObject();
+		JSONObject resolution = new JSONObject();
+
+		// corresponding to payload object
+		transition.put("id", transitionId);
+		resolution.put("name", resolutionName);
+
+		payload.put("transition", transition);
+		payload.put("resolution", resolution);
+
+		return payload;
+	}
+
+	private TransportRequest get(String path) {
+		return TransportRequest.get(apiInstanceUrl + path).header("Authorization", authorization).header("Accept",
+				"application/json");
+	}
+
+	private TransportRequest post(String path, JSONObject payload) {
+		return TransportRequest.post(apiInstanceUrl + path, payload).header("Authorization", authorization)
+				.header("Accept", "application/json");
+	}
+
+	private TransportRequest put(String path, JSONObject payload) {
+		return TransportRequest.put(apiInstanceUrl + path, payload).header("Authorization", authorization)
+				.header("Accept", "application/json");
+	}
+
+	private TransportRequest delete(String path) {
+		return TransportRequest.delete(apiInstanceUrl + path).header("Authorization", authorization).header("Accept",
+				"application/json");
+	}
+
+	/**
+	 * Waits for a request to complete. Transport errors are reported as a
+	 * {@link UnirestException}, as the blocking methods of this service always
+	 * did.
+	 **/
+	private static <T> T await(CompletableFuture<T> future) throws UnirestException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new UnirestException(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+		}
 	}
 
 }
@@ -1,16 +1,301 @@
 package com.railflow.ahnnath.railflowcommandlinetool.api;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.annotation.PostConstruct;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.railflow.ahnnath.railflowcommandlinetool.store.TestRailCaseCache;
+
 /**
- * Contains methods and attributes that help make API with the TestRails REST API.  
- * 
+ * Contains methods and attributes that help make API with the TestRails REST API.
+ * Results are sent with the bulk 'add_results_for_cases' endpoint, in chunks of
+ * 'testrail.api.results-per-request', and the cases they belong to are found in
+ * a listing of the suite that is cached by the {@link TestRailCaseCache}. The
+ * service does nothing unless 'testrail.api.instance' and
+ * 'testrail.api.project-id' are set.
+ *
  * @author ahn-nath
- * @version 2.0
+ * @version 3.0
  * @since 1.0
- * 
+ *
  **/
 
 @Service
 public class TestRailsApiService {
+
+	@Value("${testrail.api.instance:}")
+	private String apiInstanceUrl;
+
+	@Value("${testrail.api.username:}")
+	private String apiUsername;
+
+	@Value("${testrail.api.key:}")
+	private String apiKey;
+
+	@Value("${testrail.api.project-id:0}")
+	private int projectId;
+
+	@Value("${testrail.api.suite-id:0}")
+	private int suiteId;
+
+	@Value("${testrail.api.results-per-request:2000}")
+	private int resultsPerRequest;
+
+	@Value("${testrail.status.passed:1}")
+	private int passedStatusId;
+
+	@Value("${testrail.status.failed:5}")
+	private int failedStatusId;
+
+	@Autowired
+	HttpTransport transport;
+
+	@Autowired
+	TestRailCaseCache caseCache;
+
+	// maximum number of cases returned by a page of 'get_cases'
+	private static final int casesPageSize = 250;
+
+	private static Logger logger = LoggerFactory.getLogger(TestRailsApiService.class);
+
+	private String authorization;
+
+	@PostConstruct
+	void init() {
+		authorization = String.format("Basic %s", Base64.getEncoder()
+				.encodeToString(String.format("%s:%s", apiUsername, apiKey).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Returns whether a TestRail instance and project were configured.
+	 **/
+	public boolean isEnabled() {
+		return apiInstanceUrl != null && !apiInstanceUrl.isBlank() && projectId > 0;
+	}
+
+	/**
+	 * Returns the case ids of the suite by title, as cached by an earlier run, or
+	 * null if there is no cached listing younger than its TTL.
+	 **/
+	public Map<String, Integer> getCachedCaseIds() {
+		return caseCache.load(projectId, suiteId);
+	}
+
+	/**
+	 * Lists every case of the suite page by page and caches the listing. Cases
+	 * that share a title are found by the first one listed.
+	 *
+	 * @apiNote GET index.php?/api/v2/get_cases/{project_id}
+	 * @return Map object with the case ids by title.
+	 * @throws UnirestException
+	 *
+	 **/
+	public Map<String, Integer> listCaseIds() throws UnirestException {
+		Map<String, Integer> caseIds = new HashMap<String, Integer>();
+
+		if (await(listCasesAsync(0, caseIds))) {
+			caseCache.save(projectId, suiteId, caseIds);
+			logger.info(String.format("%s TestRail cases were listed", caseIds.size()));
+		}
+
+		return caseIds;
+	}
+
+	/**
+	 * Requests a page of cases and the pages after it, one after the other.
+	 * Instances that do not paginate return every case as a bare array.
+	 *
+	 * @return CompletableFuture completed with true if every page was retrieved.
+	 **/
+	private CompletableFuture<Boolean> listCasesAsync(int offset, Map<String, Integer> caseIds) {
+		TransportRequest request = get(String.format("get_cases/%s", projectId))
+				.queryString("limit", String.valueOf(casesPageSize)).queryString("offset", String.valueOf(offset));
+		if (suiteId > 0) {
+			request.queryString("suite_id", String.valueOf(suiteId));
+		}
+
+		return transport.sendAsync(request).thenCompose(response -> {
+			if (response.getStatus() != 200) {
+				logger.info(String.format("Something happened and the TestRail cases were not retrieved (status %s)",
+						response.getStatus()));
+				return CompletableFuture.completedFuture(false);
+			}
+
+			boolean paginated = response.getBody().trim().startsWith("{");
+			JSONArray cases = paginated ? response.getJson().optJSONArray("cases") : response.getJsonArray();
+			if (cases == null) {
+				cases = new JSONArray();
+			}
+
+			for (int i = 0; i < cases.length(); i++) {
+				JSONObject testCase = cases.getJSONObject(i);
+				caseIds.putIfAbsent(testCase.getString("title"), testCase.getInt("id"));
+			}
+
+			JSONObject links = paginated ? response.getJson().optJSONObject("_links") : null;
+			if (links == null || links.isNull("next") || cases.length() == 0) {
+				return CompletableFuture.completedFuture(true);
+			}
+
+			return listCasesAsync(offset + cases.length(), caseIds);
+		});
+	}
+
+	/**
+	 * Creates a run of the suite that includes the given cases only.
+	 *
+	 * @apiNote POST index.php?/api/v2/add_run/{project_id}
+	 * @param name    name of the run.
+	 * @param caseIds cases of the run.
+	 * @return int with the id of the run, 0 if it was not created.
+	 * @throws UnirestException
+	 *
+	 **/
+	public int addRun(String name, Collection<Integer> caseIds) throws UnirestException {
+		JSONObject payload = new JSONObject();
+		payload.put("name", name);
+		payload.put("include_all", false);
+		payload.put("case_ids", new JSONArray(caseIds));
+		if (suiteId > 0) {
+			payload.put("suite_id", suiteId);
+		}
+
+		TransportResponse response = await(
+				transport.sendAsync(post(String.format("add_run/%s", projectId), payload)));
+
+		if (response.getStatus() != 200) {
+			logger.info(String.format("Something happened and the TestRail run was not created (status %s)",
+					response.getStatus()));
+			return 0;
+		}
+
+		int runId = response.getJson().getInt("id");
+		logger.info(String.format("The run was created on TestRail with the id %s", runId));
+		return runId;
+	}
+
+	/**
+	 * Adds results to the cases of a run with as few bulk requests as the chunk
+	 * size allows. Every request is waited for, so the results of the other
+	 * chunks are sent even if one failed.
+	 *
+	 * @apiNote POST index.php?/api/v2/add_results_for_cases/{run_id}
+	 * @param runId   id of the run.
+	 * @param results payloads built with {@link #buildResultPayload(int, boolean)}.
+	 * @return int with the number of results added.
+	 * @throws UnirestException
+	 *
+	 **/
+	public int addResultsForCases(int runId, List<JSONObject> results) throws UnirestException {
+		int added = 0;
+		UnirestException failure = null;
+
+		for (CompletableFuture<Integer> chunk : addResultsForCasesAsync(runId, results)) {
+			try {
+				added += await(chunk);
+			} catch (UnirestException e) {
+				failure = failure != null ? failure : e;
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+		return added;
+	}
+
+	/**
+	 * Non-blocking variant of {@link #addResultsForCases(int, List)} that returns
+	 * the number of results added by each request.
+	 **/
+	public List<CompletableFuture<Integer>> addResultsForCasesAsync(int runId, List<JSONObject> results) {
+		List<CompletableFuture<Integer>> chunks = new ArrayList<CompletableFuture<Integer>>();
+		int chunkSize = Math.max(1, resultsPerRequest);
+
+		for (int from = 0; from < results.size(); from += chunkSize) {
+			List<JSONObject> chunk = results.subList(from, Math.min(from + chunkSize, results.size()));
+			JSONObject payload = new JSONObject().put("results", new JSONArray(chunk));
+
+			chunks.add(transport.sendAsync(post(String.format("add_results_for_cases/%s", runId), payload))
+					.thenApply(response -> {
+						if (response.getStatus() == 200) {
+							return response.getJsonArray().length();
+						}
+
+						logger.info(String.format("Something happened and %s results were not added (status %s): %s",
+								chunk.size(), response.getStatus(), response.getBody()));
+						return 0;
+					}));
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Builds the result of a case, as expected by 'add_results_for_cases'.
+	 *
+	 * @param caseId id of the case.
+	 * @param failed whether the test case failed.
+	 * @return JSONObject with the case id and status id of the result.
+	 **/
+	public JSONObject buildResultPayload(int caseId, boolean failed) {
+		JSONObject result = new JSONObject();
+		result.put("case_id", caseId);
+		result.put("status_id", failed ? failedStatusId : passedStatusId);
+
+		return result;
+	}
+
+	private TransportRequest get(String endpoint) {
+		return TransportRequest.get(url(endpoint)).header("Authorization", authorization).header("Content-Type",
+				"application/json");
+	}
+
+	private TransportRequest post(String endpoint, JSONObject payload) {
+		return TransportRequest.post(url(endpoint), payload).header("Authorization", authorization);
+	}
+
+	private String url(String endpoint) {
+		String instance = apiInstanceUrl.trim();
+		return String.format("%s/index.php?/api/v2/%s", instance.endsWith("/") ? instance.substring(0,
+				instance.length() - 1) : instance, endpoint);
+	}
+
+	/**
+	 * Waits for a request to complete. Transport errors are reported as a
+	 * {@link UnirestException}, like the Jira service does.
+	 **/
+	private static <T> T await(CompletableFuture<T> future) throws UnirestException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new UnirestException(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+		}
+	}
+
 }
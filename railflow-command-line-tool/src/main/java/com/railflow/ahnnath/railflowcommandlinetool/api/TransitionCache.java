@@ -0,0 +1,117 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the workflow transition ids resolved by {@link JiraApiService} so an
+ * issue can be transitioned without asking Jira for its transitions first.
+ * Entries are keyed by project, issue type and status, expire after a fixed
+ * time and the least recently used entry is evicted once the cache is full.
+ * Concurrent misses of the same key share a single lookup.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TransitionCache {
+
+	private final long ttlMillis;
+	private final Map<String, CachedTransition> entries;
+	private final Map<String, CompletableFuture<String>> lookups = new ConcurrentHashMap<String, CompletableFuture<String>>();
+
+	public TransitionCache(int maxEntries, long ttlMinutes) {
+		this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+		this.entries = new LinkedHashMap<String, CachedTransition>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedTransition> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Builds the key of the transitions shared by the issues of a project, issue
+	 * type and status.
+	 **/
+	public static String key(String project, String issueType, String status) {
+		return String.format("%s/%s/%s", project, issueType, status);
+	}
+
+	/**
+	 * Returns the cached transition id, or null if it is missing or expired.
+	 **/
+	public synchronized String get(String key) {
+		CachedTransition transition = entries.get(key);
+
+		if (transition == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() > transition.expiresAt) {
+			entries.remove(key);
+			return null;
+		}
+
+		return transition.transitionId;
+	}
+
+	/**
+	 * Returns the cached transition id, or looks it up. Callers that miss the
+	 * same key while a lookup is in flight get that lookup instead of starting
+	 * their own. Ids found are cached; a lookup that finds none is not, so the
+	 * next miss looks again.
+	 *
+	 * @param key    key built by {@link #key(String, String, String)}.
+	 * @param lookup starts a lookup, completed with the id or null.
+	 * @return CompletableFuture completed with the id, or null if none was found.
+	 **/
+	public CompletableFuture<String> resolve(String key, Supplier<CompletableFuture<String>> lookup) {
+		String cached = get(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+
+		CompletableFuture<String> pending = lookups.computeIfAbsent(key, missing -> {
+			// a lookup may have finished since the cache was read
+			String found = get(missing);
+			return found != null ? CompletableFuture.completedFuture(found)
+					: lookup.get().thenApply(transitionId -> {
+						if (transitionId != null) {
+							put(missing, transitionId);
+						}
+						return transitionId;
+					});
+		});
+
+		pending.whenComplete((transitionId, error) -> lookups.remove(key, pending));
+		return pending;
+	}
+
+	public synchronized void put(String key, String transitionId) {
+		entries.put(key, new CachedTransition(transitionId, System.currentTimeMillis() + ttlMillis));
+	}
+
+	public synchronized void evict(String key) {
+		entries.remove(key);
+	}
+
+	private static final class CachedTransition {
+
+		private final String transitionId;
+		private final long expiresAt;
+
+		private CachedTransition(String transitionId, long expiresAt) {
+			this.transitionId = transitionId;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends HTTP requests for the API services. Implementations keep their own
+ * connection pool, so a single instance is shared by every request of a run.
+ * Futures fail with an {@link java.io.IOException} when the request could not
+ * be sent or answered.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public interface HttpTransport {
+
+	/**
+	 * Sends a request without blocking the calling thread.
+	 *
+	 * @param request request to send.
+	 * @return CompletableFuture completed with the response.
+	 **/
+	CompletableFuture<TransportResponse> sendAsync(TransportRequest request);
+
+}
@@ -0,0 +1,90 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.InstrumentedTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+
+/**
+ * Creates the {@link HttpTransport} shared by the API services, selected with
+ * the 'railflow.http.transport' property ('jdk' or 'unirest'). Every request
+ * is timed in the {@link RunMetrics} of the run, and paced, retried and cut off
+ * by a {@link RequestGovernor} of its host unless 'railflow.http.governor.enabled'
+ * is false.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Configuration(proxyBeanMethods = false)
+public class HttpTransportConfiguration {
+
+	@Value("${railflow.http.transport:jdk}")
+	private String transport;
+
+	@Value("${railflow.http.max-connections:20}")
+	private int maxConnections;
+
+	@Value("${railflow.http.keep-alive-seconds:300}")
+	private long keepAliveSeconds;
+
+	@Value("${railflow.http.connect-timeout-ms:10000}")
+	private long connectTimeoutMs;
+
+	@Value("${railflow.http.request-timeout-ms:60000}")
+	private long requestTimeoutMs;
+
+	@Value("${railflow.http.governor.enabled:true}")
+	private boolean governorEnabled;
+
+	@Value("${railflow.http.governor.max-rate:100}")
+	private double maxRate;
+
+	@Value("${railflow.http.governor.target-latency-ms:3000}")
+	private long targetLatencyMs;
+
+	@Value("${railflow.http.governor.max-retries:4}")
+	private int maxRetries;
+
+	@Value("${railflow.http.governor.backoff-ms:500}")
+	private long backoffMs;
+
+	@Value("${railflow.http.governor.max-backoff-ms:30000}")
+	private long maxBackoffMs;
+
+	@Value("${railflow.http.governor.max-pause-ms:300000}")
+	private long maxPauseMs;
+
+	@Value("${railflow.http.governor.failure-threshold:5}")
+	private int failureThreshold;
+
+	@Value("${railflow.http.governor.open-seconds:30}")
+	private long openSeconds;
+
+	@Bean
+	public HttpTransport httpTransport(RunMetrics metrics) {
+		HttpTransport instrumented;
+		if ("unirest".equalsIgnoreCase(transport.trim())) {
+			instrumented = new InstrumentedTransport(
+					new UnirestTransport(maxConnections, connectTimeoutMs, requestTimeoutMs), metrics);
+		} else {
+			instrumented = new InstrumentedTransport(
+					new JdkHttpTransport(maxConnections, keepAliveSeconds, connectTimeoutMs, requestTimeoutMs),
+					metrics);
+		}
+
+		if (!governorEnabled) {
+			return instrumented;
+		}
+
+		// every attempt is timed, so retries and throttled requests show in the metrics
+		return new PerHostTransport(instrumented,
+				new RequestGovernor.Settings().limits(maxConnections, maxRate)
+						.retries(maxRetries, backoffMs, maxBackoffMs, maxPauseMs).targetLatency(targetLatencyMs)
+						.circuit(failureThreshold, openSeconds));
+	}
+
+}
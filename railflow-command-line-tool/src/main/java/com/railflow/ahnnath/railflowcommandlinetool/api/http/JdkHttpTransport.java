@@ -0,0 +1,104 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Sends requests with the {@link HttpClient} of the JDK. The client negotiates
+ * HTTP/2, so concurrent requests to the same instance are multiplexed over a
+ * few TLS connections, and HTTP/1.1 connections are kept alive in the client
+ * pool. Responses are requested and decoded with gzip compression.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class JdkHttpTransport implements HttpTransport {
+
+	private final HttpClient client;
+	private final Duration requestTimeout;
+
+	/**
+	 * Creates the client. The pool settings are JDK system properties read when
+	 * the HTTP client classes are first loaded, so they are only set if the
+	 * command line did not set them already.
+	 *
+	 * @param maxConnections   maximum number of idle connections kept in the pool.
+	 * @param keepAliveSeconds seconds an idle connection is kept in the pool.
+	 * @param connectTimeoutMs milliseconds allowed to open a connection.
+	 * @param requestTimeoutMs milliseconds allowed to receive a response.
+	 **/
+	public JdkHttpTransport(int maxConnections, long keepAliveSeconds, long connectTimeoutMs, long requestTimeoutMs) {
+		setDefault("jdk.httpclient.connectionPoolSize", String.valueOf(maxConnections));
+		setDefault("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL).connectTimeout(Duration.ofMillis(connectTimeoutMs))
+				.build();
+		this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl())).timeout(requestTimeout)
+				.header("Accept-Encoding", "gzip");
+
+		for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+
+		HttpRequest.BodyPublisher body = request.getBody() != null
+				? HttpRequest.BodyPublishers.ofString(request.getBody(), StandardCharsets.UTF_8)
+				: HttpRequest.BodyPublishers.noBody();
+
+		return client.sendAsync(builder.method(request.getMethod(), body).build(),
+				HttpResponse.BodyHandlers.ofByteArray()).handle((response, error) -> {
+					if (error != null) {
+						Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+						throw new CompletionException(
+								cause instanceof IOException ? cause : new IOException(cause.getMessage(), cause));
+					}
+
+					// a body that cannot be decoded fails like the transport, with an IOException
+					try {
+						return new TransportResponse(response.statusCode(), response.headers().map(), decode(response));
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				});
+	}
+
+	// the client does not decompress bodies, so gzip is decoded here
+	private static String decode(HttpResponse<byte[]> response) throws IOException {
+		byte[] body = response.body();
+		boolean gzip = response.headers().firstValue("Content-Encoding").map(value -> value.contains("gzip"))
+				.orElse(false);
+
+		if (!gzip || body.length == 0) {
+			return new String(body, StandardCharsets.UTF_8);
+		}
+
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void setDefault(String property, String value) {
+		if (System.getProperty(property) == null) {
+			System.setProperty(property, value);
+		}
+	}
+
+}
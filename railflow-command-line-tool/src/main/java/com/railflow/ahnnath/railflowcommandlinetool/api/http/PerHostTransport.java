@@ -0,0 +1,44 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends every request through a {@link RequestGovernor} of its own host, so
+ * each instance, such as Jira and TestRail, gets its own limits, pauses and
+ * circuit: throttling or an outage of one does not slow down or cut off the
+ * requests to the other. The governors are created on the first request to a
+ * host, with the same settings, and share the transport they decorate.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class PerHostTransport implements HttpTransport {
+
+	private final HttpTransport delegate;
+	private final RequestGovernor.Settings settings;
+	private final Map<String, RequestGovernor> governors = new ConcurrentHashMap<String, RequestGovernor>();
+
+	public PerHostTransport(HttpTransport delegate, RequestGovernor.Settings settings) {
+		this.delegate = delegate;
+		this.settings = settings;
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		return getGovernor(RequestGovernor.hostOf(request)).sendAsync(request);
+	}
+
+	/**
+	 * Returns the governor of a host, such as 'example.atlassian.net'.
+	 *
+	 * @param host host and port requests are sent to.
+	 **/
+	public RequestGovernor getGovernor(String host) {
+		return governors.computeIfAbsent(host, key -> new RequestGovernor(delegate, settings));
+	}
+
+}
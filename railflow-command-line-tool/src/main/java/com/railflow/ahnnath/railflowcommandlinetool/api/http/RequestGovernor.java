@@ -0,0 +1,504 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decorates a {@link HttpTransport} to send requests as fast as an instance,
+ * such as Jira, allows without being throttled. Every request of the run to
+ * the same host goes through a single governor, created by a
+ * {@link PerHostTransport}, which:
+ * <ul>
+ * <li>limits the requests in flight and the requests started per second, and
+ * adjusts both limits with additive increase and multiplicative decrease: they
+ * grow while responses are fast, and are halved when the instance throttles,
+ * fails or answers slower than the target latency;</li>
+ * <li>pauses every request for the time given by 'Retry-After', or until
+ * 'X-RateLimit-Reset' when 'X-RateLimit-Remaining' is 0;</li>
+ * <li>retries throttled requests, which were not processed, and requests
+ * that are safe to send twice after an error, with jittered exponential
+ * backoff;</li>
+ * <li>fails requests right away once a number of requests in a row failed,
+ * until a single request sent after a pause succeeds again.</li>
+ * </ul>
+ * A request still throttled or failing after its last retry, and a request
+ * refused by the open circuit, fails with an {@link IOException}, so the
+ * action it carried is kept in the outbox.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class RequestGovernor implements HttpTransport {
+
+	private static Logger logger = LoggerFactory.getLogger(RequestGovernor.class);
+
+	private static final long second = TimeUnit.SECONDS.toNanos(1);
+
+	private static final Pattern transitionPath = Pattern.compile("/issue/[^/]+/transitions$");
+
+	private final HttpTransport delegate;
+	private final Settings settings;
+	private final ScheduledExecutorService scheduler;
+	private final Deque<Attempt> queue = new ArrayDeque<Attempt>();
+
+	// limits adjusted by the responses, between 1 and their configured maximum
+	private double concurrencyLimit;
+	private double rateLimit;
+
+	private int inFlight = 0;
+	private long nextStartAt = System.nanoTime();
+	private long pausedUntil = System.nanoTime();
+	private long lastDecreaseAt = System.nanoTime() - second;
+	private long smoothedLatency = 0;
+	private boolean dispatchScheduled = false;
+
+	private Circuit circuit = Circuit.CLOSED;
+	private int consecutiveFailures = 0;
+	private long openUntil = 0;
+	private boolean probeInFlight = false;
+
+	public RequestGovernor(HttpTransport delegate, Settings settings) {
+		this.delegate = delegate;
+		this.settings = settings;
+		this.concurrencyLimit = settings.maxConcurrency;
+		this.rateLimit = settings.maxRate;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "railflow-governor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		Attempt attempt = new Attempt(request);
+
+		synchronized (this) {
+			queue.addLast(attempt);
+		}
+		dispatch();
+
+		return attempt.future;
+	}
+
+	/**
+	 * Returns the number of requests currently allowed in flight.
+	 **/
+	public synchronized int getConcurrencyLimit() {
+		return (int) concurrencyLimit;
+	}
+
+	/**
+	 * Returns the number of requests currently allowed to start per second.
+	 **/
+	public synchronized double getRateLimit() {
+		return rateLimit;
+	}
+
+	/**
+	 * Returns whether requests are refused because the instance looks unhealthy.
+	 **/
+	public synchronized boolean isCircuitOpen() {
+		return circuit == Circuit.OPEN;
+	}
+
+	// starts the queued requests allowed by the limits, and schedules another
+	// dispatch for the time the next one can start
+	private void dispatch() {
+		List<Attempt> started = new ArrayList<Attempt>();
+		List<Attempt> refused = new ArrayList<Attempt>();
+
+		synchronized (this) {
+			dispatchScheduled = false;
+
+			while (!queue.isEmpty()) {
+				long now = System.nanoTime();
+
+				if (circuit == Circuit.OPEN) {
+					if (now - openUntil < 0) {
+						refused.addAll(queue);
+						queue.clear();
+						break;
+					}
+					circuit = Circuit.HALF_OPEN;
+				}
+
+				// while half open, a single request checks whether the instance recovered
+				if (circuit == Circuit.HALF_OPEN && probeInFlight) {
+					break;
+				}
+				if (inFlight >= (int) concurrencyLimit) {
+					break;
+				}
+
+				long startAt = Math.max(nextStartAt, pausedUntil);
+				if (startAt - now > 0) {
+					schedule(startAt - now);
+					break;
+				}
+
+				Attempt attempt = queue.pollFirst();
+				inFlight++;
+				attempt.probe = circuit == Circuit.HALF_OPEN;
+				probeInFlight = attempt.probe;
+				nextStartAt = Math.max(nextStartAt, now) + (long) (second / rateLimit);
+				started.add(attempt);
+			}
+		}
+
+		for (Attempt attempt : refused) {
+			attempt.future.completeExceptionally(new IOException(String.format(
+					"%s was not sent since %s is unavailable; requests are refused until it recovers",
+					describe(attempt.request), hostOf(attempt.request))));
+		}
+		for (Attempt attempt : started) {
+			send(attempt);
+		}
+	}
+
+	private void send(Attempt attempt) {
+		long startedAt = System.nanoTime();
+		CompletableFuture<TransportResponse> response;
+
+		try {
+			response = delegate.sendAsync(attempt.request);
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+
+		response.whenComplete((result, error) -> complete(attempt, System.nanoTime() - startedAt, result,
+				error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+	}
+
+	private void complete(Attempt attempt, long latency, TransportResponse response, Throwable error) {
+		long now = System.nanoTime();
+		int status = response != null ? response.getStatus() : 0;
+		boolean throttled = status == 429 || (status == 503 && response.getHeader("Retry-After") != null);
+		boolean failed = error instanceof IOException || status == 502 || status == 503 || status == 504;
+		boolean retry;
+
+		synchronized (this) {
+			inFlight--;
+			if (attempt.probe) {
+				attempt.probe = false;
+				probeInFlight = false;
+			}
+			if (response != null) {
+				pauseFor(attempt.request, response, now);
+			}
+
+			if (throttled || failed) {
+				decrease(now);
+			} else if (response != null) {
+				smoothedLatency = smoothedLatency == 0 ? latency : (smoothedLatency * 7 + latency) / 8;
+				if (latency > settings.targetLatency
+						|| "true".equalsIgnoreCase(response.getHeader("X-RateLimit-NearLimit"))) {
+					decrease(now);
+				} else {
+					increase();
+				}
+			}
+
+			// a throttled request shows that the instance is up
+			if (failed && !throttled) {
+				recordFailure(attempt.request, now);
+			} else if (response != null) {
+				recordSuccess(attempt.request);
+			}
+
+			retry = attempt.retries < settings.maxRetries
+					&& (throttled || (failed && isSafeToRetry(attempt.request, error)));
+			if (retry) {
+				attempt.retries++;
+			}
+		}
+
+		if (retry) {
+			scheduler.schedule(() -> {
+				synchronized (this) {
+					queue.addFirst(attempt);
+				}
+				dispatch();
+			}, backoff(attempt.retries), TimeUnit.NANOSECONDS);
+		} else if (error != null) {
+			attempt.future.completeExceptionally(error);
+		} else if (throttled || (failed && isSafeToRetry(attempt.request, null))) {
+			attempt.future.completeExceptionally(new IOException(String.format(
+					"%s was answered with status %s after %s retries", describe(attempt.request), status,
+					attempt.retries)));
+		} else {
+			attempt.future.complete(response);
+		}
+
+		dispatch();
+	}
+
+	// honours the pause asked by the instance, for every request of the run
+	private void pauseFor(TransportRequest request, TransportResponse response, long now) {
+		long pause = 0;
+
+		String retryAfter = response.getHeader("Retry-After");
+		if (retryAfter != null) {
+			pause = parseDelay(retryAfter);
+		}
+
+		String remaining = response.getHeader("X-RateLimit-Remaining");
+		String reset = response.getHeader("X-RateLimit-Reset");
+		if (remaining != null && reset != null && remaining.trim().equals("0")) {
+			pause = Math.max(pause, parseDelay(reset));
+		}
+
+		pause = Math.min(pause, settings.maxPause);
+		if (pause > 0 && now + pause - pausedUntil > 0) {
+			pausedUntil = now + pause;
+			logger.info(String.format("%s is limiting the request rate; requests are paused for %s ms",
+					hostOf(request), TimeUnit.NANOSECONDS.toMillis(pause)));
+		}
+	}
+
+	// adds one request to the concurrency limit per limit of fast responses, and
+	// a twentieth of the maximum rate to the rate limit per second of them, so
+	// the rate recovers from a throttle in a few seconds
+	private void increase() {
+		concurrencyLimit = Math.min(settings.maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+		rateLimit = Math.min(settings.maxRate, rateLimit + settings.maxRate / 20 / rateLimit);
+	}
+
+	// halves the limits at most once per round trip, since the requests already
+	// in flight report the same congestion
+	private void decrease(long now) {
+		if (now - lastDecreaseAt < Math.max(smoothedLatency, TimeUnit.MILLISECONDS.toNanos(100))) {
+			return;
+		}
+
+		lastDecreaseAt = now;
+		concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+		rateLimit = Math.max(1, rateLimit / 2);
+		logger.debug(String.format("Request limits lowered to %s in flight and %.1f per second",
+				(int) concurrencyLimit, rateLimit));
+	}
+
+	private void recordFailure(TransportRequest request, long now) {
+		consecutiveFailures++;
+
+		if (circuit == Circuit.HALF_OPEN || consecutiveFailures >= settings.failureThreshold) {
+			if (circuit != Circuit.OPEN) {
+				logger.info(String.format(
+						"%s failed %s requests in a row; requests are refused for %s seconds before it is tried again",
+						hostOf(request), consecutiveFailures, TimeUnit.NANOSECONDS.toSeconds(settings.openDuration)));
+			}
+			circuit = Circuit.OPEN;
+			openUntil = now + settings.openDuration;
+			probeInFlight = false;
+		}
+	}
+
+	private void recordSuccess(TransportRequest request) {
+		if (circuit != Circuit.CLOSED) {
+			logger.info(String.format("%s answered again; requests are sent again", hostOf(request)));
+		}
+
+		circuit = Circuit.CLOSED;
+		consecutiveFailures = 0;
+		probeInFlight = false;
+	}
+
+	private void schedule(long delay) {
+		if (!dispatchScheduled) {
+			dispatchScheduled = true;
+			scheduler.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	// full jitter: a random delay up to the exponential backoff of the retry
+	private long backoff(int retry) {
+		long ceiling = Math.min(settings.maxBackoff, settings.backoff << Math.min(retry - 1, 20));
+		return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling) + 1);
+	}
+
+	/**
+	 * Returns whether a request can be sent again after an error: requests that
+	 * do not change anything twice, such as reads, updates and searches,
+	 * transitions, whose repeat Jira refuses once the first one was applied and
+	 * the Jira service then counts as closed by checking the issue status, and
+	 * any request that could not reach the instance at all. Creates and comments
+	 * are not sent again, since the instance may have processed them.
+	 **/
+	static boolean isSafeToRetry(TransportRequest request, Throwable error) {
+		for (Throwable current = error; current != null; current = current.getCause()) {
+			if (current instanceof ConnectException || current instanceof UnknownHostException) {
+				return true;
+			}
+		}
+
+		switch (request.getMethod()) {
+		case "GET":
+		case "HEAD":
+		case "PUT":
+		case "DELETE":
+			return true;
+		case "POST":
+			return pathOf(request).endsWith("/search") || transitionPath.matcher(pathOf(request)).find();
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the nanoseconds to wait for a 'Retry-After' or 'X-RateLimit-Reset'
+	 * value: seconds, an epoch second, or a date.
+	 **/
+	static long parseDelay(String value) {
+		String trimmed = value.trim();
+		long now = System.currentTimeMillis();
+		long until;
+
+		try {
+			if (trimmed.matches("\\d+")) {
+				long number = Long.parseLong(trimmed);
+				// values past 2001 are epoch seconds, not a number of seconds
+				if (number < 1_000_000_000L) {
+					return TimeUnit.SECONDS.toNanos(number);
+				}
+				until = TimeUnit.SECONDS.toMillis(number);
+			} else if (trimmed.indexOf(',') >= 0) {
+				until = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			} else if (trimmed.endsWith("Z")) {
+				until = Instant.parse(trimmed).toEpochMilli();
+			} else {
+				until = OffsetDateTime.parse(trimmed).toInstant().toEpochMilli();
+			}
+		} catch (NumberFormatException | DateTimeParseException e) {
+			return 0;
+		}
+
+		return TimeUnit.MILLISECONDS.toNanos(Math.max(0, until - now));
+	}
+
+	private static String pathOf(TransportRequest request) {
+		try {
+			String path = URI.create(request.getUrl()).getPath();
+			return path != null ? path : "";
+		} catch (IllegalArgumentException e) {
+			return request.getUrl();
+		}
+	}
+
+	/**
+	 * Returns the host and port a request is sent to, which requests are
+	 * governed by.
+	 **/
+	static String hostOf(TransportRequest request) {
+		try {
+			String authority = URI.create(request.getUrl()).getAuthority();
+			return authority != null ? authority : request.getUrl();
+		} catch (IllegalArgumentException e) {
+			return request.getUrl();
+		}
+	}
+
+	private static String describe(TransportRequest request) {
+		return String.format("%s %s", request.getMethod(), pathOf(request));
+	}
+
+	private enum Circuit {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Request sent through the governor, with the retries it took.
+	 **/
+	private static final class Attempt {
+
+		private final TransportRequest request;
+		private final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+		private int retries = 0;
+		private boolean probe = false;
+
+		private Attempt(TransportRequest request) {
+			this.request = request;
+		}
+	}
+
+	/**
+	 * Limits of a {@link RequestGovernor}.
+	 **/
+	public static final class Settings {
+
+		private int maxConcurrency = 20;
+		private double maxRate = 100;
+		private int maxRetries = 4;
+		private long backoff = TimeUnit.MILLISECONDS.toNanos(500);
+		private long maxBackoff = TimeUnit.SECONDS.toNanos(30);
+		private long maxPause = TimeUnit.MINUTES.toNanos(5);
+		private long targetLatency = TimeUnit.SECONDS.toNanos(3);
+		private int failureThreshold = 5;
+		private long openDuration = TimeUnit.SECONDS.toNanos(30);
+
+		/**
+		 * @param maxConcurrency maximum number of requests in flight.
+		 * @param maxRate        maximum number of requests started per second.
+		 **/
+		public Settings limits(int maxConcurrency, double maxRate) {
+			this.maxConcurrency = Math.max(1, maxConcurrency);
+			this.maxRate = Math.max(1, maxRate);
+			return this;
+		}
+
+		/**
+		 * @param maxRetries   retries of a throttled or failed request.
+		 * @param backoffMs    backoff before the first retry, doubled on each retry.
+		 * @param maxBackoffMs maximum backoff before a retry.
+		 * @param maxPauseMs   maximum pause honoured for a 'Retry-After' header.
+		 **/
+		public Settings retries(int maxRetries, long backoffMs, long maxBackoffMs, long maxPauseMs) {
+			this.maxRetries = Math.max(0, maxRetries);
+			this.backoff = TimeUnit.MILLISECONDS.toNanos(Math.max(1, backoffMs));
+			this.maxBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(backoffMs, maxBackoffMs));
+			this.maxPause = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxPauseMs));
+			return this;
+		}
+
+		/**
+		 * @param targetLatencyMs latency above which the limits are lowered.
+		 **/
+		public Settings targetLatency(long targetLatencyMs) {
+			this.targetLatency = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMs));
+			return this;
+		}
+
+		/**
+		 * @param failureThreshold failed requests in a row that open the circuit.
+		 * @param openSeconds      seconds requests are refused once it is open.
+		 **/
+		public Settings circuit(int failureThreshold, long openSeconds) {
+			this.failureThreshold = Math.max(1, failureThreshold);
+			this.openDuration = TimeUnit.SECONDS.toNanos(Math.max(1, openSeconds));
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes an HTTP request independently of the {@link HttpTransport} that
+ * sends it.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TransportRequest {
+
+	private final String method;
+	private final Map<String, String> headers = new LinkedHashMap<String, String>();
+	private final String body;
+	private String url;
+
+	private TransportRequest(String method, String url, String body) {
+		this.method = method;
+		this.url = url;
+		this.body = body;
+	}
+
+	public static TransportRequest get(String url) {
+		return new TransportRequest("GET", url, null);
+	}
+
+	public static TransportRequest delete(String url) {
+		return new TransportRequest("DELETE", url, null);
+	}
+
+	public static TransportRequest post(String url, Object payload) {
+		return new TransportRequest("POST", url, payload.toString()).header("Content-Type", "application/json");
+	}
+
+	public static TransportRequest put(String url, Object payload) {
+		return new TransportRequest("PUT", url, payload.toString()).header("Content-Type", "application/json");
+	}
+
+	public TransportRequest header(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Appends an URL encoded query parameter to the request URL.
+	 **/
+	public TransportRequest queryString(String name, String value) {
+		url = String.format("%s%s%s=%s", url, url.indexOf('?') < 0 ? "?" : "&", encode(name), encode(value));
+		return this;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public Map<String, String> getHeaders() {
+		return Collections.unmodifiableMap(headers);
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Holds the status, headers and decoded body of an HTTP response.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TransportResponse {
+
+	private final int status;
+	private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+	private final String body;
+
+	public TransportResponse(int status, Map<String, List<String>> headers, String body) {
+		this.status = status;
+		this.headers.putAll(headers);
+		this.body = body != null ? body : "";
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the first value of a header, ignoring the case of its name.
+	 *
+	 * @param name header name.
+	 * @return String object with the value, null if the header is missing.
+	 **/
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * Parses the body as a JSON object. Empty bodies and bodies that are not
+	 * objects are returned as an empty object.
+	 **/
+	public JSONObject getJson() {
+		String trimmed = body.trim();
+		return trimmed.startsWith("{") ? new JSONObject(trimmed) : new JSONObject();
+	}
+
+	/**
+	 * Parses the body as a JSON array. Empty bodies and bodies that are not arrays
+	 * are returned as an empty array.
+	 **/
+	public JSONArray getJsonArray() {
+		String trimmed = body.trim();
+		return trimmed.startsWith("[") ? new JSONArray(trimmed) : new JSONArray();
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.railflow.ahnnath.railflowcommandlinetool.api.http;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.mashape.unirest.http.HttpMethod;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.Unirest;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.mashape.unirest.request.HttpRequestWithBody;
+
+/**
+ * Sends requests with the static Unirest client that the services used before
+ * the transport layer existed. Calls are blocking, so they run on a fixed pool
+ * with one thread per pooled connection.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class UnirestTransport implements HttpTransport {
+
+	private final ExecutorService executor;
+
+	public UnirestTransport(int maxConnections, long connectTimeoutMs, long requestTimeoutMs) {
+		Unirest.setConcurrency(maxConnections, maxConnections);
+		Unirest.setTimeouts(connectTimeoutMs, requestTimeoutMs);
+
+		this.executor = Executors.newFixedThreadPool(maxConnections, runnable -> {
+			Thread thread = new Thread(runnable, "railflow-unirest");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		return CompletableFuture.supplyAsync(() -> {
+			HttpRequestWithBody unirestRequest = new HttpRequestWithBody(HttpMethod.valueOf(request.getMethod()),
+					request.getUrl());
+
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				unirestRequest.header(header.getKey(), header.getValue());
+			}
+
+			try {
+				HttpResponse<String> response = request.getBody() != null
+						? unirestRequest.body(request.getBody()).asString()
+						: unirestRequest.asString();
+
+				return new TransportResponse(response.getStatus(), response.getHeaders(), response.getBody());
+			} catch (UnirestException e) {
+				throw new CompletionException(new IOException(e.getMessage(), e));
+			}
+		}, executor);
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.railflow.ahnnath.railflowcommandlinetool.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.ExecutionPlan;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ActionExecutor;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.CommentThrottle;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Contains methods and attributes necessary to use the sub command 'apply' that
+ * sends to Jira the actions of an execution plan written by 'parse --plan'.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+
+@Component
+@Command(name = "apply", description = "Sends the actions of an execution plan written by 'parse --plan'.", mixinStandardHelpOptions = true)
+final public class ApplyCommand implements Runnable {
+
+	// The execution plan to apply
+	@Parameters(index = "0", paramLabel = "PLAN", description = "The execution plan to apply.")
+	File planFile;
+
+	@Autowired
+	ActionExecutor executor;
+
+	@Autowired
+	CommentThrottle commentThrottle;
+
+	@Autowired
+	ActionJournal journal;
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	RunMetrics metrics;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	final ObjectMapper mapper = new ObjectMapper();
+
+	private static Logger logger = LoggerFactory.getLogger(ApplyCommand.class);
+
+	@Override
+	public void run() {
+		metrics.reset();
+
+		try {
+			ExecutionPlan plan = mapper.readValue(planFile, ExecutionPlan.class);
+
+			// a plan decided for another project would update the wrong issues
+			if (plan.getProject() != null && !plan.getProject().equals(targetProject.trim())) {
+				logger.info(String.format("The execution plan was created for the project %s instead of %s",
+						plan.getProject(), targetProject.trim()));
+				return;
+			}
+
+			if (!jiraService.verifyRequiredCustomField()) {
+				return;
+			}
+
+			logger.info(String.format("Applying the execution plan %s created on %s", plan.getSummary(),
+					plan.getCreatedAt()));
+			jiraService.syncDefectIndex();
+			journal.begin(Collections.singletonList(planFile));
+			List<PlannedAction> notCompleted = executor.execute(plan.getActions(),
+					new HashMap<String, DefectLookup>());
+			commentThrottle.flush();
+
+			// the run is left unfinished, so applying the plan again only sends these
+			if (notCompleted.isEmpty()) {
+				journal.finish();
+			} else {
+				logger.info(String.format("%s actions of the plan were not completed; apply the plan again to retry them",
+						notCompleted.size()));
+			}
+
+		} catch (IOException e) {
+			logger.info("There was an error with the plan specified. The file should exist and have a JSON format");
+			logger.debug(e.getMessage());
+
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
+			logger.debug(e.getMessage());
+		}
+
+		finally {
+			jiraService.saveDefectIndex();
+			metrics.export();
+			logger.info("Apply process finished...");
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.railflow.ahnnath.railflowcommandlinetool.commands;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ActionExecutor;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.CommentThrottle;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionOutbox;
+
+import picocli.CommandLine.Command;
+
+/**
+ * Contains methods and attributes necessary to use the sub command 'flush',
+ * which sends the actions written to the outbox while Jira was unreachable.
+ * The actions are sent in batches of 'railflow.outbox.batch-size', and the
+ * ones that still cannot reach Jira are written to the outbox again. A spooled
+ * defect is only created if no open defect has its metadata by then, since the
+ * request may have reached Jira before the connection failed. The flush is
+ * recorded in an action journal of its own, so an interrupted flush does not
+ * send the same action twice, and a run of 'parse' is neither resumed nor
+ * finished by it.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+
+@Component
+@Command(name = "flush", description = "Sends the actions written to the outbox while Jira was unreachable.", mixinStandardHelpOptions = true)
+final public class FlushCommand implements Runnable {
+
+	@Autowired
+	ActionOutbox outbox;
+
+	@Autowired
+	ActionExecutor executor;
+
+	@Autowired
+	ActionJournal journal;
+
+	@Autowired
+	CommentThrottle commentThrottle;
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	RunMetrics metrics;
+
+	@Value("${railflow.outbox.batch-size:500}")
+	private int batchSize;
+
+	// the flush keeps a journal apart from the runs of 'parse' and 'apply'
+	private static final String journalName = "flush";
+
+	private static Logger logger = LoggerFactory.getLogger(FlushCommand.class);
+
+	@Override
+	public void run() {
+		metrics.reset();
+
+		try {
+			List<PlannedAction> actions = outbox.take();
+			if (actions.isEmpty()) {
+				logger.info("The outbox is empty");
+				return;
+			}
+
+			// the outbox is not drained, so the actions are taken again by the next flush
+			if (!jiraService.verifyRequiredCustomField()) {
+				return;
+			}
+
+			logger.info(String.format("Sending %s actions from the outbox", actions.size()));
+			jiraService.syncDefectIndex();
+			journal.begin(journalName, Collections.emptyList());
+
+			Map<String, DefectLookup> changes = new HashMap<String, DefectLookup>();
+			int size = Math.max(1, batchSize);
+			int notCompleted = 0;
+			for (int from = 0; from < actions.size(); from += size) {
+				List<PlannedAction> batch = withoutCreatedDefects(
+						actions.subList(from, Math.min(from + size, actions.size())), changes);
+				notCompleted += executor.execute(batch, changes).size();
+			}
+
+			if (notCompleted > 0) {
+				logger.info(String.format("%s of %s actions were not completed", notCompleted, actions.size()));
+			}
+
+			commentThrottle.flush();
+			journal.finish();
+			outbox.drained();
+
+		} catch (IOException e) {
+			logger.info("There was an error reading the outbox");
+			logger.debug(e.getMessage());
+
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
+			logger.debug(e.getMessage());
+		}
+
+		finally {
+			jiraService.saveDefectIndex();
+			metrics.export();
+			logger.info("Flush process finished...");
+		}
+	}
+
+	/**
+	 * Leaves out the spooled defects that were created anyway, because the
+	 * request reached Jira before the connection failed, or by a later run. Their
+	 * metadata is looked up again, in the defect index once synchronized or with
+	 * a JQL search, and among the defects created by earlier batches of the
+	 * flush.
+	 **/
+	private List<PlannedAction> withoutCreatedDefects(List<PlannedAction> batch, Map<String, DefectLookup> changes)
+			throws UnirestException {
+		List<String> keys = new ArrayList<String>();
+		for (PlannedAction action : batch) {
+			if (action.isCreate()) {
+				keys.add(action.getMetadata());
+			}
+		}
+		if (keys.isEmpty()) {
+			return batch;
+		}
+
+		Map<String, DefectLookup> defects = jiraService.findDefectsByMetadata(keys);
+		List<PlannedAction> pending = new ArrayList<PlannedAction>(batch.size());
+
+		for (PlannedAction action : batch) {
+			String metadata = action.getMetadata();
+			DefectLookup created = changes.get(metadata);
+			DefectLookup found = defects.get(metadata);
+			String openIssueId = created != null && created.getOpenIssueId() != null ? created.getOpenIssueId()
+					: found != null ? found.getOpenIssueId() : null;
+
+			if (action.isCreate() && openIssueId != null) {
+				logger.info(String.format("Skipping the spooled defect <%s> since the defect <%s> is open", metadata,
+						openIssueId));
+				continue;
+			}
+			pending.add(action);
+		}
+
+		return pending;
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.railflow.ahnnath.railflowcommandlinetool.commands;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Contains methods and attributes necessary to use the sub command 'migrate',
+ * which rewrites the legacy metadata of the existing defects of the target
+ * project as fingerprints, so they keep being found once
+ * 'railflow.fingerprint.mode' is 'fingerprint'. Defects that already have a
+ * fingerprint are left as they are, so the command can be run again after an
+ * interruption. Legacy metadata that differed only by attributes left out of
+ * the fingerprint, such as the suite time, gives several open defects the same
+ * fingerprint; the newest is kept, and the others are closed with a comment
+ * naming it. With '--dry-run', the defects and collisions are counted and
+ * nothing is changed.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+
+@Component
+@Command(name = "migrate", description = "Rewrites the legacy metadata of the existing defects as fingerprints.", mixinStandardHelpOptions = true)
+final public class MigrateCommand implements Runnable {
+
+	// Counts the defects to migrate without changing them
+	@Option(names = "--dry-run", description = "Counts the defects to migrate without changing them.")
+	boolean dryRun;
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	MetadataFingerprint fingerprint;
+
+	@Value("${railflow.apply.concurrency:16}")
+	private int concurrency;
+
+	private static Logger logger = LoggerFactory.getLogger(MigrateCommand.class);
+
+	@Override
+	public void run() {
+		if (fingerprint.isLegacy()) {
+			logger.info("The defects can only be migrated with railflow.fingerprint.mode=fingerprint");
+			return;
+		}
+
+		if (!jiraService.verifyRequiredCustomField()) {
+			return;
+		}
+
+		try {
+			Map<String, String> metadataByIssueId = jiraService.findDefectMetadata();
+			Map<String, String> updates = new LinkedHashMap<String, String>();
+			int unknown = 0;
+
+			for (Map.Entry<String, String> defect : metadataByIssueId.entrySet()) {
+				if (MetadataFingerprint.isFingerprint(defect.getValue())) {
+					continue;
+				}
+
+				String migrated = fingerprint.fromLegacy(defect.getValue());
+				if (migrated == null) {
+					unknown++;
+					logger.debug(String.format("The metadata of the issue [%s] has an unknown format: %s",
+							defect.getKey(), defect.getValue()));
+				} else {
+					updates.put(defect.getKey(), migrated);
+				}
+			}
+
+			logger.info(String.format("%s defects found: %s to migrate with %s, %s already migrated, %s with an unknown format",
+					metadataByIssueId.size(), updates.size(), fingerprint,
+					metadataByIssueId.size() - updates.size() - unknown, unknown));
+
+			Map<String, String> duplicates = findDuplicates(metadataByIssueId, updates);
+
+			if (dryRun || (updates.isEmpty() && duplicates.isEmpty())) {
+				return;
+			}
+
+			int migrated = migrate(updates);
+			logger.info(String.format("%s of %s defects were migrated", migrated, updates.size()));
+
+			int closed = closeDuplicates(duplicates);
+			logger.info(String.format("%s of %s duplicate defects were closed", closed, duplicates.size()));
+
+			// the index picks up the new values of the updated issues
+			jiraService.syncDefectIndex();
+
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
+			logger.debug(e.getMessage());
+		}
+
+		finally {
+			jiraService.saveDefectIndex();
+			logger.info("Migration process finished...");
+		}
+	}
+
+	/**
+	 * Finds the open defects that share their fingerprint, once migrated, with a
+	 * newer open defect. Issue ids grow as issues are created, so the defect with
+	 * the highest id is the newest.
+	 *
+	 * @return Map object with the id of the defect kept, by id of each older
+	 *         duplicate.
+	 **/
+	private Map<String, String> findDuplicates(Map<String, String> metadataByIssueId, Map<String, String> updates)
+			throws UnirestException {
+		Map<String, List<String>> openByFingerprint = new LinkedHashMap<String, List<String>>();
+
+		for (String issueId : jiraService.findDefectMetadata(true).keySet()) {
+			String metadata = metadataByIssueId.get(issueId);
+			String migrated = metadata != null && MetadataFingerprint.isFingerprint(metadata) ? metadata
+					: updates.get(issueId);
+
+			if (migrated != null) {
+				openByFingerprint.computeIfAbsent(migrated, key -> new ArrayList<String>()).add(issueId);
+			}
+		}
+
+		Map<String, String> duplicates = new LinkedHashMap<String, String>();
+		int collisions = 0;
+
+		for (Map.Entry<String, List<String>> defects : openByFingerprint.entrySet()) {
+			List<String> issueIds = defects.getValue();
+			if (issueIds.size() < 2) {
+				continue;
+			}
+
+			issueIds.sort(Comparator.comparingLong(Long::parseLong));
+			String kept = issueIds.get(issueIds.size() - 1);
+			for (String issueId : issueIds.subList(0, issueIds.size() - 1)) {
+				duplicates.put(issueId, kept);
+			}
+
+			collisions++;
+			logger.info(String.format("The open defects %s share the fingerprint %s; the defect [%s] is kept", issueIds,
+					defects.getKey(), kept));
+		}
+
+		if (collisions > 0) {
+			logger.info(String.format("%s fingerprints are shared by several open defects: %s older defects to close",
+					collisions, duplicates.size()));
+		}
+
+		return duplicates;
+	}
+
+	// comments on each duplicate with the defect kept, then closes it
+	private int closeDuplicates(Map<String, String> duplicates) {
+		List<CompletableFuture<Boolean>> window = new ArrayList<CompletableFuture<Boolean>>();
+		int closed = 0;
+
+		for (Map.Entry<String, String> duplicate : duplicates.entrySet()) {
+			String comment = String.format("<railflow: duplicate of [%s]>", duplicate.getValue());
+			window.add(jiraService.addCommentToIssueAsync(comment, duplicate.getKey())
+					.thenCompose(commentId -> jiraService.closeIssueAsync(duplicate.getKey())));
+
+			if (window.size() >= Math.max(1, concurrency)) {
+				closed += drain(window);
+			}
+		}
+
+		return closed + drain(window);
+	}
+
+	// updates the defects in groups of 'railflow.apply.concurrency' requests
+	private int migrate(Map<String, String> updates) {
+		List<CompletableFuture<Boolean>> window = new ArrayList<CompletableFuture<Boolean>>();
+		int migrated = 0;
+
+		for (Map.Entry<String, String> update : updates.entrySet()) {
+			window.add(jiraService.updateDefectMetadataAsync(update.getKey(), update.getValue()));
+
+			if (window.size() >= Math.max(1, concurrency)) {
+				migrated += drain(window);
+			}
+		}
+
+		return migrated + drain(window);
+	}
+
+	private int drain(List<CompletableFuture<Boolean>> window) {
+		int migrated = 0;
+
+		for (CompletableFuture<Boolean> request : window) {
+			try {
+				if (request.join()) {
+					migrated++;
+				}
+			} catch (CompletionException e) {
+				logger.debug(e.getMessage());
+			}
+		}
+		window.clear();
+
+		return migrated;
+	}
+
+}
@@ -1,23 +1,41 @@
 package com.railflow.ahnnath.railflowcommandlinetool.commands;
 
 import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.ExecutionPlan;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.JiraResultSink;
 import com.railflow.ahnnath.railflowcommandlinetool.util.DomParser;
+import com.railflow.ahnnath.railflowcommandlinetool.util.ReportFileResolver;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 /**
  * Contains methods and attributes necessary to use the sub command 'parse' that
  * is used by the application tool to parse XML documents via path to local
- * files.
+ * files. Several files, directories and glob patterns can be given, as well as
+ * gzip files, zip and tar archives, or '-' for a report piped to the standard
+ * input; their files are parsed in parallel and reconciled with Jira as a single run. With
+ * '--plan', the Jira actions are written to a file to be reviewed and sent
+ * later with the 'apply' sub command. With '--sinks', the test cases are sent
+ * to the given result sinks instead of those of 'railflow.sinks'; Jira is only
+ * verified when it is one of them. The request and parse metrics of the run
+ * are exported when it finishes.
  * 
  * @author ahn-nath
  * @version 2.0
@@ -26,12 +44,20 @@ import picocli.CommandLine.Parameters;
  **/
 
 @Component
-@Command(name = "parse", description = "Receives a given file and parses it.", mixinStandardHelpOptions = true)
+@Command(name = "parse", description = "Receives the given files, directories or glob patterns and parses their files.", mixinStandardHelpOptions = true)
 final public class ParseCommand implements Runnable {
 
-	// The file whose data to parse
-	@Parameters(index = "0", description = "The file whose data to parse.")
-	File file;
+	// The files, directories or glob patterns whose data to parse
+	@Parameters(arity = "1..*", paramLabel = "FILE", description = "The files, directories or glob patterns whose data to parse. Reports can be gzipped or in zip or tar archives, and '-' reads the standard input.")
+	List<String> inputs;
+
+	// The file the execution plan is written to instead of updating Jira
+	@Option(names = "--plan", paramLabel = "FILE", description = "Writes the Jira actions to the given JSON file instead of sending them.")
+	File planFile;
+
+	// The result sinks the test cases are sent to
+	@Option(names = "--sinks", split = ",", paramLabel = "SINK", description = "The result sinks to send the test cases to, such as jira, testrail or json. Defaults to the 'railflow.sinks' property.")
+	List<String> sinkNames;
 
 	@Autowired
 	DomParser parser;
@@ -39,38 +65,42 @@ final public class ParseCommand implements Runnable {
 	@Autowired
 	JiraApiService jiraService;
 
-	@Value("${jira.api.instance}")
-	private String apiInstanceUrl;
+	@Autowired
+	RunMetrics metrics;
 
-	@Value("${jira.api.custom-field-name}")
-	private String apiCustomField;
+	@Value("${jira.api.target.project}")
+	private String targetProject;
 
-	private static Logger logger = LoggerFactory.getLogger(ParseCommand.class);
+	@Value("${railflow.sinks:jira,testrail}")
+	private String defaultSinks;
+
+	final ObjectMapper mapper = new ObjectMapper();
 
-	// The custom issue field is required to add the 'railflow-metadata'
-	// corresponding to each 'testcase' to be created as a bug
-	private static boolean hasCustomField = false;
+	private final ReportFileResolver resolver = new ReportFileResolver();
+
+	private static Logger logger = LoggerFactory.getLogger(ParseCommand.class);
 
 	@Override
 	public void run() {
+		metrics.reset();
+		List<File> files = resolver.resolve(inputs);
+
+		if (files.isEmpty()) {
+			logger.info("No report files were found for the given inputs");
+			return;
+		}
+
+		List<String> sinks = sinkNames != null ? sinkNames : Arrays.asList(defaultSinks.split(","));
+
 		try {
-			if (!hasCustomField) {
-				logger.info(String.format("Verifying if required custom field <%s> exist in %s", apiCustomField,
-						apiInstanceUrl));
-				boolean doesRequiredCustomFieldExist = jiraService.doesRequiredCustomFieldExist(apiCustomField);
-
-				if (doesRequiredCustomFieldExist) {
-					hasCustomField = true;
-					logger.info(String.format("Successfully verified. The required custom field <%s> exist in %s",
-							apiCustomField, apiInstanceUrl));
-					parser.parseXMLDoc(file);
-				} else {
-					logger.info(String.format(
-							"Unsuccessfully verified. The required custom field does not seem to exist in %s. Please create a custom field with name '%s' and try again",
-							apiInstanceUrl, apiCustomField));
-				}
+			if (planFile == null && sinks.stream().noneMatch(sink -> sink.trim().equalsIgnoreCase(JiraResultSink.name))) {
+				// Jira is not one of the sinks, so neither the field nor the index is needed
+				parser.parseXMLDocs(files, sinks);
 			} else {
-				parser.parseXMLDoc(file);
+				// the id of the field is cached on disk, so this is usually not a request
+				if (jiraService.verifyRequiredCustomField()) {
+					parse(files, sinks);
+				}
 			}
 
 		} catch (UnirestException e) {
@@ -79,9 +109,36 @@ final public class ParseCommand implements Runnable {
 		}
 
 		finally {
+			jiraService.saveDefectIndex();
+			metrics.export();
 			logger.info("Parsing process finished...");
 		}
 
 	}
 
+	// brings the local defect index up to date once before the files are parsed
+	private void parse(List<File> files, List<String> sinks) throws UnirestException {
+		jiraService.syncDefectIndex();
+
+		if (planFile == null) {
+			parser.parseXMLDocs(files, sinks);
+			return;
+		}
+
+		ExecutionPlan plan = new ExecutionPlan(targetProject.trim(), Instant.now().toString());
+		if (!parser.planXMLDocs(files, plan)) {
+			logger.warn(String.format("The execution plan was not written to %s, since the actions of some test "
+					+ "cases could not be planned", planFile));
+			return;
+		}
+
+		try {
+			mapper.writerWithDefaultPrettyPrinter().writeValue(planFile, plan);
+			logger.info(String.format("The execution plan %s was written to %s", plan.getSummary(), planFile));
+		} catch (IOException e) {
+			logger.info(String.format("There was an error writing the execution plan to %s", planFile));
+			logger.debug(e.getMessage());
+		}
+	}
+
 }
@@ -42,6 +42,10 @@ public class RailflowCliCommand implements Runnable {
     public static void main(String[] args) {
     	 CommandLine commandLine = new CommandLine(new  RailflowCliCommand());
          commandLine.addSubcommand("parse", new ParseCommand());
+         commandLine.addSubcommand("apply", new ApplyCommand());
+         commandLine.addSubcommand("serve", new ServeCommand());
+         commandLine.addSubcommand("migrate", new MigrateCommand());
+         commandLine.addSubcommand("flush", new FlushCommand());
 
          commandLine.parseWithHandler(new RunLast(), args);
     }
@@ -0,0 +1,160 @@
+package com.railflow.ahnnath.railflowcommandlinetool.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.serve.DropDirectoryWatcher;
+import com.railflow.ahnnath.railflowcommandlinetool.serve.IngestHttpServer;
+import com.railflow.ahnnath.railflowcommandlinetool.serve.IngestService;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Contains methods and attributes necessary to use the sub command 'serve' that
+ * keeps the application running and parses the JUnit reports dropped in the
+ * watched directories or uploaded to a local HTTP endpoint. The Jira
+ * connections, the defect index and the other caches stay warm between reports,
+ * and the required custom field is only verified once.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+
+@Component
+@Command(name = "serve", description = "Keeps running and parses the reports dropped in the watched directories or uploaded over HTTP.", mixinStandardHelpOptions = true)
+final public class ServeCommand implements Runnable {
+
+	// The directories to watch for reports
+	@Option(names = "--watch", paramLabel = "DIR", description = "A directory to watch for reports. Can be repeated.")
+	List<File> watchDirectories;
+
+	// The port of the upload endpoint
+	@Option(names = "--port", description = "The port of the upload endpoint, -1 to disable it.")
+	Integer port;
+
+	@Autowired
+	IngestService ingestService;
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Value("${railflow.serve.watch-dirs:}")
+	private String defaultWatchDirectories;
+
+	@Value("${railflow.serve.host:127.0.0.1}")
+	private String host;
+
+	@Value("${railflow.serve.port:8787}")
+	private int defaultPort;
+
+	@Value("${railflow.serve.settle-ms:1000}")
+	private long settleMillis;
+
+	@Value("${railflow.serve.max-report-mb:100}")
+	private long maxReportMegabytes;
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDirectory;
+
+	private static Logger logger = LoggerFactory.getLogger(ServeCommand.class);
+
+	@Override
+	public void run() {
+		if (!jiraService.verifyRequiredCustomField()) {
+			return;
+		}
+
+		List<Path> directories = getWatchDirectories();
+		int httpPort = port != null ? port : defaultPort;
+		Thread watcher = null;
+		IngestHttpServer server = null;
+
+		try {
+			if (!directories.isEmpty()) {
+				watcher = new Thread(new DropDirectoryWatcher(directories, ingestService, settleMillis),
+						"railflow-watch");
+				watcher.setDaemon(true);
+				watcher.start();
+			}
+
+			if (httpPort >= 0) {
+				Path spoolDirectory = Paths.get(cacheDirectory, "spool");
+				server = new IngestHttpServer(host, httpPort, spoolDirectory, maxReportMegabytes * 1024 * 1024,
+						ingestService);
+				requeueUploads(spoolDirectory, server.getFailedDirectory());
+				server.start();
+			}
+
+			if (watcher == null && server == null) {
+				logger.info("There is nothing to serve. Please specify a directory to watch or a port");
+				return;
+			}
+
+			// parses the received reports until the application is stopped
+			ingestService.run();
+
+		} catch (IOException e) {
+			logger.info(String.format("The upload endpoint could not be started on %s:%s", host, httpPort));
+			logger.debug(e.getMessage());
+		}
+
+		finally {
+			if (server != null) {
+				server.close();
+			}
+			if (watcher != null) {
+				watcher.interrupt();
+			}
+			jiraService.saveDefectIndex();
+			logger.info("Serve process finished...");
+		}
+	}
+
+	private List<Path> getWatchDirectories() {
+		List<Path> directories = new ArrayList<Path>();
+
+		if (watchDirectories != null && !watchDirectories.isEmpty()) {
+			for (File directory : watchDirectories) {
+				directories.add(directory.toPath());
+			}
+		} else {
+			for (String directory : defaultWatchDirectories.split(",")) {
+				if (!directory.trim().isEmpty()) {
+					directories.add(Paths.get(directory.trim()));
+				}
+			}
+		}
+
+		return directories;
+	}
+
+	// uploads received before the application was stopped are parsed again
+	private void requeueUploads(Path spoolDirectory, Path failedDirectory) throws IOException {
+		try (DirectoryStream<Path> uploads = Files.newDirectoryStream(spoolDirectory, "upload-*")) {
+			for (Path upload : uploads) {
+				if (upload.getFileName().toString().endsWith(".part")) {
+					Files.deleteIfExists(upload);
+				} else {
+					ingestService.submit(upload.toFile(), null, failedDirectory);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.railflow.ahnnath.railflowcommandlinetool.metrics;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+
+/**
+ * Decorates a {@link HttpTransport} to record the latency of every request in
+ * {@link RunMetrics}, by method and path. Issue ids and keys are left out of
+ * the path, so all the comments of a run are counted as one endpoint. TestRail
+ * requests are named after the API path given in their query, without ids.
+ * Responses with a status of 400 or above count as errors, and so do requests
+ * that could not be sent.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class InstrumentedTransport implements HttpTransport {
+
+	private static final Pattern issueIdOrKey = Pattern.compile("/issue/(?!bulk(/|$))[^/]+");
+	private static final Pattern testRailId = Pattern.compile("/\\d+(?=/|$)");
+
+	private final HttpTransport delegate;
+	private final RunMetrics metrics;
+
+	public InstrumentedTransport(HttpTransport delegate, RunMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		String endpoint = endpointOf(request);
+		long startedAt = System.nanoTime();
+
+		return delegate.sendAsync(request).whenComplete((response, error) -> metrics.recordRequest(endpoint,
+				System.nanoTime() - startedAt, error != null || response.getStatus() >= 400));
+	}
+
+	/**
+	 * Returns the method and path of a request, without its query and with
+	 * '{id}' in place of issue ids and keys. For TestRail, whose API path is the
+	 * query of 'index.php', the API path is returned with '{id}' in place of
+	 * project, run and case ids.
+	 **/
+	static String endpointOf(TransportRequest request) {
+		String path;
+		String query = null;
+		try {
+			URI uri = URI.create(request.getUrl());
+			path = uri.getPath();
+			query = uri.getRawQuery();
+		} catch (IllegalArgumentException e) {
+			path = request.getUrl();
+		}
+
+		if (path != null && path.endsWith("/index.php") && query != null && query.startsWith("/api/")) {
+			int parameters = query.indexOf('&');
+			String apiPath = parameters < 0 ? query : query.substring(0, parameters);
+			return String.format("%s %s", request.getMethod(), testRailId.matcher(apiPath).replaceAll("/{id}"));
+		}
+
+		return String.format("%s %s", request.getMethod(), issueIdOrKey.matcher(path).replaceAll("/issue/{id}"));
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.railflow.ahnnath.railflowcommandlinetool.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in logarithmic buckets: four buckets per power of two of
+ * microseconds, from 1 microsecond to about 70 minutes. Percentiles are read
+ * from the bucket bounds, so they are exact to within 19%, and recording never
+ * allocates or locks, so the histogram can be shared by every request thread.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class LatencyHistogram {
+
+	static final int bucketsPerPowerOfTwo = 4;
+	static final int buckets = 32 * bucketsPerPowerOfTwo + 1;
+
+	private static final double log2 = Math.log(2);
+
+	private final AtomicLongArray counts = new AtomicLongArray(buckets);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sumNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(value));
+		count.incrementAndGet();
+		sumNanos.addAndGet(value);
+		maxNanos.accumulateAndGet(value, Math::max);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public double getSumSeconds() {
+		return sumNanos.get() / 1e9;
+	}
+
+	public double getMaxSeconds() {
+		return maxNanos.get() / 1e9;
+	}
+
+	/**
+	 * Returns the duration below which the given share of the recorded durations
+	 * fall.
+	 *
+	 * @param quantile share between 0 and 1.
+	 * @return double with the duration in seconds, 0 if nothing was recorded.
+	 **/
+	public double getQuantileSeconds(double quantile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < buckets; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBoundSeconds(i), getMaxSeconds());
+			}
+		}
+
+		return getMaxSeconds();
+	}
+
+	/**
+	 * Returns the number of durations up to the given bucket, included.
+	 **/
+	long getCumulativeCount(int index) {
+		long seen = 0;
+		for (int i = 0; i <= index; i++) {
+			seen += counts.get(i);
+		}
+		return seen;
+	}
+
+	static double upperBoundSeconds(int index) {
+		return Math.pow(2, (double) index / bucketsPerPowerOfTwo) / 1e6;
+	}
+
+	private static int indexOf(long nanos) {
+		double micros = nanos / 1e3;
+		if (micros <= 1) {
+			return 0;
+		}
+
+		int index = (int) Math.ceil(bucketsPerPowerOfTwo * Math.log(micros) / log2);
+		return Math.min(buckets - 1, index);
+	}
+
+}
@@ -0,0 +1,266 @@
+package com.railflow.ahnnath.railflowcommandlinetool.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects the performance metrics of a run: the requests, errors and latency
+ * of every Jira endpoint, the time spent in each phase (index sync, file
+ * parsing, batch reconciliation) and the number of test cases parsed. At the
+ * end of a run they are written to the 'railflow.metrics.dir' directory as a
+ * Prometheus text file, which can be collected by the textfile collector of
+ * the node exporter, and as a JSON summary for CI to chart.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class RunMetrics {
+
+	private static Logger logger = LoggerFactory.getLogger(RunMetrics.class);
+
+	private static final double[] quantiles = { 0.5, 0.95, 0.99 };
+
+	@Value("${railflow.metrics.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railflow.metrics.dir:${railflow.cache.dir:${user.home}/.railflow}/metrics}")
+	private String metricsDir;
+
+	private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+	private final Map<String, LatencyHistogram> phases = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final AtomicLong testCases = new AtomicLong();
+	private final AtomicLong parseNanos = new AtomicLong();
+	private volatile long startedAt = System.currentTimeMillis();
+
+	/**
+	 * Records a request made to the Jira API.
+	 *
+	 * @param endpoint method and path of the request, without ids.
+	 * @param nanos    time until the response or the error.
+	 * @param error    whether the request failed or was answered with an error
+	 *                 status.
+	 **/
+	public void recordRequest(String endpoint, long nanos, boolean error) {
+		EndpointMetrics metrics = endpoints.computeIfAbsent(endpoint, key -> new EndpointMetrics());
+		metrics.latency.record(nanos);
+		if (error) {
+			metrics.errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records the duration of one occurrence of a phase of the run.
+	 **/
+	public void recordPhase(String phase, long nanos) {
+		phases.computeIfAbsent(phase, key -> new LatencyHistogram()).record(nanos);
+	}
+
+	/**
+	 * Records the test cases read by a parse and the time it took, from the first
+	 * file opened until every test case was reconciled.
+	 **/
+	public void recordParse(long parsedTestCases, long nanos) {
+		testCases.addAndGet(parsedTestCases);
+		parseNanos.addAndGet(nanos);
+		recordPhase("parse", nanos);
+	}
+
+	public long getTestCases() {
+		return testCases.get();
+	}
+
+	/**
+	 * Returns the test cases parsed per second of parsing, 0 if nothing was
+	 * parsed.
+	 **/
+	public double getParseRate() {
+		long nanos = parseNanos.get();
+		return nanos > 0 ? testCases.get() / (nanos / 1e9) : 0;
+	}
+
+	/**
+	 * Returns the metrics of every endpoint called, by endpoint.
+	 **/
+	public Map<String, EndpointMetrics> getEndpoints() {
+		return new TreeMap<String, EndpointMetrics>(endpoints);
+	}
+
+	/**
+	 * Forgets the metrics recorded so far, so the next export only covers the
+	 * runs that follow.
+	 **/
+	public void reset() {
+		endpoints.clear();
+		phases.clear();
+		testCases.set(0);
+		parseNanos.set(0);
+		startedAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Writes 'railflow-metrics.prom' and 'railflow-metrics.json' to the metrics
+	 * directory, replacing the files of the previous run. Errors are logged and
+	 * never fail the run.
+	 **/
+	public void export() {
+		if (!enabled) {
+			return;
+		}
+
+		Path directory = Paths.get(metricsDir);
+		try {
+			Files.createDirectories(directory);
+			write(directory.resolve("railflow-metrics.prom"), toPrometheus());
+			write(directory.resolve("railflow-metrics.json"), toJson().toString(2));
+
+			logger.info(String.format("The metrics of the run were written to %s", directory));
+		} catch (IOException e) {
+			logger.info(String.format("The metrics of the run could not be written to %s", directory));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Formats the metrics in the Prometheus text exposition format.
+	 **/
+	public String toPrometheus() {
+		StringBuilder text = new StringBuilder();
+		Map<String, EndpointMetrics> sortedEndpoints = getEndpoints();
+		Map<String, LatencyHistogram> sortedPhases = new TreeMap<String, LatencyHistogram>(phases);
+
+		text.append("# HELP railflow_http_requests_total Requests made to the Jira API.\n");
+		text.append("# TYPE railflow_http_requests_total counter\n");
+		sortedEndpoints.forEach((endpoint, metrics) -> text.append(String.format("railflow_http_requests_total{%s} %s\n",
+				label("endpoint", endpoint), metrics.getRequests())));
+
+		text.append("# HELP railflow_http_request_errors_total Requests that failed or were answered with an error status.\n");
+		text.append("# TYPE railflow_http_request_errors_total counter\n");
+		sortedEndpoints.forEach((endpoint, metrics) -> text.append(String.format(
+				"railflow_http_request_errors_total{%s} %s\n", label("endpoint", endpoint), metrics.getErrors())));
+
+		text.append("# HELP railflow_http_request_duration_seconds Latency of the requests made to the Jira API.\n");
+		text.append("# TYPE railflow_http_request_duration_seconds histogram\n");
+		sortedEndpoints.forEach((endpoint, metrics) -> appendHistogram(text, "railflow_http_request_duration_seconds",
+				label("endpoint", endpoint), metrics.latency));
+
+		text.append("# HELP railflow_http_request_latency_seconds Latency percentiles of the requests made to the Jira API.\n");
+		text.append("# TYPE railflow_http_request_latency_seconds gauge\n");
+		sortedEndpoints.forEach((endpoint, metrics) -> appendQuantiles(text, "railflow_http_request_latency_seconds",
+				label("endpoint", endpoint), metrics.latency));
+
+		text.append("# HELP railflow_phase_duration_seconds Duration of the phases of the run.\n");
+		text.append("# TYPE railflow_phase_duration_seconds histogram\n");
+		sortedPhases.forEach((phase, histogram) -> appendHistogram(text, "railflow_phase_duration_seconds",
+				label("phase", phase), histogram));
+
+		text.append("# HELP railflow_testcases_parsed_total Test cases read from the reports.\n");
+		text.append("# TYPE railflow_testcases_parsed_total counter\n");
+		text.append(String.format("railflow_testcases_parsed_total %s\n", testCases.get()));
+
+		text.append("# HELP railflow_parse_rate_testcases_per_second Test cases parsed and reconciled per second.\n");
+		text.append("# TYPE railflow_parse_rate_testcases_per_second gauge\n");
+		text.append(String.format(Locale.ROOT, "railflow_parse_rate_testcases_per_second %.3f\n", getParseRate()));
+
+		text.append("# HELP railflow_run_start_time_seconds Start time of the run since the epoch.\n");
+		text.append("# TYPE railflow_run_start_time_seconds gauge\n");
+		text.append(String.format(Locale.ROOT, "railflow_run_start_time_seconds %.3f\n", startedAt / 1e3));
+
+		return text.toString();
+	}
+
+	/**
+	 * Summarizes the metrics as JSON: counts, errors and percentiles by endpoint
+	 * and by phase, and the parse rate.
+	 **/
+	public JSONObject toJson() {
+		JSONObject requests = new JSONObject();
+		getEndpoints().forEach((endpoint, metrics) -> requests.put(endpoint,
+				summarize(metrics.latency).put("errors", metrics.getErrors())));
+
+		JSONObject phaseSummaries = new JSONObject();
+		new TreeMap<String, LatencyHistogram>(phases)
+				.forEach((phase, histogram) -> phaseSummaries.put(phase, summarize(histogram)));
+
+		return new JSONObject().put("startedAt", Instant.ofEpochMilli(startedAt).toString())
+				.put("finishedAt", Instant.now().toString()).put("testCases", testCases.get())
+				.put("parseSeconds", parseNanos.get() / 1e9).put("testCasesPerSecond", getParseRate())
+				.put("requests", requests).put("phases", phaseSummaries);
+	}
+
+	private static JSONObject summarize(LatencyHistogram histogram) {
+		return new JSONObject().put("count", histogram.getCount()).put("sumSeconds", histogram.getSumSeconds())
+				.put("p50Seconds", histogram.getQuantileSeconds(0.5))
+				.put("p95Seconds", histogram.getQuantileSeconds(0.95))
+				.put("p99Seconds", histogram.getQuantileSeconds(0.99)).put("maxSeconds", histogram.getMaxSeconds());
+	}
+
+	// one bucket per power of two of microseconds keeps the file short
+	private static void appendHistogram(StringBuilder text, String name, String labels, LatencyHistogram histogram) {
+		for (int i = 0; i < LatencyHistogram.buckets; i += LatencyHistogram.bucketsPerPowerOfTwo) {
+			text.append(String.format(Locale.ROOT, "%s_bucket{%s,le=\"%s\"} %s\n", name, labels,
+					LatencyHistogram.upperBoundSeconds(i), histogram.getCumulativeCount(i)));
+		}
+		text.append(String.format("%s_bucket{%s,le=\"+Inf\"} %s\n", name, labels, histogram.getCount()));
+		text.append(String.format(Locale.ROOT, "%s_sum{%s} %.6f\n", name, labels, histogram.getSumSeconds()));
+		text.append(String.format("%s_count{%s} %s\n", name, labels, histogram.getCount()));
+	}
+
+	private static void appendQuantiles(StringBuilder text, String name, String labels, LatencyHistogram histogram) {
+		for (double quantile : quantiles) {
+			text.append(String.format(Locale.ROOT, "%s{%s,quantile=\"%s\"} %.6f\n", name, labels, quantile,
+					histogram.getQuantileSeconds(quantile)));
+		}
+	}
+
+	private static String label(String name, String value) {
+		return String.format("%s=\"%s\"", name, value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+	}
+
+	// replaces the file atomically so a collector never reads a partial file
+	private static void write(Path path, String content) throws IOException {
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Requests, errors and latency of a single endpoint.
+	 **/
+	public static final class EndpointMetrics {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final AtomicLong errors = new AtomicLong();
+
+		public long getRequests() {
+			return latency.getCount();
+		}
+
+		public long getErrors() {
+			return errors.get();
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+	}
+
+}
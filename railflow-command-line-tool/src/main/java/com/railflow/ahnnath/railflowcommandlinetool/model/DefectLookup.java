@@ -0,0 +1,41 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+/**
+ * Holds the Jira defects found for a single metadata value: the open defect, if
+ * any, and the closed defect, if any.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class DefectLookup {
+
+	private String openIssueId;
+	private String closedIssueId;
+
+	public DefectLookup() {
+	}
+
+	public DefectLookup(String openIssueId, String closedIssueId) {
+		this.openIssueId = openIssueId;
+		this.closedIssueId = closedIssueId;
+	}
+
+	public String getOpenIssueId() {
+		return openIssueId;
+	}
+
+	public void setOpenIssueId(String openIssueId) {
+		this.openIssueId = openIssueId;
+	}
+
+	public String getClosedIssueId() {
+		return closedIssueId;
+	}
+
+	public void setClosedIssueId(String closedIssueId) {
+		this.closedIssueId = closedIssueId;
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Holds the Jira requests decided for a run, so they can be reviewed before
+ * they are applied. Actions that would make the same request are kept once,
+ * and they are listed grouped by endpoint: defect creations first, then
+ * comments and transitions ordered by issue. Actions can be added from several
+ * threads.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class ExecutionPlan {
+
+	private static final Comparator<PlannedAction> byEndpoint = Comparator
+			.comparingInt((PlannedAction action) -> action.isCreate() ? 0 : action.getType().ordinal())
+			.thenComparing(PlannedAction::getIssueId, Comparator.nullsFirst(
+					Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder())))
+			.thenComparing(PlannedAction::getMetadata, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	private final String project;
+	private final String createdAt;
+	private final Set<PlannedAction> actions = new LinkedHashSet<PlannedAction>();
+
+	public ExecutionPlan(String project, String createdAt) {
+		this.project = project;
+		this.createdAt = createdAt;
+	}
+
+	@JsonCreator
+	public ExecutionPlan(@JsonProperty("project") String project, @JsonProperty("createdAt") String createdAt,
+			@JsonProperty("actions") List<PlannedAction> actions) {
+		this(project, createdAt);
+		if (actions != null) {
+			this.actions.addAll(actions);
+		}
+	}
+
+	public String getProject() {
+		return project;
+	}
+
+	public String getCreatedAt() {
+		return createdAt;
+	}
+
+	public synchronized void addAll(Collection<PlannedAction> actions) {
+		this.actions.addAll(actions);
+	}
+
+	/**
+	 * Returns the number of actions of each type.
+	 **/
+	public synchronized Map<PlannedAction.Type, Integer> getSummary() {
+		Map<PlannedAction.Type, Integer> summary = new EnumMap<PlannedAction.Type, Integer>(PlannedAction.Type.class);
+		for (PlannedAction.Type type : PlannedAction.Type.values()) {
+			summary.put(type, 0);
+		}
+		for (PlannedAction action : actions) {
+			summary.merge(action.getType(), 1, Integer::sum);
+		}
+		return summary;
+	}
+
+	/**
+	 * Returns the actions grouped by endpoint.
+	 **/
+	public synchronized List<PlannedAction> getActions() {
+		List<PlannedAction> sorted = new ArrayList<PlannedAction>(actions);
+		sorted.sort(byEndpoint);
+		return sorted;
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the metadata stored in the custom field of Jira defects. In
+ * 'fingerprint' mode the metadata is a 128-bit hash of the chosen test case
+ * attributes (the class name and test name by default), written as 32
+ * hexadecimal characters: it is the same on every run of the test, so defects
+ * can be indexed and cached, and Jira resolves it as a single search term. In
+ * 'legacy' mode the metadata has the format
+ * [suiteName-suiteTestsNumber-suiteTime-testName-testClassName] used before.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class MetadataFingerprint {
+
+	/**
+	 * Attributes of a test case that can be part of the fingerprint.
+	 **/
+	public enum Component {
+		SUITE, TESTS, TIME, NAME, CLASSNAME
+	}
+
+	private static final MetadataFingerprint legacy = new MetadataFingerprint(Collections.<Component>emptyList(), true);
+
+	private static final Pattern fingerprint = Pattern.compile("[0-9a-f]{32}");
+	private static final Pattern legacyMetadata = Pattern.compile("(.*?)-(\\d*)-(\\d*(?:\\.\\d*)?)-(.*)-([^-]*)");
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private final List<Component> components;
+	private final boolean isLegacy;
+
+	private MetadataFingerprint(List<Component> components, boolean isLegacy) {
+		this.components = components;
+		this.isLegacy = isLegacy;
+	}
+
+	/**
+	 * Returns the strategy that builds metadata with the legacy format.
+	 **/
+	public static MetadataFingerprint legacy() {
+		return legacy;
+	}
+
+	/**
+	 * Returns the strategy that hashes the given attributes, in that order.
+	 *
+	 * @param components comma separated attributes: suite, tests, time, name and
+	 *                   classname.
+	 * @throws IllegalArgumentException if an attribute is unknown or none is
+	 *                                  given.
+	 **/
+	public static MetadataFingerprint of(String components) {
+		List<Component> parsed = new ArrayList<Component>();
+
+		for (String component : components.split(",")) {
+			if (!component.isBlank()) {
+				parsed.add(Component.valueOf(component.trim().toUpperCase(Locale.ROOT)));
+			}
+		}
+		if (parsed.isEmpty()) {
+			throw new IllegalArgumentException("At least one fingerprint component is required");
+		}
+
+		return new MetadataFingerprint(Collections.unmodifiableList(parsed), false);
+	}
+
+	/**
+	 * Returns whether a metadata value is a fingerprint rather than legacy
+	 * metadata.
+	 **/
+	public static boolean isFingerprint(String metadata) {
+		return metadata != null && fingerprint.matcher(metadata).matches();
+	}
+
+	public boolean isLegacy() {
+		return isLegacy;
+	}
+
+	public List<Component> getComponents() {
+		return components;
+	}
+
+	/**
+	 * Builds the metadata of a test case.
+	 **/
+	public String compute(TestCaseResult testCase) {
+		TestSuiteResult suite = testCase.getSuite();
+
+		if (isLegacy) {
+			return String.format("%s-%s-%s-%s-%s", suite.getName(), suite.getTests(), suite.getTime(),
+					testCase.getName(), testCase.getClassName());
+		}
+
+		return hash(suite.getName(), suite.getTests(), suite.getTime(), testCase.getName(), testCase.getClassName());
+	}
+
+	/**
+	 * Builds the fingerprint of a defect from its legacy metadata, so existing
+	 * defects can be migrated.
+	 *
+	 * @param metadata legacy metadata stored on the defect.
+	 * @return String object with the fingerprint, null if the value does not have
+	 *         the legacy format.
+	 **/
+	public String fromLegacy(String metadata) {
+		Matcher matcher = legacyMetadata.matcher(metadata);
+		if (isLegacy || !matcher.matches()) {
+			return null;
+		}
+
+		return hash(matcher.group(1), matcher.group(2), matcher.group(3), matcher.group(4), matcher.group(5));
+	}
+
+	// the components are separated by a character that cannot appear in XML
+	private String hash(String suite, String tests, String time, String name, String className) {
+		StringBuilder input = new StringBuilder();
+
+		for (Component component : components) {
+			switch (component) {
+			case SUITE:
+				input.append(suite);
+				break;
+			case TESTS:
+				input.append(tests);
+				break;
+			case TIME:
+				input.append(time);
+				break;
+			case NAME:
+				input.append(name);
+				break;
+			case CLASSNAME:
+				input.append(className);
+				break;
+			}
+			input.append('\u0000');
+		}
+
+		byte[] digest = digests.get().digest(input.toString().getBytes(StandardCharsets.UTF_8));
+		char[] hex = new char[32];
+		for (int i = 0; i < 16; i++) {
+			hex[2 * i] = hexDigits[(digest[i] >> 4) & 0xf];
+			hex[2 * i + 1] = hexDigits[digest[i] & 0xf];
+		}
+
+		return new String(hex);
+	}
+
+	@Override
+	public String toString() {
+		return isLegacy ? "legacy" : String.format("fingerprint%s", components);
+	}
+
+}
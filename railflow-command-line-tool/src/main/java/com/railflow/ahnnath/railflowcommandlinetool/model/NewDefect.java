@@ -0,0 +1,29 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+/**
+ * Holds the metadata and title of a defect waiting to be created.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class NewDefect {
+
+	private final String metadata;
+	private final String title;
+
+	public NewDefect(String metadata, String title) {
+		this.metadata = metadata;
+		this.title = title;
+	}
+
+	public String getMetadata() {
+		return metadata;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Holds a single Jira request decided for the test cases of a report: the
+ * creation of a defect or [regression] defect, a comment on an open defect or
+ * the transition of an open defect to the 'closed' status.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class PlannedAction {
+
+	public enum Type {
+		CREATE, REGRESSION, COMMENT, CLOSE
+	}
+
+	private final Type type;
+	private final String metadata;
+	private final String issueId;
+	private final String title;
+	private final String comment;
+
+	@JsonCreator
+	public PlannedAction(@JsonProperty("type") Type type, @JsonProperty("metadata") String metadata,
+			@JsonProperty("issueId") String issueId, @JsonProperty("title") String title,
+			@JsonProperty("comment") String comment) {
+		this.type = type;
+		this.metadata = metadata;
+		this.issueId = issueId;
+		this.title = title;
+		this.comment = comment;
+	}
+
+	public static PlannedAction create(String metadata, String title) {
+		return new PlannedAction(Type.CREATE, metadata, null, title, null);
+	}
+
+	public static PlannedAction regression(String metadata, String title) {
+		return new PlannedAction(Type.REGRESSION, metadata, null, title, null);
+	}
+
+	public static PlannedAction comment(String metadata, String issueId, String comment) {
+		return new PlannedAction(Type.COMMENT, metadata, issueId, null, comment);
+	}
+
+	public static PlannedAction close(String metadata, String issueId) {
+		return new PlannedAction(Type.CLOSE, metadata, issueId, null, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getMetadata() {
+		return metadata;
+	}
+
+	public String getIssueId() {
+		return issueId;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getComment() {
+		return comment;
+	}
+
+	/**
+	 * Returns the Jira endpoint the action is sent to. Creates of both types
+	 * share the bulk endpoint.
+	 **/
+	public String getEndpoint() {
+		switch (type) {
+		case COMMENT:
+			return String.format("POST /rest/api/2/issue/%s/comment", issueId);
+		case CLOSE:
+			return String.format("POST /rest/api/2/issue/%s/transitions", issueId);
+		default:
+			return "POST /rest/api/3/issue/bulk";
+		}
+	}
+
+	@JsonIgnore
+	public boolean isCreate() {
+		return type == Type.CREATE || type == Type.REGRESSION;
+	}
+
+	// actions are equal when they would make the same request
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof PlannedAction)) {
+			return false;
+		}
+		PlannedAction action = (PlannedAction) other;
+		return type == action.type && Objects.equals(metadata, action.metadata)
+				&& Objects.equals(issueId, action.issueId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(type, metadata, issueId);
+	}
+
+}
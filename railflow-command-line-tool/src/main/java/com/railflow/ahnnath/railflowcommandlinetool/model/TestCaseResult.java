@@ -0,0 +1,84 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+/**
+ * Holds the outcome of a single 'testcase' element and the metadata used to
+ * match it against Jira defects.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TestCaseResult {
+
+	private final TestSuiteResult suite;
+	private final int index;
+	private final String name;
+	private final String className;
+	private final boolean failed;
+	private final MetadataFingerprint fingerprint;
+	private String metadata;
+
+	public TestCaseResult(TestSuiteResult suite, int index, String name, String className, boolean failed) {
+		this(suite, index, name, className, failed, MetadataFingerprint.legacy());
+	}
+
+	public TestCaseResult(TestSuiteResult suite, int index, String name, String className, boolean failed,
+			MetadataFingerprint fingerprint) {
+		this.suite = suite;
+		this.index = index;
+		this.name = name;
+		this.className = className;
+		this.failed = failed;
+		this.fingerprint = fingerprint;
+	}
+
+	public TestSuiteResult getSuite() {
+		return suite;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Returns a copy of this test case with another outcome and the same
+	 * metadata.
+	 *
+	 * @param isFailed whether the copy failed.
+	 * @return TestCaseResult object with the given outcome.
+	 **/
+	public TestCaseResult withOutcome(boolean isFailed) {
+		TestCaseResult copy = new TestCaseResult(suite, index, name, className, isFailed, fingerprint);
+		copy.metadata = metadata;
+		return copy;
+	}
+
+	/**
+	 * Builds the metadata stored on Jira defects with the
+	 * {@link MetadataFingerprint} the test case was read with: by default the
+	 * format [suiteName-suiteTestsNumber-suiteTime-testName-testClassName]. The
+	 * value is built once, on first use.
+	 *
+	 * @return String object with the metadata.
+	 **/
+	public String getMetadata() {
+		if (metadata == null) {
+			metadata = fingerprint.compute(this);
+		}
+		return metadata;
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.railflow.ahnnath.railflowcommandlinetool.model;
+
+/**
+ * Holds the attributes of a 'testsuite' element that are needed to build the
+ * metadata of its test cases.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TestSuiteResult {
+
+	private final int index;
+	private final String name;
+	private final String tests;
+	private final String time;
+	private final int failures;
+
+	public TestSuiteResult(int index, String name, String tests, String time, int failures) {
+		this.index = index;
+		this.name = name;
+		this.tests = tests;
+		this.time = time;
+		this.failures = failures;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getTests() {
+		return tests;
+	}
+
+	public String getTime() {
+		return time;
+	}
+
+	public int getFailures() {
+		return failures;
+	}
+
+}
@@ -0,0 +1,278 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.NewDefect;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionOutbox;
+
+/**
+ * Sends the actions decided by the {@link DefectReconciler} to Jira, either
+ * right after a batch is parsed or later from an execution plan. Transitions
+ * are sent concurrently in groups of 'railflow.apply.concurrency' requests, and
+ * defects are created with bulk requests once they are done. Comments are
+ * counted by the {@link CommentThrottle} and sent when the run finishes.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class ActionExecutor {
+
+	private static Logger logger = LoggerFactory.getLogger(ActionExecutor.class);
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	CommentThrottle commentThrottle;
+
+	@Autowired
+	ActionJournal journal;
+
+	@Autowired
+	ActionOutbox outbox;
+
+	@Value("${railflow.apply.concurrency:16}")
+	private int concurrency;
+
+	@Value("${railflow.outbox.enabled:true}")
+	private boolean outboxEnabled;
+
+	/**
+	 * Sends the given actions. The map of changes is updated with the id of every
+	 * defect created, so later batches comment on it instead of creating it
+	 * again. Actions completed by an earlier attempt of the run, as recorded in
+	 * the {@link ActionJournal}, are not sent again, and actions that cannot be
+	 * sent because Jira is unreachable are written to the {@link ActionOutbox}.
+	 * Actions that Jira did not complete, such as a close it rejected or a
+	 * defect missing from a bulk create response, are returned along with the
+	 * spooled ones, so the caller does not take them as done. Comments without
+	 * an issue id are counted for the defect created for their metadata.
+	 *
+	 * @param actions actions to send.
+	 * @param changes defects created or closed during the run, by metadata.
+	 * @return List object with the actions that were not completed.
+	 * @throws UnirestException
+	 *
+	 **/
+	public List<PlannedAction> execute(List<PlannedAction> actions, Map<String, DefectLookup> changes)
+			throws UnirestException {
+		List<PlannedAction> pending = resume(actions, changes);
+		journal.planned(pending);
+		journal.commit();
+
+		List<PlannedAction> creates = new ArrayList<PlannedAction>();
+		List<PlannedAction> closes = new ArrayList<PlannedAction>();
+		List<CompletableFuture<Boolean>> window = new ArrayList<CompletableFuture<Boolean>>();
+		List<PlannedAction> unsent = new ArrayList<PlannedAction>();
+		List<PlannedAction> rejected = new ArrayList<PlannedAction>();
+		List<PlannedAction> newDefectComments = new ArrayList<PlannedAction>();
+		UnirestException failure = null;
+
+		for (PlannedAction action : pending) {
+			if (action.isCreate()) {
+				creates.add(action);
+				continue;
+			}
+
+			if (action.getType() == PlannedAction.Type.COMMENT) {
+				if (action.getIssueId() != null) {
+					commentThrottle.record(action.getIssueId());
+				} else {
+					newDefectComments.add(action);
+				}
+				continue;
+			}
+
+			commentThrottle.forget(action.getIssueId());
+			closes.add(action);
+			window.add(jiraService.closeIssueAsync(action.getIssueId()));
+
+			if (window.size() >= Math.max(1, concurrency)) {
+				failure = drain(closes, window, unsent, rejected, failure);
+			}
+		}
+		failure = drain(closes, window, unsent, rejected, failure);
+
+		// create every queued defect with bulk requests
+		if (!creates.isEmpty()) {
+			failure = create(creates, changes, unsent, rejected, failure);
+		}
+
+		// failures of the defects created above
+		for (PlannedAction action : newDefectComments) {
+			DefectLookup defect = changes.get(action.getMetadata());
+			if (defect != null && defect.getOpenIssueId() != null) {
+				commentThrottle.record(defect.getOpenIssueId());
+			} else {
+				rejected.add(action);
+			}
+		}
+
+		if (!unsent.isEmpty()) {
+			failure = spool(unsent, failure);
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		if (!rejected.isEmpty()) {
+			logger.info(String.format("%s actions were not completed by Jira", rejected.size()));
+			for (PlannedAction action : rejected) {
+				logger.debug(String.format("Not completed: %s %s", action.getType(), action.getMetadata()));
+			}
+		}
+
+		rejected.addAll(unsent);
+		return rejected;
+	}
+
+	// leaves out the actions completed by an earlier attempt of the run
+	private List<PlannedAction> resume(List<PlannedAction> actions, Map<String, DefectLookup> changes) {
+		List<PlannedAction> pending = new ArrayList<PlannedAction>(actions.size());
+
+		for (PlannedAction action : actions) {
+			String result = action.getType() == PlannedAction.Type.COMMENT ? null : journal.getResult(action);
+
+			if (result == null) {
+				pending.add(action);
+			} else if (action.isCreate()) {
+				changes.computeIfAbsent(action.getMetadata(), key -> new DefectLookup()).setOpenIssueId(result);
+			}
+		}
+
+		if (pending.size() < actions.size()) {
+			logger.info(String.format("Skipping %s actions already sent by an earlier attempt of the run",
+					actions.size() - pending.size()));
+		}
+
+		return pending;
+	}
+
+	/**
+	 * Creates the queued defects with bulk requests and records each created
+	 * defect. The defects of a request that could not reach Jira are kept to be
+	 * spooled, and the ones Jira did not return an id for are rejected.
+	 **/
+	private UnirestException create(List<PlannedAction> creates, Map<String, DefectLookup> changes,
+			List<PlannedAction> unsent, List<PlannedAction> rejected, UnirestException failure) {
+		List<NewDefect> newDefects = new ArrayList<NewDefect>(creates.size());
+		for (PlannedAction action : creates) {
+			newDefects.add(new NewDefect(action.getMetadata(), action.getTitle()));
+		}
+
+		List<CompletableFuture<Map<String, String>>> chunks = jiraService.createDefectsAsync(newDefects);
+		int chunkSize = jiraService.getBulkCreateSize();
+
+		for (int i = 0; i < chunks.size(); i++) {
+			List<PlannedAction> chunk = creates.subList(i * chunkSize, Math.min((i + 1) * chunkSize, creates.size()));
+
+			try {
+				Map<String, String> createdIssueIds = chunks.get(i).join();
+
+				for (PlannedAction action : chunk) {
+					String issueId = createdIssueIds.get(action.getMetadata());
+					if (issueId != null) {
+						changes.computeIfAbsent(action.getMetadata(), key -> new DefectLookup()).setOpenIssueId(issueId);
+						journal.completed(action, issueId);
+					} else {
+						rejected.add(action);
+					}
+				}
+			} catch (CompletionException e) {
+				failure = fail(e, chunk, unsent, failure);
+			}
+		}
+		journal.commit();
+
+		return failure;
+	}
+
+	/**
+	 * Waits for a group of transitions. Every request is waited for, and the
+	 * first error is kept to be reported once the remaining actions were sent.
+	 * Closes that Jira did not accept are rejected.
+	 **/
+	private UnirestException drain(List<PlannedAction> closes, List<CompletableFuture<Boolean>> window,
+			List<PlannedAction> unsent, List<PlannedAction> rejected, UnirestException failure) {
+		for (int i = 0; i < window.size(); i++) {
+			PlannedAction action = closes.get(i);
+
+			try {
+				if (window.get(i).join()) {
+					journal.completed(action, action.getIssueId());
+				} else {
+					rejected.add(action);
+				}
+			} catch (CompletionException e) {
+				failure = fail(e, Collections.singletonList(action), unsent, failure);
+			}
+		}
+		journal.commit();
+		closes.clear();
+		window.clear();
+
+		return failure;
+	}
+
+	// actions that failed to reach Jira are kept to be spooled; other errors are
+	// reported once the remaining actions were sent
+	private UnirestException fail(CompletionException e, List<PlannedAction> actions, List<PlannedAction> unsent,
+			UnirestException failure) {
+		Throwable cause = e.getCause() != null ? e.getCause() : e;
+		logger.debug(cause.getMessage());
+
+		if (outboxEnabled && isUnreachable(cause)) {
+			unsent.addAll(actions);
+			return failure;
+		}
+
+		if (failure == null) {
+			return new UnirestException(cause instanceof Exception ? (Exception) cause : e);
+		}
+		return failure;
+	}
+
+	private UnirestException spool(List<PlannedAction> unsent, UnirestException failure) {
+		if (outbox.spool(unsent)) {
+			logger.info(String.format(
+					"%s actions could not be sent since Jira is unreachable. They were written to the outbox; run 'flush' to send them",
+					unsent.size()));
+			return failure;
+		}
+
+		return failure != null ? failure
+				: new UnirestException(String.format("%s actions could not be sent nor spooled", unsent.size()));
+	}
+
+	// requests that failed without a response from Jira
+	private static boolean isUnreachable(Throwable cause) {
+		for (Throwable current = cause; current != null; current = current.getCause()) {
+			if (current instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Handles the batches of test cases drained by the workers of a
+ * {@link ReconciliationPipeline}, either by reconciling them with Jira or by
+ * adding their actions to an execution plan.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@FunctionalInterface
+public interface BatchHandler {
+
+	/**
+	 * @param batch   parsed test cases.
+	 * @param changes defects created or closed during the run by the calling
+	 *                worker, by metadata.
+	 **/
+	void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+			throws UnirestException, JsonProcessingException;
+
+}
@@ -0,0 +1,169 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.CommentLedger;
+
+/**
+ * Coalesces the comments added to defects that are still open. During a run,
+ * the failures that match each open defect are only counted; when the run
+ * finishes, each defect gets at most one comment with the number of failures
+ * and the runs they happened in. A defect commented on less than
+ * 'railflow.comments.window-minutes' ago gets no comment, and its failures are
+ * kept in the {@link CommentLedger} to be reported by the next comment, so the
+ * number of comments no longer grows with the frequency of the runs.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class CommentThrottle {
+
+	private static Logger logger = LoggerFactory.getLogger(CommentThrottle.class);
+
+	private static final String stillOpen = "<testrail: defect still open>";
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	CommentLedger ledger;
+
+	@Autowired
+	ActionJournal journal;
+
+	@Value("${railflow.comments.window-minutes:1440}")
+	private long windowMinutes;
+
+	@Value("${railflow.apply.concurrency:16}")
+	private int concurrency;
+
+	private final Map<String, Integer> failures = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Counts a failure that matches an open defect, to be commented on when the
+	 * run finishes.
+	 *
+	 * @param issueId id of the open defect.
+	 **/
+	public void record(String issueId) {
+		failures.merge(issueId, 1, Integer::sum);
+	}
+
+	/**
+	 * Forgets the failures of a defect closed during the run.
+	 *
+	 * @param issueId id of the closed defect.
+	 **/
+	public void forget(String issueId) {
+		failures.remove(issueId);
+		ledger.load();
+		ledger.remove(issueId);
+	}
+
+	/**
+	 * Comments on the defects whose failures were counted since the last call and
+	 * whose window has passed, and adds the failures of the others to the
+	 * ledger. The failures of a comment that could not be posted stay in the
+	 * ledger, so the next run reports them.
+	 **/
+	public void flush() {
+		// the defects forgotten during the run are removed from the ledger
+		if (failures.isEmpty()) {
+			ledger.save();
+			return;
+		}
+
+		ledger.load();
+		String currentRunId = journal.getRunId();
+		long now = System.currentTimeMillis();
+		long windowMillis = TimeUnit.MINUTES.toMillis(Math.max(0, windowMinutes));
+
+		List<String> issueIds = new ArrayList<String>();
+		List<CompletableFuture<String>> window = new ArrayList<CompletableFuture<String>>();
+		int coalesced = 0;
+		int sent = 0;
+
+		for (String issueId : new ArrayList<String>(failures.keySet())) {
+			Integer count = failures.remove(issueId);
+			CommentLedger.Entry entry = ledger.record(issueId, currentRunId, count != null ? count : 0);
+
+			if (!ledger.isDue(issueId, now, windowMillis)) {
+				coalesced++;
+				continue;
+			}
+
+			issueIds.add(issueId);
+			window.add(jiraService.addCommentToIssueAsync(buildComment(entry), issueId));
+
+			if (window.size() >= Math.max(1, concurrency)) {
+				sent += drain(issueIds, window, now);
+			}
+		}
+		sent += drain(issueIds, window, now);
+		ledger.save();
+
+		logger.info(String.format("%s comments sent, %s defects commented on less than %s minutes ago", sent,
+				coalesced, windowMinutes));
+	}
+
+	/**
+	 * Builds a comment that reports the failures not commented on yet, such as
+	 * '<testrail: defect still open> 3 failures in 2 runs: run-a, run-b'.
+	 **/
+	static String buildComment(CommentLedger.Entry entry) {
+		StringBuilder comment = new StringBuilder(stillOpen);
+		comment.append(String.format(" %s %s in %s %s: ", entry.getPendingFailures(),
+				entry.getPendingFailures() == 1 ? "failure" : "failures", entry.getPendingRuns(),
+				entry.getPendingRuns() == 1 ? "run" : "runs"));
+		comment.append(String.join(", ", entry.getRunIds()));
+
+		int unlisted = entry.getPendingRuns() - entry.getRunIds().size();
+		if (unlisted > 0) {
+			comment.append(String.format(" and %s earlier", unlisted));
+		}
+		if (entry.getLastCommentedAt() > 0) {
+			comment.append(String.format(" since %s", Instant.ofEpochMilli(entry.getLastCommentedAt())));
+		}
+
+		return comment.toString();
+	}
+
+	// waits for a group of comments and records the ones that were posted
+	private int drain(List<String> issueIds, List<CompletableFuture<String>> window, long now) {
+		int sent = 0;
+
+		for (int i = 0; i < window.size(); i++) {
+			try {
+				if (window.get(i).join() != null) {
+					ledger.markCommented(issueIds.get(i), now);
+					sent++;
+				}
+			} catch (CompletionException e) {
+				logger.debug(e.getMessage());
+			}
+		}
+		issueIds.clear();
+		window.clear();
+
+		return sent;
+	}
+
+}
@@ -0,0 +1,256 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.store.OutcomeStore;
+
+/**
+ * Contains the Jira workflow applied to parsed test cases: failing test cases
+ * get a comment or a new defect, passing test cases close the open defect that
+ * matches their metadata. The actions are decided first, so they can either be
+ * sent right away or written to an execution plan. Test cases that passed the
+ * last time they were reconciled and pass again are skipped, unless the defect
+ * index knows an open defect for them, so the number of Jira calls follows the
+ * number of changes rather than the size of the suite. Skipped test cases are
+ * reconciled again after 'railflow.outcomes.max-age-hours', in case a defect
+ * was reopened on Jira in the meantime.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class DefectReconciler {
+
+	private static Logger logger = LoggerFactory.getLogger(DefectReconciler.class);
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	ActionExecutor executor;
+
+	@Autowired
+	OutcomeStore outcomes;
+
+	@Value("${railflow.outcomes.enabled:true}")
+	private boolean outcomesEnabled;
+
+	@Value("${railflow.outcomes.max-age-hours:168}")
+	private long maxAgeHours;
+
+	/**
+	 * Makes the API requests that correspond to the outcome of each test case in a
+	 * batch. The actions are decided with {@link #decide(List, Map)} and sent by
+	 * the {@link ActionExecutor}. The outcomes of the test cases whose actions
+	 * were completed are recorded for the next run.
+	 *
+	 * @param batch   parsed test cases.
+	 * @param changes defects created or closed during the run, by metadata.
+	 *
+	 **/
+	public void reconcile(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+			throws UnirestException, JsonProcessingException {
+		List<TestCaseResult> selected = select(batch, changes);
+		List<PlannedAction> notCompleted = executor.execute(decideSelected(selected, changes), changes);
+
+		if (outcomesEnabled) {
+			// a test whose action was not completed is reconciled again next run
+			Set<String> incomplete = new HashSet<String>();
+			for (PlannedAction action : notCompleted) {
+				incomplete.add(action.getMetadata());
+			}
+
+			long reconciledAt = System.currentTimeMillis();
+			for (TestCaseResult testCase : selected) {
+				if (!incomplete.contains(testCase.getMetadata())) {
+					outcomes.record(testCase.getMetadata(), testCase.isFailed(), reconciledAt);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the outcomes recorded during the run to disk.
+	 **/
+	public void saveOutcomes() {
+		if (outcomesEnabled) {
+			outcomes.save();
+		}
+	}
+
+	/**
+	 * Decides the Jira actions that correspond to the outcome of each test case in
+	 * a batch, without sending them. Test cases that keep passing are skipped, and
+	 * the defects of the rest of the batch are looked up beforehand with a few
+	 * JQL searches. Defects created or closed by earlier
+	 * batches are taken from the map of changes instead, since Jira may not have
+	 * indexed them yet, and the map is updated with the transitions decided for
+	 * this batch. Test cases that share metadata are decided by their last
+	 * outcome.
+	 *
+	 * @param batch   parsed test cases.
+	 * @param changes defects created or closed during the run, by metadata.
+	 * @return List object with the actions, in the order they were decided.
+	 *
+	 **/
+	public List<PlannedAction> decide(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+			throws UnirestException {
+		return decideSelected(select(batch, changes), changes);
+	}
+
+	/**
+	 * Leaves out the test cases that passed the last time they were reconciled
+	 * and pass again, unless a defect is known to be open for them or was
+	 * created or closed during the run.
+	 **/
+	private List<TestCaseResult> select(List<TestCaseResult> batch, Map<String, DefectLookup> changes) {
+		if (!outcomesEnabled) {
+			return batch;
+		}
+
+		outcomes.load();
+		long now = System.currentTimeMillis();
+		long maxAge = TimeUnit.HOURS.toMillis(maxAgeHours);
+		List<TestCaseResult> selected = new ArrayList<TestCaseResult>(batch.size());
+
+		for (TestCaseResult testCase : batch) {
+			String metadata = testCase.getMetadata();
+
+			if (testCase.isFailed() || !outcomes.isStillPassing(metadata, now, maxAge)
+					|| changes.containsKey(metadata) || jiraService.hasIndexedOpenDefect(metadata)) {
+				selected.add(testCase);
+			}
+		}
+
+		if (selected.size() < batch.size()) {
+			logger.info(String.format("Skipping %s of %s test cases that still pass", batch.size() - selected.size(),
+					batch.size()));
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Decides the actions of each metadata of the batch from the last outcome of
+	 * its test cases, so a test that fails and then passes within the batch
+	 * leaves no defect open. The failures since the test last passed are
+	 * commented on; the ones of a defect created for the batch are commented on
+	 * once it exists.
+	 **/
+	private List<PlannedAction> decideSelected(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+			throws UnirestException {
+		List<PlannedAction> actions = new ArrayList<PlannedAction>();
+		if (batch.isEmpty()) {
+			return actions;
+		}
+
+		// test cases of each metadata, in the order the metadata first occurs
+		Map<String, List<TestCaseResult>> occurrences = new LinkedHashMap<String, List<TestCaseResult>>();
+		for (TestCaseResult testCase : batch) {
+			occurrences.computeIfAbsent(testCase.getMetadata(), key -> new ArrayList<TestCaseResult>(1))
+					.add(testCase);
+		}
+
+		Map<String, DefectLookup> defects = jiraService.findDefectsByMetadata(occurrences.keySet());
+
+		for (Map.Entry<String, List<TestCaseResult>> entry : occurrences.entrySet()) {
+			// [suiteName-suiteTestsNumber-suiteTime-testName-testClassName]
+			String metadata = entry.getKey();
+			List<TestCaseResult> testCases = entry.getValue();
+			TestCaseResult testCase = testCases.get(testCases.size() - 1);
+			String testName = testCase.getName();
+			String testClassName = testCase.getClassName();
+			DefectLookup defect = lookup(metadata, defects, changes);
+
+			// handle cases
+			if (testCase.isFailed()) {
+				// log metadata
+				logger.info(String.format("TEST CASE #%s", testCase.getIndex()));
+				logger.info(String.format("testcase name: %s", testName));
+				logger.info(String.format("testcase class: %s", testClassName));
+
+				// failures since the test last passed in the batch
+				int failures = 0;
+				for (int i = testCases.size() - 1; i >= 0 && testCases.get(i).isFailed(); i--) {
+					failures++;
+				}
+
+				// check if any open defects on Jira match current testcase
+				String foundOpenIssueId = defect.getOpenIssueId();
+
+				// if yes, add message to console and add comment on Jira
+				if (foundOpenIssueId != null) {
+					logger.info(String.format("Skipping defect creation since defect <%s> already exists",
+							foundOpenIssueId));
+					for (int i = 0; i < failures; i++) {
+						actions.add(PlannedAction.comment(metadata, foundOpenIssueId, "<testrail: defect still open>"));
+					}
+					continue;
+				}
+
+				String foundClosedIssueId = defect.getClosedIssueId();
+
+				// if a closed defect matches, the new defect is a [regression]
+				if (foundClosedIssueId != null) {
+					actions.add(PlannedAction.regression(metadata,
+							String.format("[regression] %s %s", testName, testClassName)));
+				}
+
+				// if no, create a new ticket and add metadata
+				else {
+					actions.add(PlannedAction.create(metadata, String.format("%s %s", testName, testClassName)));
+				}
+
+				// the other failures are commented on once the defect is created
+				for (int i = 1; i < failures; i++) {
+					actions.add(PlannedAction.comment(metadata, null, "<testrail: defect still open>"));
+				}
+				changes.put(metadata, defect);
+			}
+			// check if any open defects match current passing testcase
+			else {
+
+				String foundOpenIssueId = defect.getOpenIssueId();
+
+				// if yes, close defect on Jira
+				if (foundOpenIssueId != null) {
+					actions.add(PlannedAction.close(metadata, foundOpenIssueId));
+					defect.setOpenIssueId(null);
+					defect.setClosedIssueId(foundOpenIssueId);
+					changes.put(metadata, defect);
+				}
+			}
+		}
+
+		return actions;
+	}
+
+	// a defect changed during the run is taken from the changes, since Jira may
+	// not have indexed the change yet
+	private static DefectLookup lookup(String metadata, Map<String, DefectLookup> defects,
+			Map<String, DefectLookup> changes) {
+		DefectLookup changed = changes.get(metadata);
+		return changed != null ? changed : defects.computeIfAbsent(metadata, key -> new DefectLookup());
+	}
+
+}
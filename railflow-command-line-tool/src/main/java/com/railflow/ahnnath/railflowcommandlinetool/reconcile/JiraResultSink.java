@@ -0,0 +1,67 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Sink that reconciles the test cases of a run with Jira through the
+ * {@link DefectReconciler}, with 'railflow.pipeline.workers' workers. When the
+ * run finishes, the comments on defects that are still open are sent and the
+ * outcomes of the test cases are saved.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class JiraResultSink implements ResultSink {
+
+	public static final String name = "jira";
+
+	@Autowired
+	DefectReconciler reconciler;
+
+	@Autowired
+	CommentThrottle commentThrottle;
+
+	@Value("${railflow.pipeline.workers:4}")
+	private int workers;
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getWorkers() {
+		return workers;
+	}
+
+	@Override
+	public String getPhase() {
+		return "reconcile-batch";
+	}
+
+	@Override
+	public void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+			throws UnirestException, JsonProcessingException {
+		reconciler.reconcile(batch, changes);
+	}
+
+	@Override
+	public void finish() {
+		commentThrottle.flush();
+		reconciler.saveOutcomes();
+	}
+
+}
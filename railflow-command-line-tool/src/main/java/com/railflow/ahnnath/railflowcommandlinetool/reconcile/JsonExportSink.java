@@ -0,0 +1,112 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Sink that writes the test cases of a run to 'railflow.sinks.json.file', one
+ * JSON line each, for CI to archive or for other tools to read. The file is
+ * replaced by every run.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class JsonExportSink implements ResultSink {
+
+	private static Logger logger = LoggerFactory.getLogger(JsonExportSink.class);
+
+	@Value("${railflow.sinks.json.file:railflow-results.jsonl}")
+	private String file;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private BufferedWriter writer;
+	private String runId;
+	private long exported;
+
+	@Override
+	public String getName() {
+		return "json";
+	}
+
+	@Override
+	public synchronized void begin(String runId) {
+		this.runId = runId;
+		this.exported = 0;
+		Path path = Paths.get(file);
+
+		try {
+			if (path.getParent() != null) {
+				Files.createDirectories(path.getParent());
+			}
+			writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			logger.info(String.format("The results could not be exported to %s", path));
+			logger.debug(e.getMessage());
+			writer = null;
+		}
+	}
+
+	@Override
+	public synchronized void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes) {
+		if (writer == null) {
+			return;
+		}
+
+		try {
+			for (TestCaseResult testCase : batch) {
+				ObjectNode line = mapper.createObjectNode();
+				line.put("run", runId);
+				line.put("suite", testCase.getSuite() != null ? testCase.getSuite().getName() : null);
+				line.put("classname", testCase.getClassName());
+				line.put("name", testCase.getName());
+				line.put("failed", testCase.isFailed());
+				line.put("metadata", testCase.getMetadata());
+
+				writer.write(mapper.writeValueAsString(line));
+				writer.newLine();
+				exported++;
+			}
+		} catch (IOException e) {
+			logger.info(String.format("The results could not be exported to %s", file));
+			logger.debug(e.getMessage());
+			close();
+		}
+	}
+
+	@Override
+	public synchronized void finish() {
+		if (writer != null) {
+			close();
+			logger.info(String.format("%s results were exported to %s", exported, file));
+		}
+	}
+
+	private void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			logger.debug(e.getMessage());
+		}
+		writer = null;
+	}
+
+}
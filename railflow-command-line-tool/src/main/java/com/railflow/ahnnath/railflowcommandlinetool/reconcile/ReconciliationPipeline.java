@@ -0,0 +1,196 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Connects the parser with a {@link BatchHandler}, usually the
+ * {@link DefectReconciler}, through bounded queues so Jira requests are made
+ * while the report is still being read. Test cases
+ * are split in lanes by metadata, and each lane is drained in batches by its
+ * own worker. A given metadata value is always handled by the same worker, so
+ * two occurrences of it can never create two defects. The parser blocks when a
+ * lane is full. A batch that fails is logged and counted, and the lane goes on
+ * with the next one, so the run can be reported as not finished.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class ReconciliationPipeline implements AutoCloseable {
+
+	private static Logger logger = LoggerFactory.getLogger(ReconciliationPipeline.class);
+
+	// marks the end of the test cases submitted to a lane
+	private static final TestCaseResult endOfStream = new TestCaseResult(null, -1, null, null, false);
+
+	// time a worker waits for more test cases before reconciling a partial batch
+	private static final long lingerMillis = 20;
+
+	private final BatchHandler handler;
+	private final int batchSize;
+	private final Lane[] lanes;
+	private final AtomicInteger failedBatches = new AtomicInteger();
+	private boolean closed = false;
+
+	/**
+	 * Starts the workers of a new pipeline. Virtual threads are used when the
+	 * runtime supports them, platform threads otherwise.
+	 *
+	 * @param handler       handler of the batches, such as the reconciler that
+	 *                      makes the API requests.
+	 * @param workers       number of lanes and workers.
+	 * @param queueCapacity number of test cases that can be waiting in all lanes.
+	 * @param batchSize     maximum number of test cases reconciled together.
+	 **/
+	public ReconciliationPipeline(BatchHandler handler, int workers, int queueCapacity, int batchSize) {
+		this.handler = handler;
+		this.batchSize = Math.max(1, batchSize);
+		this.lanes = new Lane[Math.max(1, workers)];
+
+		ThreadFactory threadFactory = newThreadFactory();
+		int laneCapacity = Math.max(1, queueCapacity / lanes.length);
+
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new Lane(laneCapacity);
+			lanes[i].worker = threadFactory.newThread(lanes[i]);
+			lanes[i].worker.setName(String.format("railflow-reconcile-%s", i));
+			lanes[i].worker.start();
+		}
+	}
+
+	/**
+	 * Adds a test case to the lane of its metadata, waiting while the lane is
+	 * full.
+	 *
+	 * @param testCase parsed test case.
+	 **/
+	public void submit(TestCaseResult testCase) throws InterruptedException {
+		lanes[Math.floorMod(testCase.getMetadata().hashCode(), lanes.length)].queue.put(testCase);
+	}
+
+	/**
+	 * Waits until every submitted test case has been reconciled and stops the
+	 * workers.
+	 **/
+	@Override
+	public void close() throws InterruptedException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		for (Lane lane : lanes) {
+			lane.queue.put(endOfStream);
+		}
+		for (Lane lane : lanes) {
+			lane.worker.join();
+		}
+	}
+
+	/**
+	 * Returns the number of batches the handler failed to handle so far.
+	 **/
+	public int getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	/**
+	 * Returns a factory of virtual threads on runtimes that support them (Java 21
+	 * and later) and a factory of platform threads otherwise.
+	 **/
+	private static ThreadFactory newThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Thread::new;
+		}
+	}
+
+	/**
+	 * Queue of test cases handled by a single worker, along with the defects that
+	 * worker created or closed during the run.
+	 **/
+	private final class Lane implements Runnable {
+
+		private final BlockingQueue<TestCaseResult> queue;
+		private final Map<String, DefectLookup> changes = new HashMap<String, DefectLookup>();
+		private Thread worker;
+
+		private Lane(int capacity) {
+			this.queue = new ArrayBlockingQueue<TestCaseResult>(capacity);
+		}
+
+		@Override
+		public void run() {
+			List<TestCaseResult> batch = new ArrayList<TestCaseResult>(batchSize);
+			boolean done = false;
+
+			try {
+				while (!done) {
+					TestCaseResult testCase = queue.take();
+					if (testCase == endOfStream) {
+						break;
+					}
+					batch.add(testCase);
+
+					// fill the batch with the test cases that arrive shortly after
+					while (batch.size() < batchSize) {
+						testCase = queue.poll(lingerMillis, TimeUnit.MILLISECONDS);
+						if (testCase == null) {
+							break;
+						}
+						if (testCase == endOfStream) {
+							done = true;
+							break;
+						}
+						batch.add(testCase);
+					}
+
+					reconcile(batch);
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		// errors are logged and counted so the lane keeps draining and the parser
+		// never blocks
+		private void reconcile(List<TestCaseResult> batch) {
+			try {
+				handler.handle(batch, changes);
+				return;
+			} catch (UnirestException e) {
+				logger.warn(String.format("There was an error HTTP request made to the the Jira API. A batch of %s "
+						+ "test cases was not handled", batch.size()), e);
+			} catch (JsonProcessingException e) {
+				logger.warn(String.format("We encountered problems when processing (parsing, generating) JSON content "
+						+ "after making an API request. A batch of %s test cases was not handled", batch.size()), e);
+			} catch (RuntimeException e) {
+				logger.warn(String.format("We encountered problems when processing the response of an API request. "
+						+ "A batch of %s test cases was not handled", batch.size()), e);
+			}
+
+			failedBatches.incrementAndGet();
+		}
+	}
+
+}
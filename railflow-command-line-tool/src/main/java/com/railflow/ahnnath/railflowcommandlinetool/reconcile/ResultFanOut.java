@@ -0,0 +1,171 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Hands every test case read during a run to several {@link ResultSink}s. Each
+ * sink has its own {@link ReconciliationPipeline}, with its own bounded queues
+ * and workers, so the sinks drain the same test cases concurrently. A feeder
+ * thread moves the test cases of each sink from a bounded backlog to its
+ * pipeline, so a sink that is briefly slower does not hold back the parser nor
+ * the other sinks. Once the backlog of a sink is full, the parser waits for
+ * it, so the test cases held in memory never exceed the capacity of the
+ * backlogs and pipelines. When the run ends, the sinks are finished
+ * concurrently too, and a sink that failed a batch or could not finish fails
+ * the close.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class ResultFanOut implements AutoCloseable {
+
+	private static Logger logger = LoggerFactory.getLogger(ResultFanOut.class);
+
+	// marks the end of the test cases submitted to a backlog
+	private static final TestCaseResult endOfStream = new TestCaseResult(null, -1, null, null, false);
+
+	private final List<ResultSink> sinks;
+	private final List<Feeder> feeders = new ArrayList<Feeder>();
+	private boolean closed = false;
+
+	/**
+	 * Begins the run on every sink and starts their workers.
+	 *
+	 * @param sinks         active sinks.
+	 * @param runId         id of the run.
+	 * @param metrics       metrics the batches are timed in.
+	 * @param queueCapacity number of test cases that can be waiting in the
+	 *                      pipeline of each sink, and in its backlog before the
+	 *                      parser waits.
+	 * @param batchSize     maximum number of test cases handled together.
+	 **/
+	public ResultFanOut(List<ResultSink> sinks, String runId, RunMetrics metrics, int queueCapacity, int batchSize) {
+		this.sinks = new ArrayList<ResultSink>(sinks);
+
+		for (ResultSink sink : this.sinks) {
+			sink.begin(runId);
+			Feeder feeder = new Feeder(Math.max(1, queueCapacity), new ReconciliationPipeline((batch, changes) -> {
+				long startedAt = System.nanoTime();
+				try {
+					sink.handle(batch, changes);
+				} finally {
+					metrics.recordPhase(sink.getPhase(), System.nanoTime() - startedAt);
+				}
+			}, sink.getWorkers(), queueCapacity, batchSize));
+
+			feeder.thread = new Thread(feeder, String.format("railflow-feed-%s", sink.getName()));
+			feeder.thread.setDaemon(true);
+			feeder.thread.start();
+			feeders.add(feeder);
+		}
+	}
+
+	/**
+	 * Adds a test case to the backlog of every sink, waiting while the backlog
+	 * of a sink is full.
+	 *
+	 * @param testCase parsed test case.
+	 **/
+	public void submit(TestCaseResult testCase) throws InterruptedException {
+		for (Feeder feeder : feeders) {
+			feeder.backlog.put(testCase);
+		}
+	}
+
+	/**
+	 * Waits until every sink handled the submitted test cases, then finishes the
+	 * sinks concurrently and waits for them.
+	 *
+	 * @throws IllegalStateException if a sink failed to handle a batch or could
+	 *                               not finish the run, once every sink was
+	 *                               finished.
+	 **/
+	@Override
+	public void close() throws InterruptedException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		for (Feeder feeder : feeders) {
+			feeder.backlog.put(endOfStream);
+		}
+		for (Feeder feeder : feeders) {
+			feeder.thread.join();
+			feeder.pipeline.close();
+		}
+
+		IllegalStateException failure = null;
+		for (int i = 0; i < feeders.size(); i++) {
+			int failedBatches = feeders.get(i).pipeline.getFailedBatches();
+			if (failedBatches > 0 && failure == null) {
+				failure = new IllegalStateException(String.format("The %s sink could not handle %s batches of the run",
+						sinks.get(i).getName(), failedBatches));
+			}
+		}
+
+		List<CompletableFuture<Void>> finishing = new ArrayList<CompletableFuture<Void>>();
+		for (ResultSink sink : sinks) {
+			finishing.add(CompletableFuture.runAsync(sink::finish));
+		}
+
+		for (int i = 0; i < finishing.size(); i++) {
+			try {
+				finishing.get(i).join();
+			} catch (CompletionException e) {
+				logger.warn(String.format("The %s sink could not finish the run", sinks.get(i).getName()), e.getCause());
+				if (failure == null) {
+					failure = new IllegalStateException(
+							String.format("The %s sink could not finish the run", sinks.get(i).getName()),
+							e.getCause());
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Moves the test cases of a sink from its backlog to its pipeline, waiting
+	 * while the pipeline is full.
+	 **/
+	private final class Feeder implements Runnable {
+
+		private final BlockingQueue<TestCaseResult> backlog;
+		private final ReconciliationPipeline pipeline;
+		private Thread thread;
+
+		private Feeder(int capacity, ReconciliationPipeline pipeline) {
+			this.backlog = new ArrayBlockingQueue<TestCaseResult>(capacity);
+			this.pipeline = pipeline;
+		}
+
+		@Override
+		public void run() {
+			try {
+				TestCaseResult testCase;
+				while ((testCase = backlog.take()) != endOfStream) {
+					pipeline.submit(testCase);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+/**
+ * Destination of the test cases read during a run, such as Jira, TestRail or a
+ * JSON export. The reports of a run are read once, and a {@link ResultFanOut}
+ * hands the same test cases to every active sink through a bounded queue of
+ * its own, so the sinks work concurrently. Sinks are chosen by name with the
+ * 'railflow.sinks' property.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public interface ResultSink extends BatchHandler {
+
+	/**
+	 * Returns the name the sink is selected by.
+	 **/
+	String getName();
+
+	/**
+	 * Returns whether the sink is configured, so test cases can be sent to it.
+	 * Sinks that are not are left out of the run.
+	 **/
+	default boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Returns the number of workers that handle the batches of the sink. Test
+	 * cases with the same metadata are always handled by the same worker.
+	 **/
+	default int getWorkers() {
+		return 1;
+	}
+
+	/**
+	 * Returns the phase the batches of the sink are timed as in the run metrics.
+	 **/
+	default String getPhase() {
+		return String.format("%s-batch", getName());
+	}
+
+	/**
+	 * Called before the first test case of a run.
+	 *
+	 * @param runId id of the run.
+	 **/
+	default void begin(String runId) {
+	}
+
+	/**
+	 * Called once every test case of the run was handled.
+	 **/
+	default void finish() {
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Collapses the occurrences of the same test, identified by its class name and
+ * test name, into a single result before it is reconciled. Reports written by
+ * retry plugins or merged from several shards repeat tests across testsuite
+ * elements, and each occurrence would otherwise look up, comment on or create
+ * its own defect. The outcome of a repeated test is decided by a
+ * {@link Policy}. Occurrences can be added from several threads; their order
+ * is given by an ordinal, such as the position of the file and of the test
+ * case in it, so the result does not depend on which file was read first.
+ * The last occurrence of every distinct test is kept until the results are
+ * taken, so the memory used grows with the number of tests of the run.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class TestCaseAggregator {
+
+	/**
+	 * Decides the outcome of a test that occurs more than once.
+	 **/
+	public enum Policy {
+		/** The test failed if any occurrence failed. **/
+		ANY_FAIL,
+		/** The test has the outcome of its last occurrence. **/
+		LAST_WINS,
+		/** The test passed if most occurrences passed; a tie is a failure. **/
+		MAJORITY;
+
+		/**
+		 * Reads a policy from its property value, such as 'any-fail'.
+		 *
+		 * @throws IllegalArgumentException if the value is not a policy.
+		 **/
+		public static Policy parse(String value) {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+		}
+	}
+
+	private final Policy policy;
+	private final Map<String, Occurrences> tests = new ConcurrentHashMap<String, Occurrences>();
+
+	public TestCaseAggregator(Policy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Adds an occurrence of a test.
+	 *
+	 * @param testCase parsed test case.
+	 * @param ordinal  position of the occurrence among all the test cases read.
+	 **/
+	public void add(TestCaseResult testCase, long ordinal) {
+		String key = testCase.getClassName() + '\u0000' + testCase.getName();
+		tests.compute(key, (k, occurrences) -> {
+			if (occurrences == null) {
+				occurrences = new Occurrences();
+			}
+			occurrences.add(testCase, ordinal);
+			return occurrences;
+		});
+	}
+
+	/**
+	 * Returns the number of occurrences that were collapsed into another one.
+	 **/
+	public long getDuplicates() {
+		long duplicates = 0;
+		for (Occurrences occurrences : tests.values()) {
+			duplicates += occurrences.failed + occurrences.passed - 1;
+		}
+		return duplicates;
+	}
+
+	/**
+	 * Returns one result per test, in the order the tests first occurred. Each
+	 * result is the last occurrence with the outcome decided by the policy, so
+	 * defects are titled and matched after the latest run of the test.
+	 **/
+	public List<TestCaseResult> getResults() {
+		List<Occurrences> sorted = new ArrayList<Occurrences>(tests.values());
+		sorted.sort(Comparator.comparingLong(occurrences -> occurrences.firstOrdinal));
+
+		List<TestCaseResult> results = new ArrayList<TestCaseResult>(sorted.size());
+		for (Occurrences occurrences : sorted) {
+			results.add(occurrences.decide());
+		}
+		return results;
+	}
+
+	/**
+	 * Outcomes of the occurrences of a test, and its last occurrence.
+	 **/
+	private final class Occurrences {
+
+		private TestCaseResult last;
+		private long firstOrdinal = Long.MAX_VALUE;
+		private long lastOrdinal = Long.MIN_VALUE;
+		private int failed = 0;
+		private int passed = 0;
+
+		private void add(TestCaseResult testCase, long ordinal) {
+			firstOrdinal = Math.min(firstOrdinal, ordinal);
+			if (testCase.isFailed()) {
+				failed++;
+			} else {
+				passed++;
+			}
+			if (ordinal > lastOrdinal) {
+				last = testCase;
+				lastOrdinal = ordinal;
+			}
+		}
+
+		private TestCaseResult decide() {
+			boolean isFailed;
+			switch (policy) {
+			case LAST_WINS:
+				isFailed = last.isFailed();
+				break;
+			case MAJORITY:
+				isFailed = failed >= passed;
+				break;
+			default:
+				isFailed = failed > 0;
+				break;
+			}
+
+			return isFailed == last.isFailed() ? last : last.withOutcome(isFailed);
+		}
+	}
+
+}
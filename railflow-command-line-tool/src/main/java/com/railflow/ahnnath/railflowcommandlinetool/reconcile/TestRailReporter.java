@@ -0,0 +1,200 @@
+package com.railflow.ahnnath.railflowcommandlinetool.reconcile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.TestRailsApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+
+/**
+ * Sink that sends the results of a run to TestRail when the run finishes. Each
+ * test case is matched to the case titled after its class and name, or after
+ * its name alone, as its batch arrives, from the cached listing of the suite,
+ * which is listed again at most once per run if a test case is not in it. Only
+ * the compact result payload of each test case is kept until the run finishes,
+ * and the results are added with the bulk endpoint, so a run of 50,000 test
+ * cases takes 25 requests with the default chunk size. The results go to
+ * the run 'testrail.api.run-id', or to a new run named after the run id.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class TestRailReporter implements ResultSink {
+
+	private static Logger logger = LoggerFactory.getLogger(TestRailReporter.class);
+
+	@Autowired
+	TestRailsApiService testRailService;
+
+	@Autowired
+	RunMetrics metrics;
+
+	@Value("${testrail.api.run-id:0}")
+	private int configuredRunId;
+
+	// state of the current run: the case ids by title, whether they were listed
+	// during the run, and the result payloads resolved so far
+	private Map<String, Integer> caseIds;
+	private boolean listed;
+	private boolean unavailable;
+	private final List<JSONObject> payloads = new ArrayList<JSONObject>();
+	private final Set<Integer> runCaseIds = new LinkedHashSet<Integer>();
+	private int unmatched;
+	private String runId;
+
+	@Override
+	public String getName() {
+		return "testrail";
+	}
+
+	/**
+	 * Returns whether the TestRail instance and project are set.
+	 **/
+	@Override
+	public boolean isEnabled() {
+		return testRailService.isEnabled();
+	}
+
+	/**
+	 * Forgets the results of a run that did not finish.
+	 **/
+	@Override
+	public synchronized void begin(String runId) {
+		this.runId = runId;
+		reset();
+	}
+
+	/**
+	 * Resolves the case ids of a batch, and keeps their result payloads to be
+	 * sent when the run finishes. If the cases cannot be listed, the results of
+	 * the run are not sent.
+	 **/
+	@Override
+	public synchronized void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes) {
+		if (!testRailService.isEnabled() || unavailable) {
+			return;
+		}
+
+		try {
+			if (caseIds == null) {
+				caseIds = testRailService.getCachedCaseIds();
+			}
+			if (caseIds == null) {
+				caseIds = testRailService.listCaseIds();
+				listed = true;
+			}
+
+			List<TestCaseResult> missing = resolve(batch);
+
+			// cases added since the listing was cached are only found by listing again
+			if (!missing.isEmpty() && !listed) {
+				caseIds = testRailService.listCaseIds();
+				listed = true;
+				missing = resolve(missing);
+			}
+
+			unmatched += missing.size();
+		} catch (UnirestException e) {
+			unavailable = true;
+			logger.info("There was an error HTTP request made to the TestRail API. The results were not sent");
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Sends the results kept during the run. Errors are logged, so TestRail being
+	 * unavailable does not fail a run that reached Jira.
+	 **/
+	@Override
+	public void finish() {
+		List<JSONObject> pending;
+		Set<Integer> pendingCaseIds;
+		String runName;
+		synchronized (this) {
+			if (unmatched > 0) {
+				logger.info(String.format("%s test cases have no TestRail case with their title and were not sent",
+						unmatched));
+			}
+
+			pending = new ArrayList<JSONObject>(payloads);
+			pendingCaseIds = new LinkedHashSet<Integer>(runCaseIds);
+			runName = runId;
+			reset();
+		}
+
+		if (pending.isEmpty() || !testRailService.isEnabled()) {
+			return;
+		}
+
+		long startedAt = System.nanoTime();
+		try {
+			upload(pending, pendingCaseIds, runName);
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the TestRail API. The results were not sent");
+			logger.debug(e.getMessage());
+		} finally {
+			metrics.recordPhase("testrail-upload", System.nanoTime() - startedAt);
+		}
+	}
+
+	private void upload(List<JSONObject> pending, Set<Integer> pendingCaseIds, String runName)
+			throws UnirestException {
+		int testRailRunId = configuredRunId > 0 ? configuredRunId
+				: testRailService.addRun(String.format("Railflow %s", runName), pendingCaseIds);
+		if (testRailRunId <= 0) {
+			return;
+		}
+
+		int added = testRailService.addResultsForCases(testRailRunId, pending);
+		logger.info(String.format("%s results were added to the TestRail run %s", added, testRailRunId));
+	}
+
+	private void reset() {
+		caseIds = null;
+		listed = false;
+		unavailable = false;
+		payloads.clear();
+		runCaseIds.clear();
+		unmatched = 0;
+	}
+
+	// adds the result of every test case found in the listing, and returns the
+	// others
+	private List<TestCaseResult> resolve(List<TestCaseResult> testCases) {
+		List<TestCaseResult> missing = new ArrayList<TestCaseResult>();
+
+		for (TestCaseResult testCase : testCases) {
+			Integer caseId = caseIds.get(String.format("%s.%s", testCase.getClassName(), testCase.getName()));
+			if (caseId == null) {
+				caseId = caseIds.get(testCase.getName());
+			}
+
+			if (caseId == null) {
+				missing.add(testCase);
+				continue;
+			}
+
+			payloads.add(testRailService.buildResultPayload(caseId, testCase.isFailed()));
+			runCaseIds.add(caseId);
+		}
+
+		return missing;
+	}
+
+}
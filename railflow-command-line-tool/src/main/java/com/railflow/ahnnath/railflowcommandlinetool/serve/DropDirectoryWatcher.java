@@ -0,0 +1,173 @@
+package com.railflow.ahnnath.railflowcommandlinetool.serve;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the drop directories of the 'serve' sub command and queues every XML
+ * report written to them. A report is queued once its size and modification
+ * time have not changed for the settle time, so files still being copied are
+ * not parsed. Parsed reports are moved to a 'processed' directory inside the
+ * drop directory, and reports that could not be parsed to a 'failed' one.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class DropDirectoryWatcher implements Runnable {
+
+	private static Logger logger = LoggerFactory.getLogger(DropDirectoryWatcher.class);
+
+	private static final String processedDirectory = "processed";
+	private static final String failedDirectory = "failed";
+
+	private final List<Path> directories;
+	private final IngestService ingestService;
+	private final long settleMillis;
+
+	// reports seen but not queued yet, with the size and time last seen
+	private final Map<Path, Candidate> candidates = new HashMap<Path, Candidate>();
+
+	public DropDirectoryWatcher(List<Path> directories, IngestService ingestService, long settleMillis) {
+		this.directories = directories;
+		this.ingestService = ingestService;
+		this.settleMillis = Math.max(0, settleMillis);
+	}
+
+	@Override
+	public void run() {
+		try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+			Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+			for (Path directory : directories) {
+				Files.createDirectories(directory);
+				keys.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY), directory);
+				logger.info(String.format("Watching %s for JUnit reports", directory));
+
+				// reports dropped while the service was down
+				rescan(directory);
+			}
+
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = watchService.poll(Math.max(100, settleMillis / 2), TimeUnit.MILLISECONDS);
+
+				if (key != null) {
+					Path directory = keys.get(key);
+
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							rescan(directory);
+							continue;
+						}
+
+						Path report = directory.resolve((Path) event.context());
+						if (report.getFileName().toString().toLowerCase().endsWith(".xml")) {
+							observe(report);
+						}
+					}
+					key.reset();
+				}
+
+				queueSettled();
+			}
+		} catch (IOException e) {
+			logger.info("There was an error watching the drop directories");
+			logger.debug(e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void rescan(Path directory) throws IOException {
+		try (DirectoryStream<Path> reports = Files.newDirectoryStream(directory, "*.xml")) {
+			for (Path report : reports) {
+				observe(report);
+			}
+		}
+	}
+
+	private void observe(Path report) {
+		try {
+			if (!Files.isRegularFile(report)) {
+				return;
+			}
+
+			BasicFileAttributes attributes = Files.readAttributes(report, BasicFileAttributes.class);
+			Candidate candidate = candidates.get(report);
+			long size = attributes.size();
+			long modified = attributes.lastModifiedTime().toMillis();
+
+			if (candidate == null || candidate.size != size || candidate.modified != modified) {
+				candidates.put(report, new Candidate(size, modified, System.currentTimeMillis()));
+			}
+		} catch (IOException e) {
+			candidates.remove(report);
+		}
+	}
+
+	// queues the reports that did not change during the settle time
+	private void queueSettled() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Path, Candidate>> iterator = candidates.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+			Map.Entry<Path, Candidate> entry = iterator.next();
+			Path report = entry.getKey();
+
+			if (now - entry.getValue().seenAt < settleMillis) {
+				continue;
+			}
+
+			// look once more, since a slow copy may not raise an event every time
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(report, BasicFileAttributes.class);
+				Candidate candidate = entry.getValue();
+
+				if (candidate.size != attributes.size()
+						|| candidate.modified != attributes.lastModifiedTime().toMillis()) {
+					entry.setValue(new Candidate(attributes.size(), attributes.lastModifiedTime().toMillis(), now));
+					continue;
+				}
+			} catch (IOException e) {
+				iterator.remove();
+				continue;
+			}
+
+			iterator.remove();
+			ingestService.submit(report.toFile(), report.getParent().resolve(processedDirectory),
+					report.getParent().resolve(failedDirectory));
+		}
+	}
+
+	private static final class Candidate {
+
+		private final long size;
+		private final long modified;
+		private final long seenAt;
+
+		private Candidate(long size, long modified, long seenAt) {
+			this.size = size;
+			this.modified = modified;
+			this.seenAt = seenAt;
+		}
+	}
+
+}
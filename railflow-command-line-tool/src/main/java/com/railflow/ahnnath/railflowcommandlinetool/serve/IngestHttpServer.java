@@ -0,0 +1,164 @@
+package com.railflow.ahnnath.railflowcommandlinetool.serve;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Receives JUnit reports over HTTP for the 'serve' sub command. A report is
+ * uploaded with 'POST /reports' and streamed to the spool directory, so it is
+ * never held in memory, and then queued to be parsed. The request returns as
+ * soon as the report is queued. A report larger than the maximum size is
+ * refused with 413, and reports that could not be parsed are kept in the
+ * 'failed' directory of the spool. 'GET /health' returns the number of reports
+ * waiting to be parsed.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class IngestHttpServer implements AutoCloseable {
+
+	private static Logger logger = LoggerFactory.getLogger(IngestHttpServer.class);
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final IngestService ingestService;
+	private final Path spoolDirectory;
+	private final long maxReportBytes;
+
+	private static final String failedDirectory = "failed";
+
+	public IngestHttpServer(String host, int port, Path spoolDirectory, long maxReportBytes,
+			IngestService ingestService) throws IOException {
+		this.ingestService = ingestService;
+		this.spoolDirectory = Files.createDirectories(spoolDirectory);
+		this.maxReportBytes = maxReportBytes;
+		this.executor = Executors.newFixedThreadPool(4, runnable -> {
+			Thread thread = new Thread(runnable, "railflow-ingest");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+		this.server.createContext("/reports", this::handleReport);
+		this.server.createContext("/health", this::handleHealth);
+		this.server.setExecutor(executor);
+	}
+
+	public void start() {
+		server.start();
+		logger.info(String.format("Accepting JUnit reports on http://%s:%s/reports",
+				server.getAddress().getHostString(), server.getAddress().getPort()));
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the directory the uploads that could not be parsed are moved to.
+	 **/
+	public Path getFailedDirectory() {
+		return spoolDirectory.resolve(failedDirectory);
+	}
+
+	@Override
+	public void close() {
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	private void handleReport(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, new JSONObject().put("error", "Reports are uploaded with POST"));
+			return;
+		}
+
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength != null && Long.parseLong(contentLength.trim()) > maxReportBytes) {
+			refuseTooLarge(exchange);
+			return;
+		}
+
+		String name = String.format("upload-%s.xml", UUID.randomUUID());
+		Path partial = spoolDirectory.resolve(name + ".part");
+		Path report = spoolDirectory.resolve(name);
+
+		try (InputStream body = exchange.getRequestBody()) {
+			// a chunked upload has no length, so its size is checked while it is written
+			if (!copy(body, partial)) {
+				Files.deleteIfExists(partial);
+				refuseTooLarge(exchange);
+				return;
+			}
+			Files.move(partial, report, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.deleteIfExists(partial);
+			logger.info("There was an error receiving an uploaded report");
+			logger.debug(e.getMessage());
+			respond(exchange, 500, new JSONObject().put("error", "The report could not be received"));
+			return;
+		}
+
+		ingestService.submit(report.toFile(), null, getFailedDirectory());
+		respond(exchange, 202, new JSONObject().put("report", name).put("pending", ingestService.getPending()));
+	}
+
+	// writes the body to the given file, and returns false as soon as it is
+	// larger than the maximum size
+	private boolean copy(InputStream body, Path file) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		long size = 0;
+
+		try (OutputStream out = Files.newOutputStream(file)) {
+			int read;
+			while ((read = body.read(buffer)) != -1) {
+				size += read;
+				if (size > maxReportBytes) {
+					return false;
+				}
+				out.write(buffer, 0, read);
+			}
+		}
+
+		return true;
+	}
+
+	private void refuseTooLarge(HttpExchange exchange) throws IOException {
+		logger.info(String.format("An uploaded report larger than %s bytes was refused", maxReportBytes));
+		respond(exchange, 413,
+				new JSONObject().put("error", String.format("Reports can be up to %s bytes", maxReportBytes)));
+	}
+
+	private void handleHealth(HttpExchange exchange) throws IOException {
+		respond(exchange, 200, new JSONObject().put("status", "UP").put("pending", ingestService.getPending()));
+	}
+
+	private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+}
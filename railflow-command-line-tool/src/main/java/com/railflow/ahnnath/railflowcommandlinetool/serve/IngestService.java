@@ -0,0 +1,157 @@
+package com.railflow.ahnnath.railflowcommandlinetool.serve;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.util.DomParser;
+
+/**
+ * Queues the reports received by the 'serve' sub command and parses them on a
+ * single thread, so two reports never reconcile the same defect at the same
+ * time. Reports that arrive while a run is in progress are parsed together in
+ * the next run. Every run brings the defect index up to date first, which only
+ * asks Jira for the issues updated since the previous run. Reports that could
+ * not be parsed, or whose run did not finish, are kept in a 'failed' directory
+ * to be looked at and dropped again. The metrics are exported after every run
+ * and add up over the life of the server.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class IngestService {
+
+	private static Logger logger = LoggerFactory.getLogger(IngestService.class);
+
+	@Autowired
+	DomParser parser;
+
+	@Autowired
+	JiraApiService jiraService;
+
+	@Autowired
+	RunMetrics metrics;
+
+	private final BlockingQueue<Report> queue = new LinkedBlockingQueue<Report>();
+
+	/**
+	 * Queues a report to be parsed.
+	 *
+	 * @param file      report in local storage.
+	 * @param processed directory the report is moved to once parsed, or null to
+	 *                  delete it.
+	 * @param failed    directory the report is moved to if it was not parsed.
+	 **/
+	public void submit(File file, Path processed, Path failed) {
+		queue.add(new Report(file, processed, failed));
+	}
+
+	public int getPending() {
+		return queue.size();
+	}
+
+	/**
+	 * Parses the queued reports until the calling thread is interrupted.
+	 **/
+	public void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				List<Report> reports = new ArrayList<Report>();
+				reports.add(queue.take());
+				queue.drainTo(reports);
+
+				process(reports);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void process(List<Report> reports) {
+		// a report dropped twice before it was parsed is parsed once
+		Map<File, Report> byFile = new LinkedHashMap<File, Report>();
+		for (Report report : reports) {
+			byFile.put(report.file, report);
+		}
+
+		long startedAt = System.currentTimeMillis();
+		logger.info(String.format("Parsing %s received reports", byFile.size()));
+
+		List<File> files = new ArrayList<File>(byFile.keySet());
+		List<File> failed = files;
+
+		try {
+			jiraService.syncDefectIndex();
+			failed = parser.parseXMLDocs(files);
+		} catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
+			logger.debug(e.getMessage());
+		} finally {
+			jiraService.saveDefectIndex();
+			metrics.export();
+		}
+
+		for (Report report : byFile.values()) {
+			archive(report, failed.contains(report.file));
+		}
+
+		logger.info(String.format("Parsed %s received reports in %s ms", byFile.size(),
+				System.currentTimeMillis() - startedAt));
+	}
+
+	// moves a report out of the drop directory or the spool once it was handled,
+	// or deletes an upload that was parsed
+	private void archive(Report report, boolean failed) {
+		Path path = report.file.toPath();
+		Path directory = failed ? report.failed : report.processed;
+
+		try {
+			if (failed) {
+				logger.info(String.format("The report %s was not parsed and was moved to %s", path, directory));
+			}
+
+			if (directory == null) {
+				Files.deleteIfExists(path);
+			} else if (Files.exists(path)) {
+				Files.createDirectories(directory);
+				Files.move(path, directory.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			logger.info(String.format("The report %s could not be moved after it was parsed", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	private static final class Report {
+
+		private final File file;
+		private final Path processed;
+		private final Path failed;
+
+		private Report(File file, Path processed, Path failed) {
+			this.file = file;
+			this.processed = processed;
+			this.failed = failed;
+		}
+	}
+
+}
@@ -0,0 +1,403 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+
+/**
+ * Append-only journal of the Jira actions of a run, written under the cache
+ * directory as one JSON line per event: the actions planned for a batch, each
+ * action completed with its result, such as the id of a created defect, and
+ * the end of the run. Events are buffered and written with a single fsync per
+ * group of requests, so the journal costs one disk flush per batch instead of
+ * one per action. A run that did not finish, because the process died or Jira
+ * went down, is resumed by the next run: the actions it completed are not sent
+ * again, and the defects it created are commented on instead of created twice.
+ * Commands that are not runs over reports, such as 'flush', keep a journal of
+ * their own, so they never resume or finish a run of another command.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class ActionJournal {
+
+	private static Logger logger = LoggerFactory.getLogger(ActionJournal.class);
+
+	private static final DateTimeFormatter runIdFormat = DateTimeFormatter.ofPattern("'run-'yyyyMMdd'T'HHmmss'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	private static final String begun = "begun";
+	private static final String planned = "planned";
+	private static final String done = "done";
+	private static final String finished = "finished";
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	@Value("${railflow.journal.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railflow.run-id:}")
+	private String configuredRunId;
+
+	@Value("${railflow.journal.resume-max-age-hours:24}")
+	private long resumeMaxAgeHours;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private final Map<String, String> completed = new HashMap<String, String>();
+	private final Set<String> inFlight = new HashSet<String>();
+	private FileChannel channel;
+	private String runId;
+	private String journalName;
+
+	/**
+	 * Starts a run over the given input files in the journal of the runs.
+	 *
+	 * @see #begin(String, List)
+	 **/
+	public synchronized String begin(List<File> inputs) {
+		return begin(null, inputs);
+	}
+
+	/**
+	 * Starts a run over the given input files. The run left unfinished in the
+	 * same journal is resumed if 'railflow.run-id' names it, or, when no run id
+	 * is given, if it was started for the same inputs, unchanged since, less
+	 * than 'railflow.journal.resume-max-age-hours' ago. Otherwise the journal is
+	 * started over.
+	 *
+	 * @param name   name of the journal, or null for the journal of the runs.
+	 * @param inputs files the run reads, such as reports or a plan.
+	 * @return String object with the id of the run.
+	 **/
+	public synchronized String begin(String name, List<File> inputs) {
+		close();
+		completed.clear();
+		inFlight.clear();
+		runId = null;
+		journalName = name;
+
+		Path path = getPath();
+		String inputsHash = hash(inputs);
+		Entry unfinished = enabled ? readUnfinished(path) : null;
+		String unfinishedRunId = unfinished != null ? unfinished.run : null;
+		String requestedRunId = configuredRunId == null || configuredRunId.isBlank() ? null : configuredRunId.trim();
+
+		if (unfinished != null && (requestedRunId != null ? requestedRunId.equals(unfinishedRunId)
+				: isResumable(unfinished, inputsHash))) {
+			runId = unfinishedRunId;
+			logger.info(String.format("Resuming the unfinished run %s: %s actions were already sent", runId,
+					completed.size()));
+			if (!inFlight.isEmpty()) {
+				logger.info(String.format("%s actions were being sent when the run stopped and are decided again",
+						inFlight.size()));
+			}
+		} else {
+			if (unfinished != null) {
+				logger.info(String.format("The unfinished run %s was started for other inputs and is not resumed",
+						unfinishedRunId));
+			}
+			completed.clear();
+			inFlight.clear();
+			runId = requestedRunId != null ? requestedRunId : runIdFormat.format(Instant.now());
+		}
+
+		if (!enabled) {
+			return runId;
+		}
+
+		try {
+			Files.createDirectories(path.getParent());
+			if (unfinishedRunId != null && runId.equals(unfinishedRunId)) {
+				channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				endTornLine(path);
+			} else {
+				channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+				Entry begun = new Entry(runId, ActionJournal.begun, null, null);
+				begun.inputs = inputsHash;
+				begun.at = System.currentTimeMillis();
+				append(begun);
+				commit();
+			}
+		} catch (IOException e) {
+			logger.info(String.format("The action journal %s could not be opened; the run cannot be resumed", path));
+			logger.debug(e.getMessage());
+		}
+
+		return runId;
+	}
+
+	// a run is resumed without a run id only if it read the same files recently
+	private boolean isResumable(Entry unfinished, String inputsHash) {
+		return inputsHash.equals(unfinished.inputs) && unfinished.at != null
+				&& System.currentTimeMillis() - unfinished.at < TimeUnit.HOURS.toMillis(resumeMaxAgeHours);
+	}
+
+	/**
+	 * Returns the id of the current run: the id given to
+	 * {@link #begin(String, List)}, or 'railflow.run-id' or the current time
+	 * before any run began.
+	 **/
+	public synchronized String getRunId() {
+		if (runId != null) {
+			return runId;
+		}
+		return configuredRunId == null || configuredRunId.isBlank() ? runIdFormat.format(Instant.now())
+				: configuredRunId.trim();
+	}
+
+	/**
+	 * Returns the result of an action completed by the current run, such as the
+	 * id of the defect it created, or null if it was not completed.
+	 **/
+	public synchronized String getResult(PlannedAction action) {
+		return completed.get(key(action));
+	}
+
+	/**
+	 * Adds the actions about to be sent. They are written with the next
+	 * {@link #commit()}. Comments are left out, since they are only sent when the
+	 * run finishes.
+	 **/
+	public synchronized void planned(List<PlannedAction> actions) {
+		for (PlannedAction action : actions) {
+			if (action.getType() != PlannedAction.Type.COMMENT) {
+				append(new Entry(runId, planned, action, null));
+			}
+		}
+	}
+
+	/**
+	 * Adds a completed action and its result. It is written with the next
+	 * {@link #commit()}.
+	 *
+	 * @param action action sent to Jira.
+	 * @param result id of the created defect, or of the closed issue.
+	 **/
+	public synchronized void completed(PlannedAction action, String result) {
+		completed.put(key(action), result);
+		append(new Entry(runId, done, action, result));
+	}
+
+	/**
+	 * Writes the buffered events and waits for them to reach the disk.
+	 **/
+	public synchronized void commit() {
+		if (channel == null || pending.size() == 0) {
+			pending.reset();
+			return;
+		}
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			logger.info("The action journal could not be written; the run cannot be resumed");
+			logger.debug(e.getMessage());
+		}
+		pending.reset();
+	}
+
+	/**
+	 * Records the end of the run, so the next run starts over.
+	 **/
+	public synchronized void finish() {
+		if (channel != null) {
+			append(new Entry(runId, finished, null, null));
+			commit();
+		}
+		close();
+		runId = null;
+	}
+
+	private void append(Entry entry) {
+		if (channel == null) {
+			return;
+		}
+
+		try {
+			pending.write(mapper.writeValueAsBytes(entry));
+			pending.write('\n');
+		} catch (IOException e) {
+			logger.debug(e.getMessage());
+		}
+	}
+
+	// returns the first event of the run left unfinished in the journal, and
+	// loads the actions it completed; a line cut short by a crash is ignored
+	private Entry readUnfinished(Path path) {
+		if (!Files.exists(path)) {
+			return null;
+		}
+
+		Entry first = null;
+		boolean lastFinished = true;
+
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Entry entry;
+				try {
+					entry = mapper.readValue(line, Entry.class);
+				} catch (IOException e) {
+					continue;
+				}
+
+				if (entry.run == null) {
+					continue;
+				}
+				if (first == null || !entry.run.equals(first.run)) {
+					first = entry;
+					completed.clear();
+					inFlight.clear();
+				}
+				lastFinished = finished.equals(entry.event);
+
+				String key = key(entry.type, entry.metadata, entry.issueId);
+				if (planned.equals(entry.event)) {
+					inFlight.add(key);
+				} else if (done.equals(entry.event)) {
+					inFlight.remove(key);
+					completed.put(key, entry.result);
+				}
+			}
+		} catch (IOException e) {
+			logger.info(String.format("The action journal %s could not be read", path));
+			logger.debug(e.getMessage());
+			return null;
+		}
+
+		return lastFinished ? null : first;
+	}
+
+	// a line cut short by a crash is ended, so the next event starts a line
+	private void endTornLine(Path path) throws IOException {
+		try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer last = ByteBuffer.allocate(1);
+			if (reader.size() > 0 && reader.read(last, reader.size() - 1) == 1 && last.get(0) != '\n') {
+				pending.write('\n');
+			}
+		}
+	}
+
+	private void close() {
+		if (channel == null) {
+			return;
+		}
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.debug(e.getMessage());
+		}
+		channel = null;
+	}
+
+	private Path getPath() {
+		return journalName == null ? Paths.get(cacheDir, String.format("journal-%s.jsonl", targetProject.trim()))
+				: Paths.get(cacheDir, String.format("journal-%s-%s.jsonl", targetProject.trim(), journalName));
+	}
+
+	// identifies the input files by path, size and modification time
+	private static String hash(List<File> inputs) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (File input : inputs) {
+			File file = input.getAbsoluteFile();
+			digest.update(String.format("%s\u0000%s\u0000%s\n", file.getPath(), file.length(), file.lastModified())
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	private static String key(PlannedAction action) {
+		return key(action.getType(), action.getMetadata(), action.getIssueId());
+	}
+
+	// both types of creation share a key, since either creates the defect
+	private static String key(PlannedAction.Type type, String metadata, String issueId) {
+		PlannedAction.Type kind = type == PlannedAction.Type.REGRESSION ? PlannedAction.Type.CREATE : type;
+		return kind + "\u0000" + metadata + "\u0000" + (issueId != null ? issueId : "");
+	}
+
+	/**
+	 * Single event of the journal.
+	 **/
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+	static final class Entry {
+
+		private String run;
+		private String event;
+		private PlannedAction.Type type;
+		private String metadata;
+		private String issueId;
+		private String title;
+		private String result;
+		private String inputs;
+		private Long at;
+
+		Entry() {
+		}
+
+		private Entry(String run, String event, PlannedAction action, String result) {
+			this.run = run;
+			this.event = event;
+			this.result = result;
+
+			if (action != null) {
+				this.type = action.getType();
+				this.metadata = action.getMetadata();
+				this.issueId = action.getIssueId();
+				this.title = action.getTitle();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+
+/**
+ * Keeps the Jira actions that could not be sent because Jira was unreachable,
+ * so the 'flush' sub command can send them later. Actions are appended to a
+ * file under the cache directory, one JSON line each, and written to disk
+ * before the run goes on. While the outbox is being drained, new actions go to
+ * a new file, so an action that fails again is kept for the next flush.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class ActionOutbox {
+
+	private static Logger logger = LoggerFactory.getLogger(ActionOutbox.class);
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Appends actions to the outbox and waits for them to reach the disk.
+	 *
+	 * @param actions actions that could not be sent.
+	 * @return boolean true if the actions were written.
+	 **/
+	public synchronized boolean spool(List<PlannedAction> actions) {
+		if (actions.isEmpty()) {
+			return true;
+		}
+
+		Path path = getPath();
+
+		try {
+			ByteArrayOutputStream lines = new ByteArrayOutputStream();
+			for (PlannedAction action : actions) {
+				lines.write(mapper.writeValueAsBytes(action));
+				lines.write('\n');
+			}
+
+			Files.createDirectories(path.getParent());
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND)) {
+				ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+
+			return true;
+		} catch (IOException e) {
+			logger.info(String.format("The actions could not be written to the outbox %s", path));
+			logger.debug(e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Takes the actions of the outbox to send them. They stay on disk until
+	 * {@link #drained()} is called, so they are taken again if the flush is
+	 * interrupted. Actions that would make the same request are returned once.
+	 *
+	 * @return List object with the actions, in the order they were spooled.
+	 **/
+	public synchronized List<PlannedAction> take() throws IOException {
+		Path path = getPath();
+		Path draining = getDrainingPath();
+
+		// a flush that was interrupted left its actions in the draining file
+		if (Files.exists(path)) {
+			if (Files.exists(draining)) {
+				Files.write(draining, Files.readAllBytes(path), StandardOpenOption.APPEND);
+				Files.delete(path);
+			} else {
+				Files.move(path, draining, StandardCopyOption.ATOMIC_MOVE);
+			}
+		}
+
+		Set<PlannedAction> actions = new LinkedHashSet<PlannedAction>();
+		if (!Files.exists(draining)) {
+			return new ArrayList<PlannedAction>();
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(draining, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				try {
+					actions.add(mapper.readValue(line, PlannedAction.class));
+				} catch (IOException e) {
+					logger.debug(String.format("Skipping a damaged outbox line: %s", e.getMessage()));
+				}
+			}
+		}
+
+		return new ArrayList<PlannedAction>(actions);
+	}
+
+	/**
+	 * Removes the actions returned by {@link #take()} once they were sent or
+	 * spooled again.
+	 **/
+	public synchronized void drained() throws IOException {
+		Files.deleteIfExists(getDrainingPath());
+	}
+
+	private Path getPath() {
+		return Paths.get(cacheDir, String.format("outbox-%s.jsonl", targetProject.trim()));
+	}
+
+	private Path getDrainingPath() {
+		return Paths.get(cacheDir, String.format("outbox-%s.draining.jsonl", targetProject.trim()));
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Remembers, for every defect that was commented on as still open, when the
+ * last comment was posted and the failures seen since then, so comments can be
+ * limited to one per issue and time window. The ledger is stored under the
+ * cache directory as a JSON file next to the defect index.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class CommentLedger {
+
+	private static Logger logger = LoggerFactory.getLogger(CommentLedger.class);
+
+	// run ids kept per issue to be listed in the next comment
+	static final int maxRunIds = 10;
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean loaded = false;
+	private boolean dirty = false;
+
+	/**
+	 * Loads the ledger of the target project, if any. Later calls do nothing.
+	 **/
+	public synchronized void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+
+		Path path = getPath();
+		if (!Files.exists(path)) {
+			return;
+		}
+
+		try {
+			entries = mapper.readValue(path.toFile(), new TypeReference<HashMap<String, Entry>>() {
+			});
+		} catch (IOException e) {
+			logger.info(String.format("The comment ledger %s could not be read and will be rebuilt", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the ledger to the cache directory if it changed since it was loaded.
+	 * The file is replaced atomically so a crash never leaves a partial ledger.
+	 **/
+	public synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+
+		Path path = getPath();
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			mapper.writeValue(temp.toFile(), entries);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} catch (IOException e) {
+			logger.info(String.format("The comment ledger %s could not be written", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Adds the failures of a run to the ones not commented on yet.
+	 *
+	 * @param issueId  id of the open defect.
+	 * @param runId    id of the run.
+	 * @param failures number of failing test cases of the run that match the
+	 *                 defect.
+	 * @return Entry object with the failures not commented on yet.
+	 **/
+	public synchronized Entry record(String issueId, String runId, int failures) {
+		Entry entry = entries.computeIfAbsent(issueId, key -> new Entry());
+		entry.pendingFailures += failures;
+		entry.pendingRuns++;
+		entry.runIds.remove(runId);
+		entry.runIds.add(runId);
+		if (entry.runIds.size() > maxRunIds) {
+			entry.runIds.remove(0);
+		}
+		dirty = true;
+
+		return entry.copy();
+	}
+
+	/**
+	 * Returns whether a comment may be posted on the issue: it was never
+	 * commented on, or its last comment is older than the window.
+	 **/
+	public synchronized boolean isDue(String issueId, long now, long windowMillis) {
+		Entry entry = entries.get(issueId);
+		return entry == null || entry.lastCommentedAt == 0 || now - entry.lastCommentedAt >= windowMillis;
+	}
+
+	/**
+	 * Records a posted comment, which covered every failure recorded so far.
+	 **/
+	public synchronized void markCommented(String issueId, long commentedAt) {
+		Entry entry = entries.computeIfAbsent(issueId, key -> new Entry());
+		entry.lastCommentedAt = commentedAt;
+		entry.pendingFailures = 0;
+		entry.pendingRuns = 0;
+		entry.runIds.clear();
+		dirty = true;
+	}
+
+	/**
+	 * Forgets an issue, for example once it was closed.
+	 **/
+	public synchronized void remove(String issueId) {
+		if (entries.remove(issueId) != null) {
+			dirty = true;
+		}
+	}
+
+	private Path getPath() {
+		return Paths.get(cacheDir, String.format("comment-ledger-%s.json", targetProject.trim()));
+	}
+
+	/**
+	 * Last comment of an issue and the failures seen since then.
+	 **/
+	@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+	public static final class Entry {
+
+		private long lastCommentedAt = 0;
+		private int pendingFailures = 0;
+		private int pendingRuns = 0;
+		private List<String> runIds = new ArrayList<String>();
+
+		public long getLastCommentedAt() {
+			return lastCommentedAt;
+		}
+
+		public int getPendingFailures() {
+			return pendingFailures;
+		}
+
+		public int getPendingRuns() {
+			return pendingRuns;
+		}
+
+		public List<String> getRunIds() {
+			return runIds;
+		}
+
+		private Entry copy() {
+			Entry copy = new Entry();
+			copy.lastCommentedAt = lastCommentedAt;
+			copy.pendingFailures = pendingFailures;
+			copy.pendingRuns = pendingRuns;
+			copy.runIds = new ArrayList<String>(runIds);
+			return copy;
+		}
+	}
+
+}
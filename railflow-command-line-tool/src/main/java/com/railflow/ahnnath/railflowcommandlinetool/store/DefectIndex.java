@@ -0,0 +1,306 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps a local copy of the Jira defects that carry metadata, so defects can be
+ * found without a JQL search per test case. The index is stored under the cache
+ * directory as a compact binary file that is memory-mapped when loaded, and it
+ * remembers when it was last synchronized with Jira so later runs only need the
+ * issues updated since then. It also remembers the last full synchronization,
+ * which removes the issues deleted on Jira since the one before.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class DefectIndex {
+
+	private static Logger logger = LoggerFactory.getLogger(DefectIndex.class);
+
+	// 'RFDI' followed by the version of the file layout
+	private static final int magic = 0x52464449;
+	private static final int formatVersion = 2;
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	private final Map<String, IndexedDefect> issues = new HashMap<String, IndexedDefect>();
+	private final Map<String, List<String>> issueIdsByMetadata = new HashMap<String, List<String>>();
+	private long lastSync = 0;
+	private long lastFullSync = 0;
+	private boolean synced = false;
+	private boolean loaded = false;
+	private boolean dirty = false;
+
+	/**
+	 * Loads the index file of the target project, if any, and returns the time of
+	 * its last synchronization.
+	 *
+	 * @return long with the epoch millis of the last sync, 0 if never synced.
+	 **/
+	public synchronized long load() {
+		if (loaded) {
+			return lastSync;
+		}
+		loaded = true;
+
+		Path path = getPath();
+		if (!Files.exists(path)) {
+			return lastSync;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != magic || buffer.getInt() != formatVersion) {
+				logger.info(String.format("Ignoring defect index %s since it has an unknown format", path));
+				return lastSync;
+			}
+
+			long savedSync = buffer.getLong();
+			long savedFullSync = buffer.getLong();
+			int count = buffer.getInt();
+
+			for (int i = 0; i < count; i++) {
+				String issueId = readString(buffer);
+				String issueKey = readString(buffer);
+				String metadata = readString(buffer);
+				String status = readString(buffer);
+				put(issueId, issueKey, metadata, status);
+			}
+
+			lastSync = savedSync;
+			lastFullSync = savedFullSync;
+			dirty = false;
+		} catch (IOException | RuntimeException e) {
+			logger.info(String.format("The defect index %s could not be read and will be rebuilt", path));
+			logger.debug(e.getMessage());
+			issues.clear();
+			issueIdsByMetadata.clear();
+		}
+
+		return lastSync;
+	}
+
+	/**
+	 * Writes the index to the cache directory if it changed since it was loaded.
+	 * The file is replaced atomically so a crash never leaves a partial index.
+	 **/
+	public synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+
+		Path path = getPath();
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+				out.writeInt(magic);
+				out.writeInt(formatVersion);
+				out.writeLong(lastSync);
+				out.writeLong(lastFullSync);
+				out.writeInt(issues.size());
+
+				for (Map.Entry<String, IndexedDefect> entry : issues.entrySet()) {
+					writeString(out, entry.getKey());
+					writeString(out, entry.getValue().issueKey);
+					writeString(out, entry.getValue().metadata);
+					writeString(out, entry.getValue().status);
+				}
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} catch (IOException e) {
+			logger.info(String.format("The defect index could not be saved to %s", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Adds an issue to the index or replaces the indexed values of an issue.
+	 *
+	 * @param issueId  id of the issue.
+	 * @param issueKey key of the issue.
+	 * @param metadata metadata stored in the custom field of the issue.
+	 * @param status   name of the issue status.
+	 **/
+	public synchronized void put(String issueId, String issueKey, String metadata, String status) {
+		remove(issueId);
+
+		issues.put(issueId, new IndexedDefect(issueKey, metadata, status));
+		issueIdsByMetadata.computeIfAbsent(metadata, key -> new ArrayList<String>(1)).add(issueId);
+		dirty = true;
+	}
+
+	/**
+	 * Changes the status of an indexed issue. Issues that are not in the index are
+	 * ignored.
+	 *
+	 * @param issueId id of the issue.
+	 * @param status  name of the new issue status.
+	 **/
+	public synchronized void updateStatus(String issueId, String status) {
+		IndexedDefect defect = issues.get(issueId);
+
+		if (defect != null) {
+			defect.status = status;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Removes an issue from the index, for example once Jira reports it no longer
+	 * exists.
+	 *
+	 * @param issueId id of the issue.
+	 **/
+	public synchronized void remove(String issueId) {
+		IndexedDefect previous = issues.remove(issueId);
+
+		if (previous != null) {
+			List<String> issueIds = issueIdsByMetadata.get(previous.metadata);
+			issueIds.remove(issueId);
+			if (issueIds.isEmpty()) {
+				issueIdsByMetadata.remove(previous.metadata);
+			}
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Removes the indexed issues that are not in the given ids, such as the
+	 * issues deleted on Jira since they were indexed.
+	 *
+	 * @param issueIds ids of the issues to keep.
+	 * @return int with the number of issues removed.
+	 **/
+	public synchronized int retainOnly(Set<String> issueIds) {
+		List<String> removed = new ArrayList<String>();
+		for (String issueId : issues.keySet()) {
+			if (!issueIds.contains(issueId)) {
+				removed.add(issueId);
+			}
+		}
+
+		for (String issueId : removed) {
+			remove(issueId);
+		}
+		return removed.size();
+	}
+
+	/**
+	 * Looks for an indexed issue with the given metadata and status.
+	 *
+	 * @param metadata metadata stored in the custom field of the issue.
+	 * @param status   name of the issue status.
+	 * @return String object with the issue id, null if none was found.
+	 **/
+	public synchronized String find(String metadata, String status) {
+		List<String> issueIds = issueIdsByMetadata.get(metadata);
+
+		if (issueIds != null) {
+			for (String issueId : issueIds) {
+				if (status.equals(issues.get(issueId).status)) {
+					return issueId;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Records a completed synchronization. From then on the index can answer
+	 * lookups in place of Jira.
+	 *
+	 * @param syncStartedAt epoch millis of the moment the sync query was sent.
+	 * @param full          whether every issue was retrieved.
+	 **/
+	public synchronized void markSynced(long syncStartedAt, boolean full) {
+		lastSync = syncStartedAt;
+		if (full) {
+			lastFullSync = syncStartedAt;
+		}
+		synced = true;
+		dirty = true;
+	}
+
+	/**
+	 * Returns the epoch millis of the last full synchronization, 0 if never.
+	 **/
+	public synchronized long getLastFullSync() {
+		return lastFullSync;
+	}
+
+	public synchronized boolean isSynced() {
+		return synced;
+	}
+
+	public synchronized int size() {
+		return issues.size();
+	}
+
+	private Path getPath() {
+		return Paths.get(cacheDir, String.format("defect-index-%s.bin", targetProject.trim()));
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Values kept for each indexed issue.
+	 **/
+	private static final class IndexedDefect {
+
+		private final String issueKey;
+		private final String metadata;
+		private String status;
+
+		private IndexedDefect(String issueKey, String metadata, String status) {
+			this.issueKey = issueKey;
+			this.metadata = metadata;
+			this.status = status;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the id of the metadata custom field under the cache directory, so the
+ * field is not looked up in Jira on every run. An id older than
+ * 'jira.api.custom-field.cache-ttl-minutes', or resolved on another Jira
+ * instance, is not used. Fields that were not found are not kept, so a field
+ * created afterwards is found by the next run.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class JiraFieldCache {
+
+	private static Logger logger = LoggerFactory.getLogger(JiraFieldCache.class);
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.custom-field.cache-ttl-minutes:1440}")
+	private long ttlMinutes;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Returns the id of a custom field, or null if it was not cached for the
+	 * instance or is older than the TTL.
+	 *
+	 * @param instance  url of the Jira instance.
+	 * @param fieldName name of the custom field.
+	 **/
+	public synchronized String load(String instance, String fieldName) {
+		Path path = getPath(fieldName);
+		if (ttlMinutes <= 0 || !Files.exists(path)) {
+			return null;
+		}
+
+		try {
+			ResolvedField field = mapper.readValue(path.toFile(), ResolvedField.class);
+			if (!instance.equals(field.instance)
+					|| System.currentTimeMillis() - field.fetchedAt > TimeUnit.MINUTES.toMillis(ttlMinutes)) {
+				return null;
+			}
+			return field.id;
+		} catch (IOException e) {
+			logger.info(String.format("The custom field %s could not be read and will be looked up again", path));
+			logger.debug(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the id of a custom field, replacing the file atomically.
+	 *
+	 * @param instance  url of the Jira instance.
+	 * @param fieldName name of the custom field.
+	 * @param id        id of the field, such as 'customfield_10034'.
+	 **/
+	public synchronized void save(String instance, String fieldName, String id) {
+		Path path = getPath(fieldName);
+		ResolvedField field = new ResolvedField();
+		field.fetchedAt = System.currentTimeMillis();
+		field.instance = instance;
+		field.id = id;
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			mapper.writeValue(temp.toFile(), field);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.info(String.format("The custom field could not be saved to %s", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	private Path getPath(String fieldName) {
+		return Paths.get(cacheDir, String.format("jira-field-%s.json", fieldName.replaceAll("[^A-Za-z0-9_-]", "_")));
+	}
+
+	/**
+	 * Id of a custom field, the instance it belongs to, and when it was found.
+	 **/
+	@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+	static final class ResolvedField {
+
+		private long fetchedAt;
+		private String instance;
+		private String id;
+	}
+
+}
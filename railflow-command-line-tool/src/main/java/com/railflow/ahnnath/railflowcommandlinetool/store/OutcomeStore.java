@@ -0,0 +1,183 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the outcome of every test case the last time it was reconciled
+ * with Jira, and when that was. A test case that passed then and passes again
+ * has nothing to close, so it does not need to be looked up. The outcomes are
+ * stored under the cache directory as a compact binary file that is
+ * memory-mapped when loaded, like the defect index.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class OutcomeStore {
+
+	private static Logger logger = LoggerFactory.getLogger(OutcomeStore.class);
+
+	// 'RFOS' followed by the version of the file layout
+	private static final int magic = 0x52464f53;
+	private static final int formatVersion = 1;
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${jira.api.target.project}")
+	private String targetProject;
+
+	@Value("${railflow.outcomes.retention-days:30}")
+	private int retentionDays;
+
+	private final Map<String, Outcome> outcomes = new HashMap<String, Outcome>();
+	private boolean loaded = false;
+	private boolean dirty = false;
+
+	/**
+	 * Loads the outcomes of the target project, if any. Later calls do nothing.
+	 **/
+	public synchronized void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+
+		Path path = getPath();
+		if (!Files.exists(path)) {
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != magic || buffer.getInt() != formatVersion) {
+				logger.info(String.format("Ignoring test outcomes %s since they have an unknown format", path));
+				return;
+			}
+
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				byte[] metadata = new byte[buffer.getInt()];
+				buffer.get(metadata);
+				outcomes.put(new String(metadata, StandardCharsets.UTF_8),
+						new Outcome(buffer.get() != 0, buffer.getLong()));
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.info(String.format("The test outcomes %s could not be read and will be rebuilt", path));
+			logger.debug(e.getMessage());
+			outcomes.clear();
+		}
+	}
+
+	/**
+	 * Writes the outcomes to the cache directory if they changed since they were
+	 * loaded. Test cases not reconciled for 'railflow.outcomes.retention-days',
+	 * such as deleted tests, are left out. The file is replaced atomically so a
+	 * crash never leaves a partial file.
+	 **/
+	public synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+
+		long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Math.max(1, retentionDays));
+		outcomes.values().removeIf(outcome -> outcome.reconciledAt < oldest);
+
+		Path path = getPath();
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+				out.writeInt(magic);
+				out.writeInt(formatVersion);
+				out.writeInt(outcomes.size());
+
+				for (Map.Entry<String, Outcome> entry : outcomes.entrySet()) {
+					byte[] metadata = entry.getKey().getBytes(StandardCharsets.UTF_8);
+					out.writeInt(metadata.length);
+					out.write(metadata);
+					out.writeByte(entry.getValue().failed ? 1 : 0);
+					out.writeLong(entry.getValue().reconciledAt);
+				}
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} catch (IOException e) {
+			logger.info(String.format("The test outcomes could not be saved to %s", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns whether a passing test case also passed the last time it was
+	 * reconciled, less than the given time ago.
+	 *
+	 * @param metadata metadata of the test case.
+	 * @param now      epoch millis of the current run.
+	 * @param maxAge   millis after which a test case is reconciled again.
+	 **/
+	public synchronized boolean isStillPassing(String metadata, long now, long maxAge) {
+		Outcome outcome = outcomes.get(metadata);
+		return outcome != null && !outcome.failed && now - outcome.reconciledAt < maxAge;
+	}
+
+	/**
+	 * Records the outcome of a test case once it was reconciled with Jira.
+	 *
+	 * @param metadata     metadata of the test case.
+	 * @param failed       whether the test case failed.
+	 * @param reconciledAt epoch millis of the reconciliation.
+	 **/
+	public synchronized void record(String metadata, boolean failed, long reconciledAt) {
+		outcomes.put(metadata, new Outcome(failed, reconciledAt));
+		dirty = true;
+	}
+
+	public synchronized int size() {
+		return outcomes.size();
+	}
+
+	private Path getPath() {
+		return Paths.get(cacheDir, String.format("outcomes-%s.bin", targetProject.trim()));
+	}
+
+	/**
+	 * Outcome of a test case the last time it was reconciled.
+	 **/
+	private static final class Outcome {
+
+		private final boolean failed;
+		private final long reconciledAt;
+
+		private Outcome(boolean failed, long reconciledAt) {
+			this.failed = failed;
+			this.reconciledAt = reconciledAt;
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.util.JUnitStreamReader;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Keeps the parse results of the reports already read, so a run over the same
+ * report, for example after a Jira sync failed halfway, replays its test cases
+ * instead of parsing the XML again. Results are stored under the cache
+ * directory as {@link ParseResultFile} files named after the path, size and
+ * modification time of the report, so a report seen for the first time is read
+ * only once. The SHA-256 of the content, computed while the report is parsed,
+ * is kept next to the results and checked before they are replayed. Files not
+ * used for 'railflow.parse-cache.max-age-days' are deleted.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class ParseResultCache {
+
+	private static Logger logger = LoggerFactory.getLogger(ParseResultCache.class);
+
+	private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+	@Autowired
+	MetadataFingerprint fingerprint;
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${railflow.parse-cache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${railflow.parse-cache.max-age-days:14}")
+	private int maxAgeDays;
+
+	private final AtomicBoolean pruned = new AtomicBoolean(false);
+
+	/**
+	 * Replays the parse results of a report if they were cached, or reads the
+	 * report and caches its results. The standard input and missing files are
+	 * always given to the reader.
+	 *
+	 * @param file     report in local storage.
+	 * @param reader   reader used when the results are not cached.
+	 * @param listener receiver of the parsed testsuite and testcase events.
+	 **/
+	public void read(File file, JUnitStreamReader reader, TestCaseListener listener)
+			throws IOException, XMLStreamException, UnirestException {
+		if (!enabled || !file.isFile()) {
+			reader.read(file, listener);
+			return;
+		}
+
+		String key = key(file);
+		Path path = getDirectory().resolve(key + ".rfpr");
+		Path digestPath = getDirectory().resolve(key + ".sha256");
+
+		// only a file that fails its checks is rebuilt; once events were replayed,
+		// parsing the report again would emit them twice
+		ParseResultFile.Reader results = Files.exists(path) && isUnchanged(file, digestPath) ? open(path) : null;
+		if (results != null) {
+			try (ParseResultFile.Reader replayed = results) {
+				replayed.replay(fingerprint, listener);
+			}
+			FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+			Files.setLastModifiedTime(path, now);
+			Files.setLastModifiedTime(digestPath, now);
+			logger.debug(String.format("The parse results of %s were read from %s", file, path));
+			return;
+		}
+
+		write(file, path, digestPath, reader, listener);
+	}
+
+	// checks the report content against the digest kept when its results were
+	// written, since the size and modification time may be preserved by a copy
+	private boolean isUnchanged(File file, Path digestPath) throws IOException {
+		if (!Files.exists(digestPath)) {
+			return false;
+		}
+
+		MessageDigest digest = newDigest();
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+			drain(in);
+		}
+
+		String expected = new String(Files.readAllBytes(digestPath), StandardCharsets.US_ASCII).trim();
+		if (!expected.equals(hex(digest.digest()))) {
+			logger.info(String.format("The cached parse results of %s are outdated and will be rebuilt", file));
+			return false;
+		}
+		return true;
+	}
+
+	// returns the cached results once checked, or null if they are damaged
+	private ParseResultFile.Reader open(Path path) {
+		try {
+			return ParseResultFile.open(path);
+		} catch (IOException e) {
+			logger.info(String.format("The parse results %s could not be read and will be rebuilt", path));
+			logger.debug(e.getMessage());
+			return null;
+		}
+	}
+
+	// reads the report while its results are written to a temporary file, which
+	// only replaces the cached results once the whole report was read; the
+	// content is hashed as it is parsed, so the report is read once
+	private void write(File file, Path path, Path digestPath, JUnitStreamReader reader, TestCaseListener listener)
+			throws IOException, XMLStreamException, UnirestException {
+		prune();
+		Files.createDirectories(path.getParent());
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		MessageDigest digest = newDigest();
+
+		try {
+			try (ParseResultFile.Writer writer = new ParseResultFile.Writer(Files.newOutputStream(temp), listener);
+					InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+				reader.readReport(in, writer);
+				drain(in);
+				writer.finish();
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			// written last, so results moved in without their digest are rebuilt
+			Files.write(temp, hex(digest.digest()).getBytes(StandardCharsets.US_ASCII));
+			Files.move(temp, digestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	// deletes the results not used recently, once per run
+	private void prune() {
+		if (maxAgeDays <= 0 || !pruned.compareAndSet(false, true) || !Files.isDirectory(getDirectory())) {
+			return;
+		}
+
+		long oldest = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays);
+
+		try (Stream<Path> paths = Files.list(getDirectory())) {
+			paths.forEach(path -> {
+				try {
+					if (Files.getLastModifiedTime(path).toMillis() < oldest) {
+						Files.deleteIfExists(path);
+					}
+				} catch (IOException e) {
+					logger.debug(e.getMessage());
+				}
+			});
+		} catch (IOException e) {
+			logger.debug(e.getMessage());
+		}
+	}
+
+	private Path getDirectory() {
+		return Paths.get(cacheDir, "parse-results");
+	}
+
+	// names the results after the report path, size and modification time, which
+	// are known without reading the report
+	private static String key(File file) throws IOException {
+		Path path = file.toPath().toRealPath();
+		String attributes = String.format("%s|%s|%s", path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+		return hex(newDigest().digest(attributes.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	// reads what the parser left of the report, such as trailing whitespace, so
+	// the whole content is hashed
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		while (in.read(buffer) >= 0) {
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte value : bytes) {
+			hex.append(hexDigits[(value >> 4) & 0xf]).append(hexDigits[value & 0xf]);
+		}
+		return hex.toString();
+	}
+
+}
@@ -0,0 +1,343 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Binary layout of the parse results of a report: the testsuite and testcase
+ * records in the order they were read. Suite names and class names are written
+ * once and then referred to by their position in a dictionary, and numbers are
+ * written as variable length integers, so a file is several times smaller than
+ * the XML it replaces. Files end with a CRC32 of their content and are
+ * memory-mapped when replayed.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class ParseResultFile {
+
+	// 'RFPR' followed by the version of the file layout
+	private static final int magic = 0x52465052;
+	private static final int formatVersion = 1;
+
+	private static final byte endRecord = 0;
+	private static final byte stringRecord = 1;
+	private static final byte suiteRecord = 2;
+	private static final byte passedRecord = 3;
+	private static final byte failedRecord = 4;
+
+	private ParseResultFile() {
+	}
+
+	/**
+	 * Replays the records of a file to a listener, as the XML reader would have
+	 * emitted them. The whole file is checked before the first event, so a
+	 * damaged file emits nothing.
+	 *
+	 * @param path        file written by a {@link Writer}.
+	 * @param fingerprint builds the metadata of the test cases replayed.
+	 * @param listener    receiver of the testsuite and testcase events.
+	 * @throws IOException if the file cannot be read or is damaged.
+	 **/
+	public static void replay(Path path, MetadataFingerprint fingerprint, TestCaseListener listener)
+			throws IOException, UnirestException {
+		try (Reader reader = open(path)) {
+			reader.replay(fingerprint, listener);
+		}
+	}
+
+	/**
+	 * Opens a file and checks it whole: its header and checksum, and every
+	 * record, so replaying it can only fail in the listener.
+	 *
+	 * @param path file written by a {@link Writer}.
+	 * @return Reader object that replays the file.
+	 * @throws IOException if the file cannot be read or is damaged.
+	 **/
+	public static Reader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			verify(buffer);
+			return new Reader(channel, buffer);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e instanceof IOException ? (IOException) e
+					: new IOException(String.format("The parse results %s are damaged", path), e);
+		}
+	}
+
+	// checks the header and the checksum, then that every record can be decoded
+	// and refers to strings and suites defined before it
+	private static void verify(MappedByteBuffer buffer) throws IOException {
+		if (buffer.limit() < 13 || buffer.getInt(0) != magic || buffer.getInt(4) != formatVersion) {
+			throw new IOException("The parse results have an unknown format");
+		}
+
+		int end = buffer.limit() - 4;
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().position(0).limit(end));
+
+		if ((int) crc.getValue() != buffer.getInt(end)) {
+			throw new IOException("The parse results do not match their checksum");
+		}
+
+		ByteBuffer records = buffer.duplicate().position(8).limit(end);
+		int strings = 0;
+		int suites = 0;
+		byte record;
+
+		while ((record = records.get()) != endRecord) {
+			switch (record) {
+			case stringRecord:
+				skipString(records);
+				strings++;
+				break;
+
+			case suiteRecord:
+				readVarInt(records);
+				checkReference(readVarInt(records), strings);
+				skipString(records);
+				skipString(records);
+				readVarInt(records);
+				suites++;
+				break;
+
+			case passedRecord:
+			case failedRecord:
+				checkReference(readVarInt(records), suites);
+				readVarInt(records);
+				checkReference(readVarInt(records), strings);
+				skipString(records);
+				break;
+
+			default:
+				throw new IOException(String.format("Unknown record %s in the parse results", record));
+			}
+		}
+
+		if (records.hasRemaining()) {
+			throw new IOException("The parse results go on after their last record");
+		}
+	}
+
+	private static void checkReference(int position, int defined) throws IOException {
+		if (position < 0 || position >= defined) {
+			throw new IOException("The parse results refer to a record that was not defined");
+		}
+	}
+
+	private static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+
+		do {
+			current = buffer.get();
+			value |= (current & 0x7f) << shift;
+			shift += 7;
+		} while ((current & 0x80) != 0);
+
+		return value;
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[readVarInt(buffer)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void skipString(ByteBuffer buffer) {
+		int length = readVarInt(buffer);
+		buffer.position(buffer.position() + length);
+	}
+
+	/**
+	 * File opened and checked by {@link ParseResultFile#open(Path)}.
+	 **/
+	public static final class Reader implements Closeable {
+
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+
+		private Reader(FileChannel channel, MappedByteBuffer buffer) {
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Replays the records to a listener. The exceptions of the listener are
+		 * thrown as they are.
+		 *
+		 * @param fingerprint builds the metadata of the test cases replayed.
+		 * @param listener    receiver of the testsuite and testcase events.
+		 **/
+		public void replay(MetadataFingerprint fingerprint, TestCaseListener listener)
+				throws IOException, UnirestException {
+			List<String> dictionary = new ArrayList<String>();
+			List<TestSuiteResult> suites = new ArrayList<TestSuiteResult>();
+			ByteBuffer records = buffer.duplicate().position(8);
+
+			byte record;
+			while ((record = records.get()) != endRecord) {
+				switch (record) {
+				case stringRecord:
+					dictionary.add(readString(records));
+					break;
+
+				case suiteRecord:
+					TestSuiteResult suite = new TestSuiteResult(readVarInt(records),
+							dictionary.get(readVarInt(records)), readString(records), readString(records),
+							readVarInt(records));
+					suites.add(suite);
+					listener.onTestSuite(suite);
+					break;
+
+				default:
+					TestSuiteResult parent = suites.get(readVarInt(records));
+					int index = readVarInt(records);
+					String className = dictionary.get(readVarInt(records));
+					listener.onTestCase(new TestCaseResult(parent, index, readString(records), className,
+							record == failedRecord, fingerprint));
+					break;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the events of a report while passing them on to another listener.
+	 * The file is only valid once {@link #finish()} was called.
+	 **/
+	public static final class Writer implements TestCaseListener, Closeable {
+
+		private final CRC32 crc = new CRC32();
+		private final DataOutputStream out;
+		private final OutputStream target;
+		private final TestCaseListener listener;
+		private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		private final Map<TestSuiteResult, Integer> suites = new IdentityHashMap<TestSuiteResult, Integer>();
+
+		/**
+		 * @param target   stream the file is written to; it is closed with the
+		 *                 writer.
+		 * @param listener receiver the events are passed on to.
+		 **/
+		public Writer(OutputStream target, TestCaseListener listener) throws IOException {
+			this.target = new BufferedOutputStream(target, 64 * 1024);
+			this.out = new DataOutputStream(new CheckedOutputStream(this.target, crc));
+			this.listener = listener;
+
+			out.writeInt(magic);
+			out.writeInt(formatVersion);
+		}
+
+		@Override
+		public void onTestSuite(TestSuiteResult testSuite) throws UnirestException, IOException {
+			int name = define(testSuite.getName());
+			out.writeByte(suiteRecord);
+			writeVarInt(testSuite.getIndex());
+			writeVarInt(name);
+			writeString(testSuite.getTests());
+			writeString(testSuite.getTime());
+			writeVarInt(testSuite.getFailures());
+			suites.put(testSuite, suites.size());
+
+			listener.onTestSuite(testSuite);
+		}
+
+		@Override
+		public void onTestCase(TestCaseResult testCase) throws UnirestException, IOException {
+			Integer suite = suites.get(testCase.getSuite());
+			if (suite == null) {
+				throw new IOException("A test case was read before its test suite");
+			}
+
+			int className = define(testCase.getClassName());
+			out.writeByte(testCase.isFailed() ? failedRecord : passedRecord);
+			writeVarInt(suite);
+			writeVarInt(testCase.getIndex());
+			writeVarInt(className);
+			writeString(testCase.getName());
+
+			listener.onTestCase(testCase);
+		}
+
+		/**
+		 * Ends the file with its checksum once every event was written.
+		 **/
+		public void finish() throws IOException {
+			out.writeByte(endRecord);
+			out.flush();
+
+			// the checksum itself is not part of the checked content
+			new DataOutputStream(target).writeInt((int) crc.getValue());
+			target.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+		// returns the position of a string in the dictionary, defining it first if
+		// needed
+		private int define(String value) throws IOException {
+			Integer position = dictionary.get(value);
+
+			if (position == null) {
+				position = dictionary.size();
+				dictionary.put(value, position);
+				out.writeByte(stringRecord);
+				writeString(value);
+			}
+
+			return position;
+		}
+
+		private void writeVarInt(int value) throws IOException {
+			while ((value & ~0x7f) != 0) {
+				out.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+
+		private void writeString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+}
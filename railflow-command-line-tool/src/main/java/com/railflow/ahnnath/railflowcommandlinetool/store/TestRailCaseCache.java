@@ -0,0 +1,107 @@
+package com.railflow.ahnnath.railflowcommandlinetool.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the case listing of a TestRail suite under the cache directory, so the
+ * case ids of a run are resolved without listing every case of the suite
+ * again. A listing older than 'testrail.cases.cache-ttl-minutes' is not used.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Component
+public class TestRailCaseCache {
+
+	private static Logger logger = LoggerFactory.getLogger(TestRailCaseCache.class);
+
+	@Value("${railflow.cache.dir:${user.home}/.railflow}")
+	private String cacheDir;
+
+	@Value("${testrail.cases.cache-ttl-minutes:1440}")
+	private long ttlMinutes;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Returns the case ids of a suite by title, or null if they were not cached
+	 * or are older than the TTL.
+	 *
+	 * @param projectId id of the TestRail project.
+	 * @param suiteId   id of the suite, 0 for projects with a single suite.
+	 **/
+	public synchronized Map<String, Integer> load(int projectId, int suiteId) {
+		Path path = getPath(projectId, suiteId);
+		if (ttlMinutes <= 0 || !Files.exists(path)) {
+			return null;
+		}
+
+		try {
+			Listing listing = mapper.readValue(path.toFile(), Listing.class);
+			if (System.currentTimeMillis() - listing.fetchedAt > TimeUnit.MINUTES.toMillis(ttlMinutes)) {
+				return null;
+			}
+			return listing.cases;
+		} catch (IOException e) {
+			logger.info(String.format("The TestRail cases %s could not be read and will be listed again", path));
+			logger.debug(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the case ids of a suite, replacing the file atomically.
+	 *
+	 * @param projectId id of the TestRail project.
+	 * @param suiteId   id of the suite, 0 for projects with a single suite.
+	 * @param cases     case ids by title.
+	 **/
+	public synchronized void save(int projectId, int suiteId, Map<String, Integer> cases) {
+		Path path = getPath(projectId, suiteId);
+		Listing listing = new Listing();
+		listing.fetchedAt = System.currentTimeMillis();
+		listing.cases = cases;
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			mapper.writeValue(temp.toFile(), listing);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.info(String.format("The TestRail cases could not be saved to %s", path));
+			logger.debug(e.getMessage());
+		}
+	}
+
+	private Path getPath(int projectId, int suiteId) {
+		return Paths.get(cacheDir, String.format("testrail-cases-%s-%s.json", projectId, suiteId));
+	}
+
+	/**
+	 * Case ids by title, and when they were listed.
+	 **/
+	@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+	static final class Listing {
+
+		private long fetchedAt;
+		private Map<String, Integer> cases = new HashMap<String, Integer>();
+	}
+
+}
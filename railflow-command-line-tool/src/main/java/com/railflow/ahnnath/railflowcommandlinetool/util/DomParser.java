@@ -3,25 +3,45 @@ package com.railflow.ahnnath.railflowcommandlinetool.util;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+import javax.xml.stream.XMLStreamException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mashape.unirest.http.exceptions.UnirestException;
-import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.ExecutionPlan;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.DefectReconciler;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.JiraResultSink;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ReconciliationPipeline;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ResultFanOut;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ResultSink;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.TestCaseAggregator;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ParseResultCache;
 
 /**
  * Contains methods and attributes that help parse XML documents and make API
@@ -39,139 +59,319 @@ final public class DomParser {
 	private static Logger logger = LoggerFactory.getLogger(DomParser.class);
 
 	@Autowired
-	JiraApiService jiraService;
+	DefectReconciler reconciler;
+
+	@Autowired
+	List<ResultSink> sinks;
+
+	@Autowired
+	ParseResultCache parseCache;
+
+	@Autowired
+	ActionJournal journal;
+
+	@Autowired
+	RunMetrics metrics;
+
+	@Autowired
+	MetadataFingerprint fingerprint;
+
+	@Value("${railflow.parser.batch-size:500}")
+	private int batchSize;
+
+	@Value("${railflow.parser.parallelism:0}")
+	private int parallelism;
+
+	@Value("${railflow.pipeline.workers:4}")
+	private int workers;
+
+	@Value("${railflow.pipeline.queue-capacity:2000}")
+	private int queueCapacity;
+
+	@Value("${railflow.aggregation.policy:none}")
+	private String aggregationPolicy;
+
+	@Value("${railflow.sinks:jira,testrail}")
+	private String sinkNames;
 
-	private static final int open = 1;
-	private static final int closed = 2;
 	final ObjectMapper mapper = new ObjectMapper();
+	private JUnitStreamReader reader;
+
+	// null when repeated test cases are reconciled one by one
+	private TestCaseAggregator.Policy policy;
+
+	@PostConstruct
+	void init() {
+		reader = new JUnitStreamReader(fingerprint);
+		policy = "none".equalsIgnoreCase(aggregationPolicy.trim()) ? null
+				: TestCaseAggregator.Policy.parse(aggregationPolicy);
+	}
 
 	/**
 	 * Receives a String object representing the path to a file and retrieves the
-	 * XML document from local storage. Then it parses each relevant node found in
-	 * file (testsuite and testcase data) and proceeds to make API requests based on
-	 * each case or input.
+	 * XML document from local storage. Then it streams each relevant node found in
+	 * file (testsuite and testcase data) into a {@link ReconciliationPipeline},
+	 * whose workers make the API requests based on each case or input while the
+	 * rest of the file is being read.
 	 *
 	 * @param String pathToFile path to file in local storage.
 	 *
 	 **/
 	public void parseXMLDoc(File file) throws UnirestException {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		DocumentBuilder builder;
+		parseXMLDocs(Collections.singletonList(file));
+	}
+
+	/**
+	 * Receives a list of files and parses them into the sinks listed by
+	 * 'railflow.sinks', like {@link #parseXMLDocs(List, List)}.
+	 *
+	 * @param files files in local storage.
+	 *
+	 * @return List object with the files that were not parsed.
+	 **/
+	public List<File> parseXMLDocs(List<File> files) throws UnirestException {
+		return parseXMLDocs(files, Arrays.asList(sinkNames.split(",")));
+	}
+
+	/**
+	 * Receives a list of files and parses them in parallel on a fork-join pool of
+	 * 'railflow.parser.parallelism' threads. The files are read once, and every
+	 * test case is handed to each of the given {@link ResultSink}s by a
+	 * {@link ResultFanOut}; the Jira sink looks up and updates the defects of the
+	 * whole run together. An error in one file is logged and does not stop the
+	 * others. Unless 'railflow.aggregation.policy' is 'none', the occurrences of a
+	 * test repeated across testsuites or files are first collapsed by a
+	 * {@link TestCaseAggregator}, so each test causes at most one Jira action.
+	 * Sinks finish the run once every file was parsed. When Jira is one of the
+	 * sinks, the actions are recorded in the {@link ActionJournal}, so a run that
+	 * was interrupted, or that a sink could not finish, is resumed by the next
+	 * one.
+	 *
+	 * @param files     files in local storage.
+	 * @param sinkNames names of the sinks to send the test cases to.
+	 *
+	 * @return List object with the files that could not be read, or every file
+	 *         when the run was not finished.
+	 **/
+	public List<File> parseXMLDocs(List<File> files, List<String> sinkNames) throws UnirestException {
+		List<ResultSink> selected = selectSinks(sinkNames);
+		if (selected.isEmpty()) {
+			logger.info("No result sinks were selected, so the files were not parsed");
+			return files;
+		}
+
+		boolean jira = selected.stream().anyMatch(sink -> sink.getName().equals(JiraResultSink.name));
+		String runId = jira ? journal.begin(files) : journal.getRunId();
+		Set<File> failed = ConcurrentHashMap.newKeySet();
+		boolean finished = parseXMLDocs(files, selected, runId, failed);
+		if (!finished) {
+			if (jira) {
+				logger.info(String.format("The run %s was not finished, so the next run with these files resumes it",
+						runId));
+			}
+			return files;
+		}
+
+		if (jira) {
+			journal.finish();
+		}
+		return files.stream().filter(failed::contains).collect(Collectors.toList());
+	}
+
+	/**
+	 * Receives a list of files and parses them like
+	 * {@link #parseXMLDocs(List)}, but only adds the Jira actions they require to
+	 * the given plan. Defects are looked up, and nothing is changed on Jira.
+	 *
+	 * @param files files in local storage.
+	 * @param plan  execution plan to complete.
+	 *
+	 * @return boolean with whether the actions of every test case were planned.
+	 **/
+	public boolean planXMLDocs(List<File> files, ExecutionPlan plan) throws UnirestException {
+		ResultSink planner = new ResultSink() {
+
+			@Override
+			public String getName() {
+				return JiraResultSink.name;
+			}
+
+			@Override
+			public int getWorkers() {
+				return workers;
+			}
+
+			@Override
+			public String getPhase() {
+				return "reconcile-batch";
+			}
+
+			@Override
+			public void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes)
+					throws UnirestException, JsonProcessingException {
+				plan.addAll(reconciler.decide(batch, changes));
+			}
+		};
+
+		return parseXMLDocs(files, Collections.singletonList(planner), journal.getRunId(),
+				ConcurrentHashMap.newKeySet());
+	}
+
+	// returns the configured sinks with the given names, in the order they are
+	// given
+	private List<ResultSink> selectSinks(List<String> names) {
+		List<ResultSink> selected = new ArrayList<ResultSink>();
+
+		for (String name : names) {
+			String trimmed = name.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+
+			ResultSink match = sinks.stream().filter(sink -> sink.getName().equalsIgnoreCase(trimmed)).findFirst()
+					.orElse(null);
+			if (match == null) {
+				logger.info(String.format("Ignoring the unknown result sink '%s'", trimmed));
+			} else if (!match.isEnabled()) {
+				logger.debug(String.format("Ignoring the result sink '%s', which is not configured", trimmed));
+			} else if (!selected.contains(match)) {
+				selected.add(match);
+			}
+		}
+
+		return selected;
+	}
+
+	// adds the files that could not be read to the given set, and returns whether
+	// every sink finished the run
+	private boolean parseXMLDocs(List<File> files, List<ResultSink> selected, String runId, Set<File> failed) {
+		ResultFanOut pipeline = new ResultFanOut(selected, runId, metrics, queueCapacity, batchSize);
+		int threads = Math.min(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+				Math.max(1, files.size()));
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		TestCaseAggregator aggregator = policy != null ? new TestCaseAggregator(policy) : null;
+		AtomicLong testCases = new AtomicLong();
+		long startedAt = System.nanoTime();
+		boolean finished;
 
 		try {
-			builder = factory.newDocumentBuilder();
-			Document doc = builder.parse(file);
-
-			NodeList testsuitesList = doc.getElementsByTagName("testsuite");
-
-			// iterate over each test suite
-			for (int i = 0; i < testsuitesList.getLength(); i++) {
-				Node n = testsuitesList.item(i);
-
-				// for each test suite in list, get test cases as a list and properties
-				if (n.getNodeType() == Node.ELEMENT_NODE) {
-					Element testSuite = (Element) n;
-
-					int failures = Integer.valueOf(testSuite.getAttribute("failures"));
-					String suiteName = testSuite.getAttribute("name");
-					String suiteTime = testSuite.getAttribute("time");
-					String suiteTestsNumber = testSuite.getAttribute("tests");
-
-					NodeList testcasesList = testSuite.getElementsByTagName("testcase");
-
-					logger.info(String.format("TEST SUITE #%s", i));
-					logger.info(String.format("FAILURES: %s", failures)); 
-					System.out.println();
-
-					// iterate over each test case
-					for (int j = 0; j < testcasesList.getLength(); j++) {
-						Node node = testcasesList.item(j);
-
-						// for each testcase, get name property
-						if (node.getNodeType() == Node.ELEMENT_NODE) {
-							Element testCase = (Element) node;
-
-							// attributes
-							String testName = testCase.getAttribute("name");
-							String testClassName = testCase.getAttribute("classname");
-							boolean hasFailures = (testCase.getElementsByTagName("failure").getLength() > 0) ? true
-									: false;
-
-							// [suiteName-suiteTestsNumber-suiteTime-testName-testClassName]
-							String metadata = String.format("%s-%s-%s-%s-%s", suiteName, suiteTestsNumber, suiteTime,
-									testName, testClassName);
-
-							// handle cases
-							if (hasFailures) {
-								// log metadata
-								logger.info(String.format("TEST CASE #%s", j));
-								logger.info(String.format("testcase name: %s", testName));
-								logger.info(String.format("testcase class: %s", testClassName));
-								System.out.println();
-
-								// check if any open defects on Jira match current testcase
-								String foundOpenIssueId = jiraService.findDefectByStatus(metadata, open);
-
-								// if yes, add message to console and add comment on Jira
-								if (foundOpenIssueId != null) {
-									logger.info(
-											String.format("Skipping defect creation since defect <%s> already exists",
-													foundOpenIssueId));
-									jiraService.addCommentToIssue("<testrail: defect still open>", foundOpenIssueId);
-								}
-
-								// if no, check if any closed defects on Jira match current testcase
-								else {
-									String foundClosedIssueId = jiraService.findDefectByStatus(metadata, closed);
-
-									// if yes, create a new defect on Jira with [regression]
-									if (foundClosedIssueId != null) {
-										jiraService.createDefect(metadata,
-												String.format("[regression] %s %s", testName, testClassName));
-									}
-
-									// if no, create a new ticket and add metadata
-									else {
-										jiraService.createDefect(metadata,
-												String.format("%s %s", testName, testClassName));
-									}
-								}
-							}
-							// check if any open defects match current passing testcase
-							else {
-
-								String foundOpenIssueId = jiraService.findDefectByStatus(metadata, open);
-
-								// if yes, close defect on Jira
-								if (foundOpenIssueId != null) {
-									jiraService.closeIssue(foundOpenIssueId);
-								}
-							}
+			pool.submit(() -> IntStream.range(0, files.size()).parallel()
+					.forEach(i -> {
+						if (!parseFile(files.get(i), i, pipeline, aggregator, testCases)) {
+							failed.add(files.get(i));
 						}
+					})).join();
+
+			if (aggregator != null) {
+				submitAggregated(aggregator, pipeline);
+			}
+		}
+
+		finally {
+			pool.shutdown();
+			finished = closePipeline(pipeline);
+			metrics.recordParse(testCases.get(), System.nanoTime() - startedAt);
+		}
+
+		if (files.size() > 1) {
+			logger.info(String.format("Parsed %s test cases from %s files", testCases.get(), files.size()));
+		}
+
+		return finished;
+	}
+
+	// sends a single result per test once every file was read
+	private void submitAggregated(TestCaseAggregator aggregator, ResultFanOut pipeline) {
+		long duplicates = aggregator.getDuplicates();
+		if (duplicates > 0) {
+			logger.info(String.format("%s repeated test cases were collapsed with the %s policy", duplicates,
+					aggregationPolicy.trim()));
+		}
+
+		try {
+			for (TestCaseResult testCase : aggregator.getResults()) {
+				pipeline.submit(testCase);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.info("The parsing process was interrupted before every test case was processed");
+		}
+	}
+
+	// streams the test cases of a single file into the aggregator or the shared
+	// pipeline, and returns whether the whole file was read; the ordinal orders
+	// them by file, then by position in the file
+	private boolean parseFile(File file, int fileIndex, ResultFanOut pipeline, TestCaseAggregator aggregator,
+			AtomicLong testCases) {
+		long startedAt = System.nanoTime();
+
+		try {
+			parseCache.read(file, reader, new TestCaseListener() {
+
+				@Override
+				public void onTestSuite(TestSuiteResult testSuite) {
+					logger.info(String.format("TEST SUITE #%s", testSuite.getIndex()));
+					logger.info(String.format("FAILURES: %s", testSuite.getFailures()));
+				}
+
+				private long position = 0;
+
+				@Override
+				public void onTestCase(TestCaseResult testCase) throws IOException {
+					testCases.incrementAndGet();
+					if (aggregator != null) {
+						aggregator.add(testCase, ((long) fileIndex << 32) | position++);
+						return;
+					}
+
+					try {
+						pipeline.submit(testCase);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("The parsing process was interrupted");
 					}
 				}
-			}
+			});
+			return true;
 		}
 
-		catch (SAXException | FileNotFoundException e) {
+		catch (XMLStreamException | FileNotFoundException e) {
 			logger.info("There was an error with the file specified. The file should exist and have a XML format");
 
-			logger.debug(e.getMessage());
+			logger.debug(String.format("%s: %s", file, e.getMessage()));
 		}
 
-		catch (ParserConfigurationException e) {
+		catch (UnirestException e) {
+			logger.info("There was an error HTTP request made to the the Jira API ");
 			logger.debug(e.getMessage());
-			// e.printStackTrace();
+		}
 
-		} catch (JsonProcessingException e) {
-			logger.info(
-					"We encountered problems when processing (parsing, generating) JSON content after making an API request");
-			logger.debug(e.getMessage());
+		catch (IOException e) {
+			logger.warn(String.format("We encountered problems when processing (parsing, generating) the file %s.", file),
+					e);
+		}
 
-		} catch (IOException e) {
-			logger.info("We encountered problems when processing (parsing, generating) the file specified.");
-			e.printStackTrace();
+		finally {
+			metrics.recordPhase("read-file", System.nanoTime() - startedAt);
 		}
+
+		return false;
+	}
+
+	// waits for the test cases already submitted to be reconciled, and returns
+	// whether every sink finished the run
+	private boolean closePipeline(ResultFanOut pipeline) {
+		try {
+			pipeline.close();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.info("The parsing process was interrupted before every test case was processed");
+		} catch (IllegalStateException e) {
+			logger.warn(e.getMessage(), e.getCause());
+		}
+
+		return false;
 	}
 
 }
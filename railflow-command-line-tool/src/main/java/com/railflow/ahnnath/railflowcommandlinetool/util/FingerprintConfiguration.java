@@ -0,0 +1,38 @@
+package com.railflow.ahnnath.railflowcommandlinetool.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+
+/**
+ * Creates the {@link MetadataFingerprint} that builds the metadata of the test
+ * cases, selected with the 'railflow.fingerprint.mode' property ('legacy', the
+ * default, or 'fingerprint') and the attributes listed in
+ * 'railflow.fingerprint.components'.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+@Configuration(proxyBeanMethods = false)
+public class FingerprintConfiguration {
+
+	@Value("${railflow.fingerprint.mode:legacy}")
+	private String mode;
+
+	@Value("${railflow.fingerprint.components:classname,name}")
+	private String components;
+
+	@Bean
+	public MetadataFingerprint metadataFingerprint() {
+		if ("legacy".equalsIgnoreCase(mode.trim())) {
+			return MetadataFingerprint.legacy();
+		}
+
+		return MetadataFingerprint.of(components);
+	}
+
+}
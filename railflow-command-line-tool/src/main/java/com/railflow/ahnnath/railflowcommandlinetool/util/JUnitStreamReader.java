@@ -0,0 +1,285 @@
+package com.railflow.ahnnath.railflowcommandlinetool.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+
+/**
+ * Reads JUnit documents with a StAX cursor and emits one event per testsuite
+ * and testcase, so only the element being read is kept in memory. The content
+ * of 'system-out', 'system-err' and 'failure' elements is skipped without being
+ * buffered. Gzip files, zip and tar archives, compressed or not, are
+ * decompressed while they are read, without temporary files, and every XML
+ * entry of an archive is read as a document of the same report.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class JUnitStreamReader {
+
+	/** Name of the input read from the standard input. **/
+	public static final String stdin = "-";
+
+	private static final int bufferSize = 64 * 1024;
+
+	// bytes needed to recognize a tar header, whose magic is at offset 257
+	private static final int headerSize = 512;
+
+	private final MetadataFingerprint fingerprint;
+
+	public JUnitStreamReader() {
+		this(MetadataFingerprint.legacy());
+	}
+
+	/**
+	 * @param fingerprint builds the metadata of the test cases read.
+	 **/
+	public JUnitStreamReader(MetadataFingerprint fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Reads the XML document or archive found in local storage, or the standard
+	 * input if the file is '-', and notifies the listener.
+	 *
+	 * @param file     file in local storage.
+	 * @param listener receiver of the parsed testsuite and testcase events.
+	 **/
+	public void read(File file, TestCaseListener listener) throws IOException, XMLStreamException, UnirestException {
+		if (stdin.equals(file.getPath())) {
+			readReport(System.in, listener);
+			return;
+		}
+
+		try (InputStream in = new FileInputStream(file)) {
+			readReport(in, listener);
+		}
+	}
+
+	/**
+	 * Reads a report that may be an XML document, a gzip file or a zip or tar
+	 * archive, recognized by their first bytes rather than by their name so
+	 * piped reports are read as well. The stream is not closed.
+	 *
+	 * @param in       stream with the report content.
+	 * @param listener receiver of the parsed testsuite and testcase events.
+	 **/
+	public void readReport(InputStream in, TestCaseListener listener)
+			throws IOException, XMLStreamException, UnirestException {
+		InputStream buffered = new BufferedInputStream(in, bufferSize);
+		byte[] header = peek(buffered);
+
+		if (isGzip(header)) {
+			readReport(new GZIPInputStream(buffered, bufferSize), listener);
+		} else if (isZip(header)) {
+			readZip(new ZipInputStream(buffered), listener);
+		} else if (isTar(header)) {
+			readTar(new TarArchiveInputStream(buffered), listener);
+		} else {
+			read(buffered, listener);
+		}
+	}
+
+	/**
+	 * Reads an XML document from a stream and notifies the listener. The stream
+	 * is not closed.
+	 *
+	 * @param in       stream with the document content.
+	 * @param listener receiver of the parsed testsuite and testcase events.
+	 **/
+	public void read(InputStream in, TestCaseListener listener) throws IOException, XMLStreamException, UnirestException {
+		XMLStreamReader reader = newFactory().createXMLStreamReader(new FilterInputStream(in) {
+
+			// some readers close their input, which would end an archive entry early
+			@Override
+			public void close() {
+			}
+		});
+
+		try {
+			Deque<TestSuiteResult> suites = new ArrayDeque<>();
+			int suiteIndex = 0;
+			int caseIndex = 0;
+
+			// attributes of the testcase being read
+			String testName = null;
+			String testClassName = null;
+			boolean hasFailures = false;
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String element = reader.getLocalName();
+
+					switch (element) {
+					case "testsuite":
+						TestSuiteResult suite = new TestSuiteResult(suiteIndex++, attribute(reader, "name"),
+								attribute(reader, "tests"), attribute(reader, "time"),
+								parseInt(attribute(reader, "failures")));
+						suites.push(suite);
+						caseIndex = 0;
+						listener.onTestSuite(suite);
+						break;
+
+					case "testcase":
+						testName = attribute(reader, "name");
+						testClassName = attribute(reader, "classname");
+						hasFailures = false;
+						break;
+
+					case "failure":
+						hasFailures = true;
+						skipElement(reader);
+						break;
+
+					case "system-out":
+					case "system-err":
+						skipElement(reader);
+						break;
+
+					default:
+						break;
+					}
+				}
+
+				else if (event == XMLStreamConstants.END_ELEMENT) {
+					String element = reader.getLocalName();
+
+					if ("testcase".equals(element) && !suites.isEmpty()) {
+						listener.onTestCase(new TestCaseResult(suites.peek(), caseIndex++, testName, testClassName,
+								hasFailures, fingerprint));
+					} else if ("testsuite".equals(element)) {
+						suites.poll();
+					}
+				}
+			}
+		}
+
+		finally {
+			reader.close();
+		}
+	}
+
+	// reads the XML entries of a zip archive one after the other
+	private void readZip(ZipInputStream zip, TestCaseListener listener)
+			throws IOException, XMLStreamException, UnirestException {
+		ZipEntry entry;
+
+		while ((entry = zip.getNextEntry()) != null) {
+			if (!entry.isDirectory() && isDocument(entry.getName())) {
+				readReport(zip, listener);
+			}
+		}
+	}
+
+	// reads the XML entries of a tar archive one after the other
+	private void readTar(TarArchiveInputStream tar, TestCaseListener listener)
+			throws IOException, XMLStreamException, UnirestException {
+		TarArchiveEntry entry;
+
+		while ((entry = tar.getNextTarEntry()) != null) {
+			if (entry.isFile() && isDocument(entry.getName())) {
+				readReport(tar, listener);
+			}
+		}
+	}
+
+	// archive entries are read if they are XML documents, compressed or not
+	private static boolean isDocument(String name) {
+		String lowerCase = name.toLowerCase(Locale.ROOT);
+		return lowerCase.endsWith(".xml") || lowerCase.endsWith(".xml.gz");
+	}
+
+	private static byte[] peek(InputStream in) throws IOException {
+		byte[] header = new byte[headerSize];
+		in.mark(headerSize);
+		int length = in.readNBytes(header, 0, headerSize);
+		in.reset();
+
+		return length == headerSize ? header : Arrays.copyOf(header, length);
+	}
+
+	private static boolean isGzip(byte[] header) {
+		return header.length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+	}
+
+	private static boolean isZip(byte[] header) {
+		return header.length >= 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4;
+	}
+
+	// POSIX and GNU tar headers both start their magic with 'ustar'
+	private static boolean isTar(byte[] header) {
+		return header.length == headerSize
+				&& new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+	}
+
+	/**
+	 * Moves the cursor to the end of the current element without reading any of
+	 * its content.
+	 **/
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	// attributes missing from the element are returned as empty strings, as the
+	// DOM API did
+	private static String attribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return value != null ? value : "";
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return value.isEmpty() ? 0 : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	// a factory is created per document so readers can run on several threads
+	private static XMLInputFactory newFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		return factory;
+	}
+
+}
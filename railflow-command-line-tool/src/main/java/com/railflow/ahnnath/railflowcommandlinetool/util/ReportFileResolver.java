@@ -0,0 +1,124 @@
+package com.railflow.ahnnath.railflowcommandlinetool.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the inputs of the 'parse' sub command into the report files to
+ * parse. An input can be a file, a directory, whose XML files, gzipped or not,
+ * are included recursively (as written by Maven Surefire or Gradle), a glob
+ * pattern such as 'build/test-results/**&#47;TEST-*.xml', or '-' for the
+ * standard input. Files are returned once, in the order of the inputs, and the
+ * files of a directory or pattern are sorted by path.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public final class ReportFileResolver {
+
+	private static Logger logger = LoggerFactory.getLogger(ReportFileResolver.class);
+
+	private static final String globCharacters = "*?[{";
+
+	/**
+	 * Receives the inputs of the command and returns the files they refer to.
+	 * Inputs that are neither a directory nor a pattern are returned as they are,
+	 * so missing files are reported by the parser.
+	 *
+	 * @param inputs files, directories or glob patterns.
+	 * @return List object with the files to parse.
+	 **/
+	public List<File> resolve(Collection<String> inputs) {
+		Set<File> files = new LinkedHashSet<File>();
+
+		for (String input : inputs) {
+			File file = new File(input);
+
+			if (file.isDirectory()) {
+				files.addAll(walk(file.toPath(), Integer.MAX_VALUE, ReportFileResolver::isDocument));
+			} else if (!file.exists() && isPattern(input)) {
+				List<File> matches = resolvePattern(input);
+
+				if (matches.isEmpty()) {
+					logger.info(String.format("No report files matched the pattern <%s>", input));
+				}
+				files.addAll(matches);
+			} else {
+				files.add(file);
+			}
+		}
+
+		return new ArrayList<File>(files);
+	}
+
+	private static boolean isDocument(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		return name.endsWith(".xml") || name.endsWith(".xml.gz");
+	}
+
+	private static boolean isPattern(String input) {
+		for (char character : globCharacters.toCharArray()) {
+			if (input.indexOf(character) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks the directory that precedes the first segment with glob characters
+	 * and matches the rest of the pattern against the relative path of each file.
+	 **/
+	private List<File> resolvePattern(String pattern) {
+		String[] segments = pattern.replace('\\', '/').split("/", -1);
+		StringBuilder base = new StringBuilder();
+		int first = 0;
+
+		while (first < segments.length - 1 && !isPattern(segments[first])) {
+			base.append(segments[first]).append('/');
+			first++;
+		}
+
+		String relativePattern = String.join("/", Arrays.copyOfRange(segments, first, segments.length));
+		Path basePath = base.length() == 0 ? Paths.get(".") : Paths.get(base.toString());
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+		int maxDepth = relativePattern.contains("**") ? Integer.MAX_VALUE : segments.length - first;
+
+		if (!Files.isDirectory(basePath)) {
+			return new ArrayList<File>();
+		}
+
+		return walk(basePath, maxDepth, path -> matcher.matches(basePath.relativize(path)));
+	}
+
+	private static List<File> walk(Path directory, int maxDepth, Predicate<Path> filter) {
+		try (Stream<Path> paths = Files.walk(directory, maxDepth)) {
+			return paths.filter(Files::isRegularFile).filter(filter).sorted().map(Path::toFile)
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			logger.info(String.format("There was an error reading the directory <%s>", directory));
+			logger.debug(e.getMessage());
+			return new ArrayList<File>();
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.railflow.ahnnath.railflowcommandlinetool.util;
+
+import java.io.IOException;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+
+/**
+ * Receives the testsuite and testcase events emitted by the
+ * {@link JUnitStreamReader} while a JUnit document is being read.
+ *
+ * @author ahn-nath
+ * @version 3.0
+ * @since 3.0
+ *
+ **/
+public interface TestCaseListener {
+
+	/**
+	 * Called when a 'testsuite' element starts, before any of its test cases.
+	 *
+	 * @param testSuite attributes of the test suite.
+	 **/
+	void onTestSuite(TestSuiteResult testSuite) throws UnirestException, IOException;
+
+	/**
+	 * Called when a 'testcase' element ends, once its outcome is known.
+	 *
+	 * @param testCase outcome of the test case.
+	 **/
+	void onTestCase(TestCaseResult testCase) throws UnirestException, IOException;
+
+}
@@ -0,0 +1,92 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ActionExecutor;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionOutbox;
+
+/**
+ * Class created to test that the actions Jira did not complete are returned
+ * to the caller instead of being taken as done.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ActionExecutorTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private final PlannedAction closed = PlannedAction.close("5f0c", "101");
+	private final PlannedAction refused = PlannedAction.close("9a1e", "102");
+	private final PlannedAction created = PlannedAction.create("77b2", "parses io.railflow.ParserTest");
+	private final PlannedAction failed = PlannedAction.create("c3d4", "reads io.railflow.ReaderTest");
+
+	/**
+	 * Test asserts that a close Jira refused, and a defect left out of the bulk
+	 * create response, are returned and not recorded as completed, while the
+	 * other actions are.
+	 */
+	@Test
+	void returnsActionsJiraDidNotComplete() throws Exception {
+		FakeJira jira = new FakeJira().respond("POST", "/rest/api/2/issue/102/transitions", 400, "{}")
+				.respond("POST", "/rest/api/3/issue/bulk", 201,
+						"{\"issues\": [{\"id\": \"201\", \"key\": \"CXJI-201\"}],"
+								+ "\"errors\": [{\"failedElementNumber\": 1, \"elementErrors\": {}}]}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			ActionJournal journal = context.getBean(ActionJournal.class);
+			journal.begin(Collections.emptyList());
+
+			Map<String, DefectLookup> changes = new HashMap<String, DefectLookup>();
+			List<PlannedAction> notCompleted = context.getBean(ActionExecutor.class)
+					.execute(Arrays.asList(closed, refused, created, failed), changes);
+
+			assertEquals(Arrays.asList(refused, failed), notCompleted);
+			assertEquals("101", journal.getResult(closed));
+			assertEquals("201", journal.getResult(created));
+			assertNull(journal.getResult(refused));
+			assertNull(journal.getResult(failed));
+			assertEquals("201", changes.get("77b2").getOpenIssueId());
+			assertNull(changes.get("c3d4"));
+		}
+	}
+
+	/**
+	 * Test asserts that actions that cannot reach Jira are written to the outbox
+	 * and returned as well.
+	 */
+	@Test
+	void spoolsAndReturnsActionsThatCannotReachJira() throws Exception {
+		FakeJira jira = new FakeJira().unreachable("POST", "/rest/api/2/issue/102/transitions")
+				.unreachable("POST", "/rest/api/3/issue/bulk");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			context.getBean(ActionJournal.class).begin(Collections.emptyList());
+
+			List<PlannedAction> notCompleted = context.getBean(ActionExecutor.class)
+					.execute(Arrays.asList(closed, refused, created), new HashMap<String, DefectLookup>());
+
+			assertEquals(Arrays.asList(refused, created), notCompleted);
+			assertEquals(Arrays.asList(refused, created), context.getBean(ActionOutbox.class).take());
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+
+/**
+ * Class created to test that a run interrupted before it finished is resumed
+ * with the actions it already completed, and that a finished run, a run over
+ * other reports and the journal of another command are not.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ActionJournalTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private final PlannedAction create = PlannedAction.create("5f0c", "parses io.railflow.ParserTest");
+	private final PlannedAction regression = PlannedAction.regression("5f0c", "[regression] parses");
+	private final PlannedAction close = PlannedAction.close("9a1e", "10042");
+	private final List<File> reports = Arrays.asList(new File("target/surefire-reports/TEST-ParserTest.xml"));
+	private final List<File> otherReports = Arrays.asList(new File("target/surefire-reports/TEST-ReaderTest.xml"));
+
+	/**
+	 * Test asserts that the actions completed by an interrupted run, including a
+	 * line cut short by a crash, are known to the next run, which keeps the run
+	 * id and appends to the same journal.
+	 */
+	@Test
+	void resumesAnInterruptedRun() throws Exception {
+		ActionJournal crashed = journal("");
+		String runId = crashed.begin(reports);
+		crashed.planned(Arrays.asList(create, close));
+		crashed.completed(create, "10050");
+		crashed.commit();
+		Files.write(cacheDir.resolve("journal-RAIL.jsonl"), "{\"run\":\"cut".getBytes(), StandardOpenOption.APPEND);
+
+		ActionJournal resumed = journal("");
+		assertEquals(runId, resumed.begin(reports));
+		assertEquals("10050", resumed.getResult(regression));
+		assertNull(resumed.getResult(close));
+
+		resumed.completed(close, "10042");
+		resumed.finish();
+
+		ActionJournal next = journal("");
+		next.begin(reports);
+		assertNull(next.getResult(create));
+	}
+
+	/**
+	 * Test asserts that an unfinished run is not resumed by a run over other
+	 * reports unless its run id is given, nor once it is too old.
+	 */
+	@Test
+	void resumesOnlyTheSameRecentRunOrTheRequestedOne() throws Exception {
+		crash();
+		ActionJournal other = journal("");
+		other.begin(otherReports);
+		assertNull(other.getResult(create));
+
+		String runId = crash();
+		ActionJournal requested = journal(runId);
+		assertEquals(runId, requested.begin(otherReports));
+		assertEquals("10050", requested.getResult(create));
+
+		crash();
+		ActionJournal expired = journal("");
+		ReflectionTestUtils.setField(expired, "resumeMaxAgeHours", 0L);
+		expired.begin(reports);
+		assertNull(expired.getResult(create));
+	}
+
+	/**
+	 * Test asserts that a journal with another name, such as the one of 'flush',
+	 * neither resumes nor finishes the unfinished run.
+	 */
+	@Test
+	void namedJournalLeavesTheRunAlone() throws Exception {
+		String runId = crash();
+
+		ActionJournal flush = journal("");
+		flush.begin("flush", Collections.emptyList());
+		assertNull(flush.getResult(create));
+		flush.finish();
+
+		ActionJournal resumed = journal("");
+		assertEquals(runId, resumed.begin(reports));
+		assertEquals("10050", resumed.getResult(create));
+	}
+
+	// leaves a run over the reports unfinished after it created a defect
+	private String crash() {
+		ActionJournal crashed = journal("");
+		String runId = crashed.begin(reports);
+		crashed.completed(create, "10050");
+		crashed.commit();
+		return runId;
+	}
+
+	private ActionJournal journal(String runId) {
+		ActionJournal journal = new ActionJournal();
+		ReflectionTestUtils.setField(journal, "cacheDir", cacheDir.toString());
+		ReflectionTestUtils.setField(journal, "targetProject", "RAIL");
+		ReflectionTestUtils.setField(journal, "enabled", true);
+		ReflectionTestUtils.setField(journal, "configuredRunId", runId);
+		ReflectionTestUtils.setField(journal, "resumeMaxAgeHours", 24L);
+		return journal;
+	}
+
+}
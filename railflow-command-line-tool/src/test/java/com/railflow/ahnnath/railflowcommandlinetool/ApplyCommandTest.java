@@ -0,0 +1,115 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ApplyCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.ParseCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.model.ExecutionPlan;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+
+/**
+ * Class created to test that 'parse --plan' writes the Jira actions of a report
+ * without changing Jira, that 'apply' sends them, and that 'apply' resolves the
+ * metadata custom field before sending any action.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ApplyCommandTest {
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that planning a report with a new failure and a test that
+	 * passes again sends no action to Jira, and that applying the plan then
+	 * creates the defect and closes the fixed one.
+	 */
+	@Test
+	void appliesTheActionsOfAPlannedReport() throws Exception {
+		Path report = Files.write(cacheDir.resolve("TEST-ParserTest.xml"), ("<?xml version=\"1.0\"?>\n"
+				+ "<testsuite name=\"io.railflow.ParserTest\" time=\"0.21\" tests=\"2\" failures=\"1\">\n"
+				+ "  <testcase name=\"parses\" classname=\"io.railflow.ParserTest\"/>\n"
+				+ "  <testcase name=\"reads\" classname=\"io.railflow.ParserTest\"><failure/></testcase>\n"
+				+ "</testsuite>\n").getBytes(StandardCharsets.UTF_8));
+		TestSuiteResult suite = new TestSuiteResult(0, "io.railflow.ParserTest", "2", "0.21", 1);
+		String fixed = new TestCaseResult(suite, 0, "parses", "io.railflow.ParserTest", false).getMetadata();
+		File planFile = cacheDir.resolve("plan.json").toFile();
+
+		FakeJira jira = new FakeJira()
+				.respond("POST", "/rest/api/3/search", 200, FakeJira.searchResult("301:To Do:" + fixed))
+				.respond("POST", "/rest/api/3/issue/bulk", 201,
+						"{\"issues\": [{\"id\": \"302\", \"key\": \"CXJI-302\"}]}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			ParseCommand parse = context.getBean(ParseCommand.class);
+			ReflectionTestUtils.setField(parse, "inputs", Arrays.asList(report.toString()));
+			ReflectionTestUtils.setField(parse, "planFile", planFile);
+			parse.run();
+		}
+
+		ExecutionPlan plan = new ObjectMapper().readValue(planFile, ExecutionPlan.class);
+		assertEquals(2, plan.getActions().size());
+		assertTrue(plan.getActions().contains(PlannedAction.close(fixed, "301")));
+		assertEquals(0, jira.count("POST", "/rest/api/3/issue/bulk"));
+		assertEquals(0, jira.count("POST", "/rest/api/2/issue/\\d+/transitions"));
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			ApplyCommand apply = context.getBean(ApplyCommand.class);
+			ReflectionTestUtils.setField(apply, "planFile", planFile);
+			apply.run();
+		}
+
+		assertEquals(1, jira.count("POST", "/rest/api/3/issue/bulk"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/301/transitions"));
+	}
+
+	/**
+	 * Test asserts that no action of the plan is sent when the field does not
+	 * exist, that the fields are requested only once, and that the id of the
+	 * field is not looked up again afterwards.
+	 */
+	@Test
+	void stopsWhenTheCustomFieldDoesNotExist() throws Exception {
+		ExecutionPlan plan = new ExecutionPlan("CXJI", "2026-10-17T10:00:00Z");
+		plan.addAll(Arrays.asList(PlannedAction.close("5f0c", "101")));
+		File planFile = cacheDir.resolve("plan.json").toFile();
+		new ObjectMapper().writeValue(planFile, plan);
+
+		FakeJira jira = new FakeJira().respond("GET", "/rest/api/3/field", 200, "[]");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"jira.api.custom-field-id=")) {
+			ApplyCommand command = context.getBean(ApplyCommand.class);
+			ReflectionTestUtils.setField(command, "planFile", planFile);
+			command.run();
+
+			IllegalStateException e = assertThrows(IllegalStateException.class,
+					() -> context.getBean(JiraApiService.class).getCustomFieldId());
+			assertTrue(e.getMessage().contains("create a custom field"));
+		}
+
+		assertEquals(1, jira.count("GET", "/rest/api/3/field"));
+		assertEquals(0, jira.count("POST", "/rest/api/2/issue/\\d+/transitions"));
+	}
+
+}
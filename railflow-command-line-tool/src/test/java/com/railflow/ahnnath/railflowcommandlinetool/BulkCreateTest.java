@@ -0,0 +1,94 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.model.NewDefect;
+
+/**
+ * Class created to test that defects are created with bulk requests of at most
+ * 'jira.api.bulk-create-size' defects, and that the created issues are mapped
+ * back to their metadata when Jira fails some of them.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class BulkCreateTest {
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that 120 defects are created with requests of 50, 50 and 20
+	 * defects, and that the issues created after a failed element are mapped to
+	 * the right metadata.
+	 */
+	@Test
+	void createsDefectsInChunks() throws Exception {
+		AtomicInteger nextId = new AtomicInteger(1000);
+		FakeJira jira = new FakeJira().on("POST", "/rest/api/3/issue/bulk", request -> {
+			int elements = elements(request);
+			boolean first = elements == 50 && nextId.get() == 1000;
+
+			StringBuilder issues = new StringBuilder();
+			for (int element = 0; element < elements; element++) {
+				if (first && element == 1) {
+					continue;
+				}
+				int id = nextId.getAndIncrement();
+				issues.append(issues.length() > 0 ? "," : "")
+						.append(String.format("{\"id\": \"%s\", \"key\": \"CXJI-%s\"}", id, id));
+			}
+			String errors = first ? "{\"failedElementNumber\": 1, \"elementErrors\": {}}" : "";
+
+			return CompletableFuture.completedFuture(
+					FakeJira.response(201, String.format("{\"issues\": [%s], \"errors\": [%s]}", issues, errors)));
+		});
+
+		List<NewDefect> newDefects = new ArrayList<NewDefect>();
+		for (int i = 0; i < 120; i++) {
+			newDefects.add(new NewDefect(String.format("%032x", i), "test" + i));
+		}
+
+		Map<String, String> issueIds;
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"jira.api.bulk-create-size=50")) {
+			issueIds = context.getBean(JiraApiService.class).createDefects(newDefects);
+		}
+
+		List<TransportRequest> requests = jira.requests("POST", "/rest/api/3/issue/bulk");
+		assertEquals(3, requests.size());
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (TransportRequest request : requests) {
+			sizes.add(elements(request));
+		}
+		sizes.sort(null);
+		assertEquals(List.of(20, 50, 50), sizes);
+
+		assertEquals(119, issueIds.size());
+		assertFalse(issueIds.containsKey(newDefects.get(1).getMetadata()));
+		assertEquals("1000", issueIds.get(newDefects.get(0).getMetadata()));
+		assertEquals("1001", issueIds.get(newDefects.get(2).getMetadata()));
+	}
+
+	// number of defects a bulk request creates
+	private static int elements(TransportRequest request) {
+		return request.getBody().split("\"fields\"", -1).length - 1;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.CommentThrottle;
+
+/**
+ * Class created to test that the comments on defects still open are limited to
+ * one per window, and that the failures they leave out, or of a comment that
+ * could not be posted, are reported by the next comment.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class CommentThrottleTest {
+
+	private static final String comment = "/rest/api/2/issue/101/comment";
+	private static final String created = "{\"id\": \"9\", \"created\": \"2026-10-17T10:00:00.000+0000\"}";
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that the failures of a run are reported by a single comment,
+	 * that a run within the window gets no comment, and that the next comment
+	 * reports the runs left out.
+	 */
+	@Test
+	void coalescesFailuresWithinTheWindow() throws Exception {
+		FakeJira jira = new FakeJira().respond("POST", comment, 201, created);
+
+		run(jira, "1041", 1440, 2);
+		assertEquals(1, jira.count("POST", comment));
+		assertTrue(jira.requests("POST", comment).get(0).getBody().contains("2 failures in 1 run: 1041"));
+
+		run(jira, "1042", 1440, 1);
+		assertEquals(1, jira.count("POST", comment));
+
+		run(jira, "1043", 0, 1);
+		assertEquals(2, jira.count("POST", comment));
+		assertTrue(jira.requests("POST", comment).get(1).getBody().contains("2 failures in 2 runs: 1042, 1043 since"));
+	}
+
+	/**
+	 * Test asserts that the failures of a comment Jira refused, or that could not
+	 * reach Jira, are kept and reported by the next comment.
+	 */
+	@Test
+	void keepsFailuresOfCommentsThatWereNotPosted() throws Exception {
+		run(new FakeJira().respond("POST", comment, 500, "{}"), "1041", 1440, 2);
+		run(new FakeJira().unreachable("POST", comment), "1042", 1440, 1);
+
+		FakeJira jira = new FakeJira().respond("POST", comment, 201, created);
+		run(jira, "1043", 1440, 1);
+
+		assertEquals(1, jira.count("POST", comment));
+		assertTrue(jira.requests("POST", comment).get(0).getBody().contains("4 failures in 3 runs: 1041, 1042, 1043"));
+	}
+
+	/**
+	 * Test asserts that a defect closed during the run is not commented on, and
+	 * that its failures are not reported if it is reopened.
+	 */
+	@Test
+	void forgetsClosedDefects() throws Exception {
+		run(new FakeJira().respond("POST", comment, 500, "{}"), "1041", 1440, 1);
+
+		FakeJira jira = new FakeJira().respond("POST", comment, 201, created);
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"railflow.run-id=1042")) {
+			CommentThrottle throttle = context.getBean(CommentThrottle.class);
+			throttle.record("101");
+			throttle.forget("101");
+			throttle.flush();
+		}
+		assertEquals(0, jira.count("POST", comment));
+
+		run(jira, "1043", 1440, 1);
+		assertTrue(jira.requests("POST", comment).get(0).getBody().contains("1 failure in 1 run: 1043"));
+	}
+
+	// records failures of the defect 101 in a run, then flushes them
+	private void run(FakeJira jira, String runId, long windowMinutes, int failures) throws Exception {
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"railflow.run-id=" + runId, "railflow.comments.window-minutes=" + windowMinutes)) {
+			CommentThrottle throttle = context.getBean(CommentThrottle.class);
+			for (int i = 0; i < failures; i++) {
+				throttle.record("101");
+			}
+			throttle.flush();
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+
+/**
+ * Class created to test that the defect index is synchronized incrementally,
+ * and that a full synchronization removes the issues deleted on Jira.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class DefectIndexTest {
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that an issue deleted on Jira stays indexed after an
+	 * incremental sync, and is removed by the next full sync.
+	 */
+	@Test
+	void fullSyncRemovesDeletedIssues() throws Exception {
+		FakeJira before = new FakeJira().respond("POST", "/rest/api/3/search", 200,
+				FakeJira.searchResult("301:To Do:5f0c", "302:To Do:77b2"));
+		FakeJira after = new FakeJira().respond("POST", "/rest/api/3/search", 200,
+				FakeJira.searchResult("301:To Do:5f0c"));
+
+		try (AnnotationConfigApplicationContext context = sync(before, 168)) {
+			assertFalse(before.requests("POST", "/rest/api/3/search").get(0).getBody().contains("updated >="));
+			assertTrue(context.getBean(JiraApiService.class).hasIndexedOpenDefect("77b2"));
+		}
+
+		try (AnnotationConfigApplicationContext context = sync(after, 168)) {
+			assertTrue(after.requests("POST", "/rest/api/3/search").get(0).getBody().contains("updated >="));
+			assertTrue(context.getBean(JiraApiService.class).hasIndexedOpenDefect("77b2"));
+		}
+
+		try (AnnotationConfigApplicationContext context = sync(after, 0)) {
+			assertFalse(after.requests("POST", "/rest/api/3/search").get(1).getBody().contains("updated >="));
+			assertFalse(context.getBean(JiraApiService.class).hasIndexedOpenDefect("77b2"));
+			assertTrue(context.getBean(JiraApiService.class).hasIndexedOpenDefect("5f0c"));
+		}
+
+		try (AnnotationConfigApplicationContext context = sync(after, 168)) {
+			assertFalse(context.getBean(JiraApiService.class).hasIndexedOpenDefect("77b2"));
+		}
+	}
+
+	// starts a run that synchronizes the index and saves it
+	private AnnotationConfigApplicationContext sync(FakeJira jira, long fullSyncHours) throws Exception {
+		AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"railflow.index.enabled=true", "railflow.index.full-sync-hours=" + fullSyncHours);
+		JiraApiService service = context.getBean(JiraApiService.class);
+		service.syncDefectIndex();
+		service.saveDefectIndex();
+		return context;
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.CommentThrottle;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.DefectReconciler;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+
+/**
+ * Class created to test the actions decided for a test that occurs more than
+ * once in a batch, which follow its last outcome, and the test cases skipped
+ * since they still pass.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class DefectReconcilerTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private final TestSuiteResult suite = new TestSuiteResult(0, "suite", "2", "1.0", 0);
+	private final TestCaseResult failed = new TestCaseResult(suite, 0, "parses", "io.railflow.ParserTest", true);
+	private final TestCaseResult passed = failed.withOutcome(false);
+	private final String metadata = failed.getMetadata();
+
+	/**
+	 * Test asserts that a test that fails and then passes within a batch leaves
+	 * no defect behind, and that the open defect of a test is closed or
+	 * commented on according to its last outcome.
+	 */
+	@Test
+	void decidesByTheLastOutcome() throws Exception {
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(), cacheDir)) {
+			assertEquals(Collections.emptyList(), decide(context, failed, passed));
+		}
+
+		FakeJira jira = new FakeJira().respond("POST", "/rest/api/3/search", 200,
+				FakeJira.searchResult("301:To Do:" + metadata));
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			assertEquals(Arrays.asList(PlannedAction.close(metadata, "301")), decide(context, failed, passed));
+			assertEquals(Arrays.asList(PlannedAction.comment(metadata, "301", null)), decide(context, passed, failed));
+		}
+	}
+
+	/**
+	 * Test asserts that a failure repeated while the defect of the test is still
+	 * to be created is commented on the defect once it exists.
+	 */
+	@Test
+	void commentsRepeatedFailuresOnTheNewDefect() throws Exception {
+		FakeJira jira = new FakeJira()
+				.respond("POST", "/rest/api/3/issue/bulk", 201, "{\"issues\": [{\"id\": \"201\", \"key\": \"CXJI-201\"}]}")
+				.respond("POST", "/rest/api/2/issue/201/comment", 201,
+						"{\"id\": \"9\", \"created\": \"2026-10-17T10:00:00.000+0000\"}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			assertEquals(Arrays.asList(PlannedAction.create(metadata, null), PlannedAction.comment(metadata, null, null)),
+					decide(context, failed, failed));
+
+			context.getBean(ActionJournal.class).begin(Collections.emptyList());
+			context.getBean(DefectReconciler.class).reconcile(Arrays.asList(failed, failed),
+					new HashMap<String, DefectLookup>());
+			context.getBean(CommentThrottle.class).flush();
+
+			assertEquals(1, jira.count("POST", "/rest/api/3/issue/bulk"));
+			assertEquals(1, jira.count("POST", "/rest/api/2/issue/201/comment"));
+			assertTrue(jira.requests("POST", "/rest/api/2/issue/201/comment").get(0).getBody().contains("1 failure"));
+		}
+	}
+
+	/**
+	 * Test asserts that a test that passed the last time is skipped without any
+	 * request, and that a test whose close Jira refused is not recorded, so the
+	 * next run reconciles it again.
+	 */
+	@Test
+	void skipsOnlyTestsWhoseActionsWereCompleted() throws Exception {
+		FakeJira jira = new FakeJira();
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			reconcile(context, passed);
+			reconcile(context, passed);
+			assertEquals(1, jira.count("POST", "/rest/api/3/search"));
+		}
+
+		jira = new FakeJira()
+				.respond("POST", "/rest/api/3/search", 200, FakeJira.searchResult("301:To Do:" + metadata))
+				.respond("POST", "/rest/api/2/issue/301/transitions", 400, "{}");
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			reconcile(context, passed);
+			reconcile(context, passed);
+			assertEquals(2, jira.count("POST", "/rest/api/3/search"));
+		}
+	}
+
+	private static void reconcile(AnnotationConfigApplicationContext context, TestCaseResult... batch)
+			throws Exception {
+		context.getBean(ActionJournal.class).begin(Collections.emptyList());
+		context.getBean(DefectReconciler.class).reconcile(Arrays.asList(batch), new HashMap<String, DefectLookup>());
+	}
+
+	private static List<PlannedAction> decide(AnnotationConfigApplicationContext context, TestCaseResult... batch)
+			throws Exception {
+		return context.getBean(DefectReconciler.class).decide(Arrays.asList(batch),
+				new HashMap<String, DefectLookup>());
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+
+/**
+ * Class created to test that the defects of a batch of test cases are looked
+ * up with a JQL search per chunk of metadata values, and that the issues found
+ * are matched to their metadata exactly.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class DefectSearchTest {
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that 120 metadata values are searched with three requests of
+	 * at most 50 values each, and that an issue whose metadata only resembles a
+	 * value searched for is left out.
+	 */
+	@Test
+	void searchesTheMetadataInChunks() throws Exception {
+		List<String> keys = new ArrayList<String>();
+		for (int i = 0; i < 120; i++) {
+			keys.add(String.format("%032x", i));
+		}
+
+		FakeJira jira = new FakeJira().respond("POST", "/rest/api/3/search", 200,
+				FakeJira.searchResult("301:To Do:" + keys.get(5), "302:Done:" + keys.get(5),
+						"303:To Do:" + keys.get(7) + "-copy"));
+
+		Map<String, DefectLookup> defects;
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"jira.api.search.keys-per-query=50")) {
+			defects = context.getBean(JiraApiService.class).findDefectsByMetadata(keys);
+		}
+
+		List<TransportRequest> searches = jira.requests("POST", "/rest/api/3/search");
+		assertEquals(3, searches.size());
+		for (TransportRequest search : searches) {
+			assertTrue(search.getBody().split(" OR ").length <= 50);
+		}
+
+		assertEquals(1, defects.size());
+		assertEquals("301", defects.get(keys.get(5)).getOpenIssueId());
+		assertEquals("302", defects.get(keys.get(5)).getClosedIssueId());
+		assertFalse(defects.containsKey(keys.get(7)));
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+
+/**
+ * Transport used by the tests in place of Jira. Each request is answered by
+ * the last route added for its method and path, and requests without a route
+ * are answered with a 404. Every request is kept, so tests can count them.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+final class FakeJira implements HttpTransport {
+
+	static final String fields = "[{\"id\": \"customfield_10034\", \"name\": \"railflow-metadata\", \"custom\": true}]";
+	static final String transitions = "{\"transitions\": [{\"id\": \"11\", \"name\": \"To Do\"},"
+			+ "{\"id\": \"31\", \"name\": \"Done\"}]}";
+
+	private final List<Route> routes = new CopyOnWriteArrayList<Route>();
+	private final List<TransportRequest> requests = new CopyOnWriteArrayList<TransportRequest>();
+
+	/**
+	 * Creates a Jira that knows the metadata field and the workflow
+	 * transitions, and finds no defect.
+	 */
+	FakeJira() {
+		respond("GET", "/rest/api/3/field", 200, fields);
+		respond("GET", "/rest/api/3/issue/\\d+/transitions", 200, transitions);
+		respond("POST", "/rest/api/2/issue/\\d+/transitions", 204, "");
+		respond("POST", "/rest/api/3/search", 200, "{\"startAt\": 0, \"total\": 0, \"issues\": []}");
+	}
+
+	/**
+	 * Answers the requests whose path matches the pattern with the given
+	 * handler.
+	 */
+	FakeJira on(String method, String path, Function<TransportRequest, CompletableFuture<TransportResponse>> handler) {
+		routes.add(0, new Route(method, Pattern.compile(path), handler));
+		return this;
+	}
+
+	FakeJira respond(String method, String path, int status, String body) {
+		return on(method, path, request -> CompletableFuture.completedFuture(response(status, body)));
+	}
+
+	// the requests fail without a response, as if Jira were down
+	FakeJira unreachable(String method, String path) {
+		return on(method, path,
+				request -> CompletableFuture.failedFuture(new ConnectException("Connection refused")));
+	}
+
+	/**
+	 * Returns the requests sent so far whose path matches the pattern.
+	 */
+	List<TransportRequest> requests(String method, String path) {
+		Pattern pattern = Pattern.compile(path);
+		List<TransportRequest> matching = new ArrayList<TransportRequest>();
+		for (TransportRequest request : requests) {
+			if (request.getMethod().equals(method) && pattern.matcher(pathOf(request)).matches()) {
+				matching.add(request);
+			}
+		}
+		return matching;
+	}
+
+	int count(String method, String path) {
+		return requests(method, path).size();
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		requests.add(request);
+
+		for (Route route : routes) {
+			if (route.method.equals(request.getMethod()) && route.path.matcher(pathOf(request)).matches()) {
+				return route.handler.apply(request);
+			}
+		}
+		return CompletableFuture.completedFuture(response(404, "{}"));
+	}
+
+	static TransportResponse response(int status, String body) {
+		return new TransportResponse(status, Collections.emptyMap(), body);
+	}
+
+	/**
+	 * Builds a search response listing issues as 'id:status:metadata'.
+	 */
+	static String searchResult(String... issues) {
+		StringBuilder body = new StringBuilder("{\"startAt\": 0, \"total\": ").append(issues.length)
+				.append(", \"issues\": [");
+		for (int i = 0; i < issues.length; i++) {
+			String[] issue = issues[i].split(":", 3);
+			body.append(i > 0 ? "," : "").append(String.format(
+					"{\"id\": \"%s\", \"key\": \"CXJI-%s\", \"fields\": {\"status\": {\"name\": \"%s\"}, \"customfield_10034\": \"%s\"}}",
+					issue[0], issue[0], issue[1], issue[2]));
+		}
+		return body.append("]}").toString();
+	}
+
+	private static String pathOf(TransportRequest request) {
+		return URI.create(request.getUrl()).getPath();
+	}
+
+	private static final class Route {
+
+		private final String method;
+		private final Pattern path;
+		private final Function<TransportRequest, CompletableFuture<TransportResponse>> handler;
+
+		Route(String method, Pattern path, Function<TransportRequest, CompletableFuture<TransportResponse>> handler) {
+			this.method = method;
+			this.path = path;
+			this.handler = handler;
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.commands.FlushCommand;
+import com.railflow.ahnnath.railflowcommandlinetool.model.PlannedAction;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionJournal;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ActionOutbox;
+
+/**
+ * Class created to test that 'flush' does not create a spooled defect twice,
+ * and that it leaves the journal of an unfinished run alone.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class FlushCommandTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private final PlannedAction reachedJira = PlannedAction.create("5f0c", "parses io.railflow.ParserTest");
+	private final PlannedAction lost = PlannedAction.create("77b2", "reads io.railflow.ReaderTest");
+	private final List<File> reports = Collections.singletonList(new File("TEST-ParserTest.xml"));
+
+	/**
+	 * Test asserts that a spooled defect whose metadata has an open defect by the
+	 * time of the flush is not created again, while the others are, and that the
+	 * run interrupted before the flush can still be resumed.
+	 */
+	@Test
+	void skipsSpooledDefectsThatWereCreated() throws Exception {
+		FakeJira jira = new FakeJira().respond("POST", "/rest/api/3/search", 200, FakeJira.searchResult("301:To Do:5f0c"))
+				.respond("POST", "/rest/api/3/issue/bulk", 201, "{\"issues\": [{\"id\": \"302\", \"key\": \"CXJI-302\"}]}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			ActionJournal journal = context.getBean(ActionJournal.class);
+			String runId = journal.begin(reports);
+			journal.completed(reachedJira, "301");
+			journal.commit();
+
+			ActionOutbox outbox = context.getBean(ActionOutbox.class);
+			outbox.spool(Arrays.asList(reachedJira, lost));
+
+			context.getBean(FlushCommand.class).run();
+
+			List<TransportRequest> creates = jira.requests("POST", "/rest/api/3/issue/bulk");
+			assertEquals(1, creates.size());
+			assertTrue(creates.get(0).getBody().contains("77b2"));
+			assertFalse(creates.get(0).getBody().contains("5f0c"));
+			assertTrue(outbox.take().isEmpty());
+
+			assertEquals(runId, journal.begin(reports));
+			assertEquals("301", journal.getResult(reachedJira));
+		}
+	}
+
+}
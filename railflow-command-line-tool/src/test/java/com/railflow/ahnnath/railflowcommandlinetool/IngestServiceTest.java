@@ -0,0 +1,126 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.serve.IngestHttpServer;
+import com.railflow.ahnnath.railflowcommandlinetool.serve.IngestService;
+
+/**
+ * Class created to test that the 'serve' sub command keeps the reports it
+ * could not parse, and refuses uploads larger than the maximum size.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class IngestServiceTest {
+
+	private static final String report = "<?xml version=\"1.0\"?>\n"
+			+ "<testsuite name=\"io.railflow.RailflowTest\" time=\"0.21\" tests=\"1\" failures=\"0\">\n"
+			+ "  <testcase name=\"upload\" classname=\"io.railflow.RailflowTest\"/>\n" + "</testsuite>\n";
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Test asserts that a report that is not XML is moved to the failed
+	 * directory, while a report parsed with it is moved to the processed one.
+	 */
+	@Test
+	void keepsReportsThatCouldNotBeParsed() throws Exception {
+		Path drop = Files.createDirectories(directory.resolve("drop"));
+		Path parsed = Files.write(drop.resolve("TEST-RailflowTest.xml"), report.getBytes(StandardCharsets.UTF_8));
+		Path broken = Files.write(drop.resolve("TEST-BrokenTest.xml"), "<testsuite".getBytes(StandardCharsets.UTF_8));
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(),
+				directory.resolve("cache"), "railflow.sinks=json",
+				"railflow.sinks.json.file=" + directory.resolve("results.jsonl"))) {
+			IngestService ingestService = context.getBean(IngestService.class);
+			ingestService.submit(parsed.toFile(), drop.resolve("processed"), drop.resolve("failed"));
+			ingestService.submit(broken.toFile(), drop.resolve("processed"), drop.resolve("failed"));
+
+			Thread worker = new Thread(ingestService::run);
+			worker.start();
+			try {
+				long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+				while (Files.exists(broken) && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+			} finally {
+				worker.interrupt();
+				worker.join();
+			}
+		}
+
+		assertTrue(Files.exists(drop.resolve("processed").resolve("TEST-RailflowTest.xml")));
+		assertTrue(Files.exists(drop.resolve("failed").resolve("TEST-BrokenTest.xml")));
+		assertFalse(Files.exists(drop.resolve("processed").resolve("TEST-BrokenTest.xml")));
+	}
+
+	/**
+	 * Test asserts that an upload larger than the maximum size is refused and not
+	 * kept in the spool.
+	 */
+	@Test
+	void refusesUploadsLargerThanTheMaximumSize() throws Exception {
+		Path spool = directory.resolve("spool");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(),
+				directory.resolve("cache"));
+				IngestHttpServer server = new IngestHttpServer("127.0.0.1", 0, spool, 64,
+						context.getBean(IngestService.class))) {
+			server.start();
+
+			assertEquals(413, upload(server, report.getBytes(StandardCharsets.UTF_8), false));
+			assertEquals(413, upload(server, report.getBytes(StandardCharsets.UTF_8), true));
+			assertEquals(202, upload(server, "<testsuite/>".getBytes(StandardCharsets.UTF_8), false));
+			assertEquals(1, context.getBean(IngestService.class).getPending());
+		}
+
+		try (Stream<Path> files = Files.list(spool)) {
+			assertEquals(1, files.filter(path -> path.getFileName().toString().startsWith("upload-")).count());
+		}
+	}
+
+	private static int upload(IngestHttpServer server, byte[] body, boolean chunked) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				String.format("http://127.0.0.1:%s/reports", server.getPort())).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		if (chunked) {
+			connection.setChunkedStreamingMode(16);
+		} else {
+			connection.setFixedLengthStreamingMode(body.length);
+		}
+
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		} catch (IOException e) {
+			// the server may answer before the whole body was sent
+		}
+
+		try {
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+}
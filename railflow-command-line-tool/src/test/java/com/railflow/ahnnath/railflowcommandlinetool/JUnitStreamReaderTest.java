@@ -0,0 +1,150 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.util.JUnitStreamReader;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Class created to test that the streaming reader emits the same testsuite and
+ * testcase data the DOM based parser used to read.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class JUnitStreamReaderTest {
+
+	private static final String report = "<?xml version=\"1.0\"?>\n" + "<testsuites>\n"
+			+ "  <testsuite name=\"io.railflow.RailflowTest\" time=\"0.21\" tests=\"2\" failures=\"1\">\n"
+			+ "    <properties><property name=\"java.version\" value=\"11\"/></properties>\n"
+			+ "    <testcase name=\"upload\" classname=\"io.railflow.RailflowTest\" time=\"0.1\">\n"
+			+ "      <failure message=\"expected\" type=\"java.lang.AssertionError\"><![CDATA[stack trace]]></failure>\n"
+			+ "      <system-out><testcase name=\"ignored\" classname=\"ignored\"/></system-out>\n"
+			+ "    </testcase>\n"
+			+ "    <testcase name=\"license\" classname=\"io.railflow.RailflowTest\" time=\"0.1\"/>\n"
+			+ "  </testsuite>\n" + "  <testsuite name=\"io.railflow.UploadTest\" time=\"0.01\" tests=\"1\">\n"
+			+ "    <testcase name=\"parameters\" classname=\"io.railflow.UploadTest\" time=\"0.01\"/>\n"
+			+ "    <system-err>warning</system-err>\n" + "  </testsuite>\n" + "</testsuites>\n";
+
+	/**
+	 * Test asserts that every testsuite and testcase is emitted in document order,
+	 * that failures are detected and that the content of 'system-out' elements is
+	 * not read as test cases.
+	 */
+	@Test
+	void readerEmitsSuitesAndTestCases() throws Exception {
+		List<TestSuiteResult> suites = new ArrayList<>();
+		List<TestCaseResult> testCases = new ArrayList<>();
+
+		new JUnitStreamReader().read(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)),
+				new TestCaseListener() {
+
+					@Override
+					public void onTestSuite(TestSuiteResult testSuite) {
+						suites.add(testSuite);
+					}
+
+					@Override
+					public void onTestCase(TestCaseResult testCase) {
+						testCases.add(testCase);
+					}
+				});
+
+		assertEquals(2, suites.size());
+		assertEquals(1, suites.get(0).getFailures());
+		assertEquals(0, suites.get(1).getFailures());
+
+		assertEquals(3, testCases.size());
+		assertTrue(testCases.get(0).isFailed());
+		assertFalse(testCases.get(1).isFailed());
+		assertFalse(testCases.get(2).isFailed());
+		assertEquals("io.railflow.RailflowTest-2-0.21-upload-io.railflow.RailflowTest",
+				testCases.get(0).getMetadata());
+		assertEquals("io.railflow.UploadTest-1-0.01-parameters-io.railflow.UploadTest",
+				testCases.get(2).getMetadata());
+	}
+
+	/**
+	 * Test asserts that gzip files and the XML entries of zip and gzipped tar
+	 * archives are read as they are decompressed, and that other entries are
+	 * skipped.
+	 */
+	@Test
+	void readerDecompressesReports() throws Exception {
+		byte[] document = report.getBytes(StandardCharsets.UTF_8);
+
+		assertEquals(3, countTestCases(gzip(document)));
+
+		ByteArrayOutputStream zip = new ByteArrayOutputStream();
+		try (ZipOutputStream out = new ZipOutputStream(zip)) {
+			out.putNextEntry(new ZipEntry("surefire-reports/TEST-a.xml"));
+			out.write(document);
+			out.putNextEntry(new ZipEntry("surefire-reports/TEST-b.xml.gz"));
+			out.write(gzip(document));
+			out.putNextEntry(new ZipEntry("surefire-reports/output.txt"));
+			out.write(document);
+		}
+		assertEquals(6, countTestCases(zip.toByteArray()));
+
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		try (TarArchiveOutputStream out = new TarArchiveOutputStream(tar)) {
+			out.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
+			for (String name : new String[] { "build/test-results/test/TEST-io.railflow.RailflowTest.xml",
+					"build/test-results/test/binary/output.bin" }) {
+				TarArchiveEntry entry = new TarArchiveEntry(name);
+				entry.setSize(document.length);
+				out.putArchiveEntry(entry);
+				out.write(document);
+				out.closeArchiveEntry();
+			}
+		}
+		assertEquals(3, countTestCases(gzip(tar.toByteArray())));
+	}
+
+	private static int countTestCases(byte[] content) throws Exception {
+		List<TestCaseResult> testCases = new ArrayList<>();
+
+		new JUnitStreamReader().readReport(new ByteArrayInputStream(content), new TestCaseListener() {
+
+			@Override
+			public void onTestSuite(TestSuiteResult testSuite) {
+			}
+
+			@Override
+			public void onTestCase(TestCaseResult testCase) {
+				testCases.add(testCase);
+			}
+		});
+
+		return testCases.size();
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(content);
+		}
+		return compressed.toByteArray();
+	}
+
+}
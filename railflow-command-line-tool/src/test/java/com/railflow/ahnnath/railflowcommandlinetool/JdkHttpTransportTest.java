@@ -0,0 +1,129 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.JdkHttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Class created to test that the JDK transport sends the requests with their
+ * headers and body over pooled connections, decodes gzip responses, and fails
+ * its futures with an IOException, as the transport contract says.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class JdkHttpTransportTest {
+
+	/**
+	 * Test asserts that the method, headers and body of the requests are sent,
+	 * that gzip responses are decoded, and that requests sent one after the
+	 * other reuse the same connection.
+	 */
+	@Test
+	void sendsRequestsOverAPooledConnection() throws Exception {
+		Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			clientPorts.add(exchange.getRemoteAddress().getPort());
+			String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			String answer = String.format("%s %s %s", exchange.getRequestMethod(),
+					exchange.getRequestHeaders().getFirst("Authorization"), request);
+
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (OutputStream gzip = new GZIPOutputStream(body)) {
+				gzip.write(answer.getBytes(StandardCharsets.UTF_8));
+			}
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(201, body.size());
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body.toByteArray());
+			}
+		});
+		server.start();
+
+		try {
+			JdkHttpTransport transport = new JdkHttpTransport(2, 30, 1000, 5000);
+			String url = String.format("http://127.0.0.1:%s/rest/api/3/issue/bulk", server.getAddress().getPort());
+
+			for (int i = 0; i < 10; i++) {
+				TransportRequest request = TransportRequest.post(url, "{\"issueUpdates\": []}").header("Authorization",
+						"Basic a2V5");
+				TransportResponse response = transport.sendAsync(request).join();
+				assertEquals(201, response.getStatus());
+				assertEquals("POST Basic a2V5 {\"issueUpdates\": []}", response.getBody());
+			}
+			assertEquals(1, clientPorts.size());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Test asserts that a request that cannot reach the instance fails the
+	 * future with an IOException.
+	 */
+	@Test
+	void unreachableInstanceFailsWithIOException() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+
+		JdkHttpTransport transport = new JdkHttpTransport(2, 30, 1000, 5000);
+		String url = String.format("http://127.0.0.1:%s/rest/api/3/field", port);
+
+		CompletionException error = assertThrows(CompletionException.class,
+				() -> transport.sendAsync(TransportRequest.get(url)).join());
+		assertTrue(error.getCause() instanceof IOException);
+	}
+
+	/**
+	 * Test asserts that a response announced as gzip that cannot be decoded
+	 * fails the future with an IOException.
+	 */
+	@Test
+	void undecodableBodyFailsWithIOException() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			byte[] body = "not gzip".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		try {
+			JdkHttpTransport transport = new JdkHttpTransport(2, 30, 1000, 5000);
+			String url = String.format("http://127.0.0.1:%s/rest/api/3/field", server.getAddress().getPort());
+
+			CompletionException error = assertThrows(CompletionException.class,
+					() -> transport.sendAsync(TransportRequest.get(url)).join());
+			assertTrue(error.getCause() instanceof IOException);
+		} finally {
+			server.stop(0);
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.store.DefectIndex;
+
+/**
+ * Class created to test the requests the Jira service sends to close issues,
+ * how the transition ids it caches are refreshed, and that closing an issue
+ * already closed succeeds.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class JiraApiServiceTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private static final String transitions = "{\"transitions\": [{\"id\": \"11\", \"name\": \"To Do\"},"
+			+ "{\"id\": \"31\", \"name\": \"Done\"}]}";
+
+	/**
+	 * Test asserts that issues closed at the same time, before the transition id
+	 * is cached, share a single request for the transitions.
+	 */
+	@Test
+	void concurrentClosesShareOneTransitionLookup() {
+		CompletableFuture<TransportResponse> lookup = new CompletableFuture<TransportResponse>();
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		JiraApiService service = service(request -> {
+			String endpoint = String.format("%s %s", request.getMethod(),
+					request.getUrl().replaceAll(".*/issue/\\d+/", ""));
+			requests.merge(endpoint, 1, Integer::sum);
+
+			return endpoint.equals("GET transitions") ? lookup
+					: CompletableFuture.completedFuture(response(204, ""));
+		});
+
+		List<CompletableFuture<Boolean>> closes = new ArrayList<CompletableFuture<Boolean>>();
+		for (int i = 0; i < 20; i++) {
+			closes.add(service.closeIssueAsync(String.valueOf(10000 + i)));
+		}
+		lookup.complete(response(200, transitions));
+
+		closes.forEach(close -> assertTrue(close.join()));
+		assertEquals(1, requests.get("GET transitions"));
+		assertEquals(20, requests.get("POST transitions"));
+
+		// the id is cached from then on
+		assertTrue(service.closeIssueAsync("10100").join());
+		assertEquals(1, requests.get("GET transitions"));
+	}
+
+	/**
+	 * Test asserts that a transition lookup Jira refused is not cached, so the
+	 * next close looks the transitions up again.
+	 */
+	@Test
+	void failedTransitionLookupsAreNotCached() throws Exception {
+		AtomicInteger lookups = new AtomicInteger();
+		FakeJira jira = new FakeJira().on("GET", "/rest/api/3/issue/\\d+/transitions",
+				request -> CompletableFuture.completedFuture(
+						lookups.incrementAndGet() == 1 ? FakeJira.response(503, "{}") : FakeJira.response(200, transitions)));
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			JiraApiService service = context.getBean(JiraApiService.class);
+
+			assertFalse(service.closeIssueAsync("10001").join());
+			assertTrue(service.closeIssueAsync("10002").join());
+			assertTrue(service.closeIssueAsync("10003").join());
+		}
+
+		assertEquals(2, jira.count("GET", "/rest/api/3/issue/\\d+/transitions"));
+		assertEquals(2, jira.count("POST", "/rest/api/2/issue/\\d+/transitions"));
+	}
+
+	/**
+	 * Test asserts that a close Jira refuses because the issue is already closed,
+	 * as when a close whose response was lost is sent again, counts as closed and
+	 * keeps the cached transition.
+	 */
+	@Test
+	void repeatedClosesOfClosedIssuesSucceed() throws Exception {
+		FakeJira jira = new FakeJira().respond("POST", "/rest/api/2/issue/10002/transitions", 400, "{}")
+				.respond("GET", "/rest/api/3/issue/10002", 200,
+						"{\"id\": \"10002\", \"fields\": {\"status\": {\"name\": \"Done\"}}}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			JiraApiService service = context.getBean(JiraApiService.class);
+
+			assertTrue(service.closeIssueAsync("10001").join());
+			assertTrue(service.closeIssueAsync("10002").join());
+			assertTrue(service.closeIssueAsync("10003").join());
+		}
+
+		assertEquals(1, jira.count("GET", "/rest/api/3/issue/\\d+/transitions"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/10002/transitions"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/10003/transitions"));
+	}
+
+	/**
+	 * Test asserts that a cached transition Jira rejects, once the workflow
+	 * changed, is looked up again and the close retried once with the new id.
+	 */
+	@Test
+	void staleTransitionsAreLookedUpAgain() throws Exception {
+		AtomicBoolean changed = new AtomicBoolean();
+		FakeJira jira = new FakeJira()
+				.on("GET", "/rest/api/3/issue/\\d+/transitions",
+						request -> CompletableFuture.completedFuture(
+								FakeJira.response(200, changed.get() ? transitions.replace("31", "41") : transitions)))
+				.on("POST", "/rest/api/2/issue/\\d+/transitions",
+						request -> CompletableFuture.completedFuture(
+								changed.get() && request.getBody().contains("\"31\"") ? FakeJira.response(400, "{}")
+										: FakeJira.response(204, "")));
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir)) {
+			JiraApiService service = context.getBean(JiraApiService.class);
+
+			assertTrue(service.closeIssueAsync("10001").join());
+			changed.set(true);
+			assertTrue(service.closeIssueAsync("10002").join());
+			assertTrue(service.closeIssueAsync("10003").join());
+		}
+
+		assertEquals(2, jira.count("GET", "/rest/api/3/issue/\\d+/transitions"));
+		assertEquals(2, jira.count("POST", "/rest/api/2/issue/10002/transitions"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/10003/transitions"));
+	}
+
+	private static JiraApiService service(HttpTransport transport) {
+		DefectIndex defectIndex = new DefectIndex();
+		ReflectionTestUtils.setField(defectIndex, "targetProject", "CXJI");
+
+		JiraApiService service = new JiraApiService();
+		ReflectionTestUtils.setField(service, "apiInstanceUrl", "https://example.atlassian.net");
+		ReflectionTestUtils.setField(service, "targetProject", "CXJI");
+		ReflectionTestUtils.setField(service, "apiCustomField", "railflow-metadata");
+		ReflectionTestUtils.setField(service, "configuredCustomFieldId", "customfield_10034");
+		ReflectionTestUtils.setField(service, "transitionCacheSize", 64);
+		ReflectionTestUtils.setField(service, "transitionCacheTtlMinutes", 60L);
+		ReflectionTestUtils.setField(service, "keysPerQuery", 50);
+		ReflectionTestUtils.setField(service, "bulkCreateSize", 50);
+		ReflectionTestUtils.setField(service, "transport", transport);
+		ReflectionTestUtils.setField(service, "defectIndex", defectIndex);
+		ReflectionTestUtils.setField(service, "metrics", new RunMetrics());
+		ReflectionTestUtils.invokeMethod(service, "init");
+		return service;
+	}
+
+	private static TransportResponse response(int status, String body) {
+		return new TransportResponse(status, Collections.emptyMap(), body);
+	}
+
+}
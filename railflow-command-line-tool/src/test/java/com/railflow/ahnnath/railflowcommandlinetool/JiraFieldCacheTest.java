@@ -0,0 +1,137 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.JiraApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.store.JiraFieldCache;
+
+/**
+ * Class created to test that the metadata custom field is looked up in the
+ * Jira fields, that its id is cached on disk between runs, and that a field
+ * that was not found is looked up again by the next run.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class JiraFieldCacheTest {
+
+	private static final String fields = "[{\"id\": \"summary\", \"name\": \"Summary\", \"custom\": false},"
+			+ "{\"id\": \"customfield_10321\", \"name\": \"railflow-metadata\", \"custom\": true}]";
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that the field id is resolved with a single request to the
+	 * fields endpoint, and that a later run finds it in the cache without any
+	 * request.
+	 */
+	@Test
+	void resolvesFieldIdOnceAcrossRuns() throws Exception {
+		List<String> urls = new CopyOnWriteArrayList<String>();
+		HttpTransport transport = request -> {
+			urls.add(request.getUrl());
+			return CompletableFuture.completedFuture(new TransportResponse(200, Collections.emptyMap(), fields));
+		};
+
+		JiraApiService firstRun = service(transport);
+		assertTrue(firstRun.doesRequiredCustomFieldExist("railflow-metadata"));
+		assertEquals("customfield_10321", firstRun.getCustomFieldId());
+		assertEquals(1, urls.size());
+		assertTrue(urls.get(0).endsWith("/rest/api/3/field"));
+
+		JiraApiService secondRun = service(transport);
+		assertTrue(secondRun.doesRequiredCustomFieldExist("railflow-metadata"));
+		assertEquals("customfield_10321", secondRun.getCustomFieldId());
+		assertEquals(1, urls.size());
+
+		assertFalse(secondRun.doesRequiredCustomFieldExist("railflow-connection"));
+		assertEquals(2, urls.size());
+	}
+
+	/**
+	 * Test asserts that a field that does not exist, or whose lookup Jira
+	 * refused, is not cached, so the next run finds it once it was created.
+	 */
+	@Test
+	void looksUpMissingFieldsAgain() throws Exception {
+		FakeJira missing = new FakeJira().respond("GET", "/rest/api/3/field", 200, "[]");
+		assertFalse(verify(missing));
+		assertFalse(Files.exists(cacheDir.resolve("jira-field-railflow-metadata.json")));
+
+		FakeJira refused = new FakeJira().respond("GET", "/rest/api/3/field", 503, "{}");
+		assertFalse(verify(refused));
+		assertFalse(Files.exists(cacheDir.resolve("jira-field-railflow-metadata.json")));
+
+		FakeJira created = new FakeJira();
+		assertTrue(verify(created));
+		assertTrue(verify(created));
+		assertEquals(1, created.count("GET", "/rest/api/3/field"));
+		assertEquals(1, missing.count("GET", "/rest/api/3/field"));
+		assertEquals(1, refused.count("GET", "/rest/api/3/field"));
+	}
+
+	/**
+	 * Test asserts that a cached id that cannot be read, or that was resolved on
+	 * another instance, is looked up again.
+	 */
+	@Test
+	void ignoresDamagedOrForeignCachedIds() throws Exception {
+		Files.write(cacheDir.resolve("jira-field-railflow-metadata.json"), "{\"id\": ".getBytes(StandardCharsets.UTF_8));
+		FakeJira jira = new FakeJira();
+		assertTrue(verify(jira));
+		assertEquals(1, jira.count("GET", "/rest/api/3/field"));
+
+		FakeJira other = new FakeJira();
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(other, cacheDir,
+				"jira.api.custom-field-id=", "jira.api.instance=https://other.jira.test")) {
+			assertTrue(context.getBean(JiraApiService.class).verifyRequiredCustomField());
+		}
+		assertEquals(1, other.count("GET", "/rest/api/3/field"));
+	}
+
+	// starts a run that resolves the metadata field with the cache directory
+	private boolean verify(FakeJira jira) throws Exception {
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"jira.api.custom-field-id=")) {
+			return context.getBean(JiraApiService.class).verifyRequiredCustomField();
+		}
+	}
+
+	private JiraApiService service(HttpTransport transport) {
+		JiraFieldCache fieldCache = new JiraFieldCache();
+		ReflectionTestUtils.setField(fieldCache, "cacheDir", cacheDir.toString());
+		ReflectionTestUtils.setField(fieldCache, "ttlMinutes", 60L);
+
+		JiraApiService service = new JiraApiService();
+		ReflectionTestUtils.setField(service, "apiInstanceUrl", "https://example.atlassian.net");
+		ReflectionTestUtils.setField(service, "apiCustomField", "railflow-metadata");
+		ReflectionTestUtils.setField(service, "configuredCustomFieldId", "");
+		ReflectionTestUtils.setField(service, "transport", transport);
+		ReflectionTestUtils.setField(service, "fieldCache", fieldCache);
+		ReflectionTestUtils.setField(service, "metrics", new RunMetrics());
+		ReflectionTestUtils.invokeMethod(service, "init");
+		return service;
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+
+/**
+ * Class created to test that the fingerprint of a test case does not change
+ * between runs and that legacy metadata is migrated to the same fingerprint.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class MetadataFingerprintTest {
+
+	private final MetadataFingerprint fingerprint = MetadataFingerprint.of("classname,name");
+
+	/**
+	 * Test asserts that the fingerprint ignores the suite time and size by
+	 * default, and depends on them once they are listed as components.
+	 */
+	@Test
+	void fingerprintIsStableBetweenRuns() {
+		TestSuiteResult firstRun = new TestSuiteResult(0, "io.railflow.ParserTest", "12", "1.532", 1);
+		TestSuiteResult secondRun = new TestSuiteResult(0, "io.railflow.ParserTest", "13", "1.874", 1);
+
+		String first = testCase(firstRun, fingerprint).getMetadata();
+		assertTrue(MetadataFingerprint.isFingerprint(first));
+		assertEquals(first, testCase(secondRun, fingerprint).getMetadata());
+
+		MetadataFingerprint withTime = MetadataFingerprint.of("classname, name, time");
+		assertNotEquals(testCase(firstRun, withTime).getMetadata(), testCase(secondRun, withTime).getMetadata());
+	}
+
+	/**
+	 * Test asserts that legacy metadata, including test names with dashes, gives
+	 * the fingerprint of the test case it was built from.
+	 */
+	@Test
+	void legacyMetadataIsMigrated() {
+		TestSuiteResult suite = new TestSuiteResult(0, "io.railflow.ParserTest", "12", "1.532", 1);
+		TestCaseResult testCase = new TestCaseResult(suite, 0, "parses[1-a]", "io.railflow.ParserTest", true);
+
+		assertEquals("io.railflow.ParserTest-12-1.532-parses[1-a]-io.railflow.ParserTest", testCase.getMetadata());
+		assertEquals(testCase(suite, fingerprint).getMetadata(), fingerprint.fromLegacy(testCase.getMetadata()));
+		assertNull(fingerprint.fromLegacy("not legacy metadata"));
+	}
+
+	private static TestCaseResult testCase(TestSuiteResult suite, MetadataFingerprint fingerprint) {
+		return new TestCaseResult(suite, 0, "parses[1-a]", "io.railflow.ParserTest", true, fingerprint);
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.commands.MigrateCommand;
+
+/**
+ * Class created to test that 'migrate' leaves a single open defect for each
+ * fingerprint.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class MigrateCommandTest {
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that every legacy defect is migrated, and that of the open
+	 * defects whose metadata only differs by the suite time, the older is closed
+	 * with a comment naming the newest.
+	 */
+	@Test
+	void closesOlderOpenDefectsSharingAFingerprint() throws Exception {
+		String all = FakeJira.searchResult("101:To Do:suite-2-0.5-parses-io.railflow.ParserTest",
+				"103:Done:suite-2-0.1-parses-io.railflow.ParserTest",
+				"105:To Do:suite-2-0.7-parses-io.railflow.ParserTest",
+				"107:To Do:suite-2-0.7-reads-io.railflow.ReaderTest");
+		String open = FakeJira.searchResult("101:To Do:suite-2-0.5-parses-io.railflow.ParserTest",
+				"105:To Do:suite-2-0.7-parses-io.railflow.ParserTest",
+				"107:To Do:suite-2-0.7-reads-io.railflow.ReaderTest");
+
+		FakeJira jira = new FakeJira()
+				.on("POST", "/rest/api/3/search",
+						request -> CompletableFuture.completedFuture(
+								FakeJira.response(200, request.getBody().contains("status =") ? open : all)))
+				.respond("PUT", "/rest/api/3/issue/\\d+", 204, "")
+				.respond("POST", "/rest/api/2/issue/\\d+/comment", 201,
+						"{\"id\": \"9\", \"created\": \"2026-10-17T10:00:00.000+0000\"}");
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(jira, cacheDir,
+				"railflow.fingerprint.mode=fingerprint")) {
+			context.getBean(MigrateCommand.class).run();
+		}
+
+		assertEquals(4, jira.count("PUT", "/rest/api/3/issue/\\d+"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/\\d+/comment"));
+		assertTrue(jira.requests("POST", "/rest/api/2/issue/101/comment").get(0).getBody().contains("[105]"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/\\d+/transitions"));
+		assertEquals(1, jira.count("POST", "/rest/api/2/issue/101/transitions"));
+	}
+
+}
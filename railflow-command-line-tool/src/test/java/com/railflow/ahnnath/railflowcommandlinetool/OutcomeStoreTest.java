@@ -0,0 +1,94 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.railflow.ahnnath.railflowcommandlinetool.store.OutcomeStore;
+
+/**
+ * Class created to test that the outcomes of the test cases are kept between
+ * runs, and that only recent passes let a test case be skipped.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class OutcomeStoreTest {
+
+	private static final long maxAge = TimeUnit.HOURS.toMillis(168);
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that a saved pass is known to the next run until it is too
+	 * old, that failures are never taken as passes, and that outcomes older
+	 * than the retention are not saved.
+	 */
+	@Test
+	void keepsRecentPassesBetweenRuns() {
+		long now = System.currentTimeMillis();
+		OutcomeStore firstRun = store();
+		firstRun.load();
+		firstRun.record("5f0c", false, now);
+		firstRun.record("9a1e", true, now);
+		firstRun.record("77b2", false, now - TimeUnit.DAYS.toMillis(31));
+		firstRun.save();
+
+		OutcomeStore nextRun = store();
+		nextRun.load();
+		assertEquals(2, nextRun.size());
+		assertTrue(nextRun.isStillPassing("5f0c", now, maxAge));
+		assertFalse(nextRun.isStillPassing("5f0c", now + maxAge, maxAge));
+		assertFalse(nextRun.isStillPassing("9a1e", now, maxAge));
+		assertFalse(nextRun.isStillPassing("77b2", now, maxAge));
+	}
+
+	/**
+	 * Test asserts that a damaged file is ignored, so every test case is
+	 * reconciled, and is rebuilt by the next save.
+	 */
+	@Test
+	void ignoresADamagedFile() throws Exception {
+		long now = System.currentTimeMillis();
+		OutcomeStore firstRun = store();
+		firstRun.load();
+		firstRun.record("5f0c", false, now);
+		firstRun.save();
+
+		Path path = cacheDir.resolve("outcomes-RAIL.bin");
+		byte[] content = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(content, content.length - 4));
+
+		OutcomeStore damaged = store();
+		damaged.load();
+		assertEquals(0, damaged.size());
+		assertFalse(damaged.isStillPassing("5f0c", now, maxAge));
+
+		damaged.record("5f0c", false, now);
+		damaged.save();
+		OutcomeStore rebuilt = store();
+		rebuilt.load();
+		assertTrue(rebuilt.isStillPassing("5f0c", now, maxAge));
+	}
+
+	private OutcomeStore store() {
+		OutcomeStore store = new OutcomeStore();
+		ReflectionTestUtils.setField(store, "cacheDir", cacheDir.toString());
+		ReflectionTestUtils.setField(store, "targetProject", "RAIL");
+		ReflectionTestUtils.setField(store, "retentionDays", 30);
+		return store;
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ParseResultCache;
+import com.railflow.ahnnath.railflowcommandlinetool.util.JUnitStreamReader;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Class created to test that a report is parsed again only when its cached
+ * results are damaged, and that its test cases are never emitted twice.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ParseResultCacheTest {
+
+	private static final String report = "<?xml version=\"1.0\"?>\n"
+			+ "<testsuite name=\"io.railflow.RailflowTest\" time=\"0.21\" tests=\"3\" failures=\"1\">\n"
+			+ "  <testcase name=\"upload\" classname=\"io.railflow.RailflowTest\"><failure/></testcase>\n"
+			+ "  <testcase name=\"license\" classname=\"io.railflow.RailflowTest\"/>\n"
+			+ "  <testcase name=\"sync\" classname=\"io.railflow.RailflowTest\"/>\n" + "</testsuite>\n";
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Test asserts that results cut off halfway through are rebuilt from the
+	 * report, with each test case emitted once.
+	 */
+	@Test
+	void rebuildsResultsDamagedHalfwayThrough() throws Exception {
+		File file = report();
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(),
+				directory.resolve("cache"))) {
+			read(context, file, new ArrayList<String>());
+
+			Path results = cachedResults();
+			byte[] content = Files.readAllBytes(results);
+			Files.write(results, Arrays.copyOf(content, content.length / 2));
+
+			List<String> testCases = new ArrayList<String>();
+			read(context, file, testCases);
+			assertEquals(Arrays.asList("upload", "license", "sync"), testCases);
+
+			testCases.clear();
+			read(context, file, testCases);
+			assertEquals(Arrays.asList("upload", "license", "sync"), testCases);
+		}
+	}
+
+	/**
+	 * Test asserts that a report rewritten with the same size and modification
+	 * time is parsed again, since its content no longer matches the results.
+	 */
+	@Test
+	void rebuildsResultsOfAReportChangedInPlace() throws Exception {
+		File file = report();
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(),
+				directory.resolve("cache"))) {
+			read(context, file, new ArrayList<String>());
+
+			FileTime modified = Files.getLastModifiedTime(file.toPath());
+			Files.write(file.toPath(), report.replace("\"sync\"", "\"push\"").getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(file.toPath(), modified);
+
+			List<String> testCases = new ArrayList<String>();
+			read(context, file, testCases);
+			assertEquals(Arrays.asList("upload", "license", "push"), testCases);
+		}
+	}
+
+	/**
+	 * Test asserts that a listener failing while the results are replayed stops
+	 * the read, instead of the report being parsed and emitted again.
+	 */
+	@Test
+	void listenerFailuresAreNotTakenForDamage() throws Exception {
+		File file = report();
+
+		try (AnnotationConfigApplicationContext context = RailflowTestContext.create(new FakeJira(),
+				directory.resolve("cache"))) {
+			read(context, file, new ArrayList<String>());
+
+			List<String> testCases = new ArrayList<String>();
+			assertThrows(InterruptedIOException.class, () -> context.getBean(ParseResultCache.class).read(file,
+					new JUnitStreamReader(context.getBean(MetadataFingerprint.class)), new TestCaseListener() {
+
+						@Override
+						public void onTestSuite(TestSuiteResult testSuite) {
+						}
+
+						@Override
+						public void onTestCase(TestCaseResult testCase) throws InterruptedIOException {
+							testCases.add(testCase.getName());
+							if (testCases.size() == 2) {
+								throw new InterruptedIOException("The pipeline was stopped");
+							}
+						}
+					}));
+			assertEquals(Arrays.asList("upload", "license"), testCases);
+		}
+	}
+
+	private File report() throws Exception {
+		Path path = directory.resolve("TEST-RailflowTest.xml");
+		Files.write(path, report.getBytes(StandardCharsets.UTF_8));
+		return path.toFile();
+	}
+
+	private Path cachedResults() throws Exception {
+		try (Stream<Path> paths = Files.list(directory.resolve("cache").resolve("parse-results"))) {
+			return paths.filter(path -> path.toString().endsWith(".rfpr")).findFirst().get();
+		}
+	}
+
+	private static void read(AnnotationConfigApplicationContext context, File file, List<String> testCases)
+			throws Exception {
+		context.getBean(ParseResultCache.class).read(file,
+				new JUnitStreamReader(context.getBean(MetadataFingerprint.class)), new TestCaseListener() {
+
+					@Override
+					public void onTestSuite(TestSuiteResult testSuite) {
+					}
+
+					@Override
+					public void onTestCase(TestCaseResult testCase) {
+						testCases.add(testCase.getName());
+					}
+				});
+	}
+
+}
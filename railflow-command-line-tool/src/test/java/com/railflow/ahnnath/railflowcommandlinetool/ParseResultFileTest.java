@@ -0,0 +1,153 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.MetadataFingerprint;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.store.ParseResultFile;
+import com.railflow.ahnnath.railflowcommandlinetool.util.JUnitStreamReader;
+import com.railflow.ahnnath.railflowcommandlinetool.util.TestCaseListener;
+
+/**
+ * Class created to test that the parse results written while a report is read
+ * are replayed as the same testsuite and testcase events.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ParseResultFileTest {
+
+	private static final String report = "<?xml version=\"1.0\"?>\n" + "<testsuites>\n"
+			+ "  <testsuite name=\"io.railflow.RailflowTest\" time=\"0.21\" tests=\"2\" failures=\"1\">\n"
+			+ "    <testcase name=\"upload\" classname=\"io.railflow.RailflowTest\"><failure/></testcase>\n"
+			+ "    <testsuite name=\"io.railflow.NestedTest\" time=\"0.01\" tests=\"1\">\n"
+			+ "      <testcase name=\"nested\" classname=\"io.railflow.NestedTest\"/>\n" + "    </testsuite>\n"
+			+ "    <testcase name=\"license é\" classname=\"io.railflow.RailflowTest\"/>\n"
+			+ "  </testsuite>\n" + "</testsuites>\n";
+
+	@TempDir
+	Path directory;
+
+	private final MetadataFingerprint fingerprint = MetadataFingerprint.of("classname,name");
+
+	/**
+	 * Test asserts that every event is passed on while it is written, and that
+	 * the replayed test cases have the same attributes, suites and metadata.
+	 */
+	@Test
+	void replaysTheEventsThatWereWritten() throws Exception {
+		Path path = directory.resolve("report.rfpr");
+		List<TestCaseResult> read = new ArrayList<>();
+
+		try (ParseResultFile.Writer writer = new ParseResultFile.Writer(Files.newOutputStream(path),
+				collector(new ArrayList<>(), read))) {
+			new JUnitStreamReader(fingerprint)
+					.read(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), writer);
+			writer.finish();
+		}
+
+		List<TestSuiteResult> suites = new ArrayList<>();
+		List<TestCaseResult> replayed = new ArrayList<>();
+		ParseResultFile.replay(path, fingerprint, collector(suites, replayed));
+
+		assertEquals(2, suites.size());
+		assertEquals(3, read.size());
+		assertEquals(read.size(), replayed.size());
+		for (int i = 0; i < read.size(); i++) {
+			assertEquals(read.get(i).getMetadata(), replayed.get(i).getMetadata());
+			assertEquals(read.get(i).getName(), replayed.get(i).getName());
+			assertEquals(read.get(i).isFailed(), replayed.get(i).isFailed());
+			assertEquals(read.get(i).getSuite().getName(), replayed.get(i).getSuite().getName());
+		}
+		assertSame(suites.get(0), replayed.get(2).getSuite());
+	}
+
+	/**
+	 * Test asserts that a damaged file is rejected before any event is emitted.
+	 */
+	@Test
+	void rejectsDamagedFiles() throws Exception {
+		Path path = directory.resolve("report.rfpr");
+
+		try (ParseResultFile.Writer writer = new ParseResultFile.Writer(Files.newOutputStream(path),
+				collector(new ArrayList<>(), new ArrayList<>()))) {
+			new JUnitStreamReader(fingerprint)
+					.read(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)), writer);
+			writer.finish();
+		}
+
+		byte[] content = Files.readAllBytes(path);
+		content[content.length / 2] ^= 0x20;
+		Files.write(path, content);
+
+		List<TestCaseResult> replayed = new ArrayList<>();
+		assertThrows(IOException.class,
+				() -> ParseResultFile.replay(path, fingerprint, collector(new ArrayList<>(), replayed)));
+		assertEquals(0, replayed.size());
+	}
+
+	/**
+	 * Test asserts that a file whose checksum matches but whose records cannot
+	 * be replayed, such as a test case of an undefined suite after a valid one,
+	 * is rejected before any event is emitted.
+	 */
+	@Test
+	void rejectsUndecodableRecordsBeforeAnyEvent() throws Exception {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(content);
+		out.writeInt(0x52465052);
+		out.writeInt(1);
+		out.write(new byte[] { 1, 4, 'S', 'u', 'i', 't' });
+		out.write(new byte[] { 2, 0, 0, 1, '1', 1, '0', 0 });
+		out.write(new byte[] { 3, 0, 0, 0, 1, 'a' });
+		out.write(new byte[] { 3, 5, 1, 0, 1, 'b' });
+		out.writeByte(0);
+
+		CRC32 crc = new CRC32();
+		crc.update(content.toByteArray());
+		out.writeInt((int) crc.getValue());
+
+		Path path = directory.resolve("report.rfpr");
+		Files.write(path, content.toByteArray());
+
+		List<TestCaseResult> replayed = new ArrayList<>();
+		assertThrows(IOException.class,
+				() -> ParseResultFile.replay(path, fingerprint, collector(new ArrayList<>(), replayed)));
+		assertEquals(0, replayed.size());
+	}
+
+	private static TestCaseListener collector(List<TestSuiteResult> suites, List<TestCaseResult> testCases) {
+		return new TestCaseListener() {
+
+			@Override
+			public void onTestSuite(TestSuiteResult testSuite) {
+				suites.add(testSuite);
+			}
+
+			@Override
+			public void onTestCase(TestCaseResult testCase) {
+				testCases.add(testCase);
+			}
+		};
+	}
+
+}
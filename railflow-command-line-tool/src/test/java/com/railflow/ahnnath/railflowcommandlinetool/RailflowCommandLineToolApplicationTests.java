@@ -180,6 +180,9 @@ class RailflowCommandLineToolApplicationTests {
 	 */
 	@Test
 	void testCreateDefectMethod() throws UnirestException, JsonProcessingException {
+		// resolve the metadata field first, like the commands do
+		apiService.verifyRequiredCustomField();
+
 		// create issue/defect on Jira
 		int n = new Random().nextInt(Integer.MAX_VALUE);
 		String issueMetadata = String.format("test-create-defect-method-%s", n);
@@ -204,6 +207,9 @@ class RailflowCommandLineToolApplicationTests {
 	 */
 	@Test
 	void testCloseDefectMethod() throws UnirestException, JsonProcessingException {
+		// resolve the metadata field first, like the commands do
+		apiService.verifyRequiredCustomField();
+
 		// create issue/defect on Jira
 		int n = new Random().nextInt(Integer.MAX_VALUE);
 		String issueMetadata = String.format("test-close-defect-method-%s", n);
@@ -234,6 +240,9 @@ class RailflowCommandLineToolApplicationTests {
 	 */
 	@Test
 	void testAddCommentMethod() throws JsonProcessingException, UnirestException {
+		// resolve the metadata field first, like the commands do
+		apiService.verifyRequiredCustomField();
+
 		// create issue/defect on Jira
 		int n = new Random().nextInt(Integer.MAX_VALUE);
 		String issueMetadata = String.format("test-close-defect-method-%s", n);
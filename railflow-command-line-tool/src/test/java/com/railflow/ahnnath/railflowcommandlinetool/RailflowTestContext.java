@@ -0,0 +1,64 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransportConfiguration;
+
+/**
+ * Creates the components of the application as {@link RailflowLauncher} does,
+ * with the given transport in place of the HTTP clients and the cache under
+ * the given directory. The properties given as 'name=value' take precedence
+ * over 'application.properties'.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+final class RailflowTestContext {
+
+	private RailflowTestContext() {
+	}
+
+	static AnnotationConfigApplicationContext create(HttpTransport transport, Path cacheDir, String... properties)
+			throws IOException {
+		Map<String, Object> overrides = new HashMap<String, Object>();
+		overrides.put("jira.api.instance", "https://jira.test");
+		overrides.put("jira.api.custom-field-id", "customfield_10034");
+		overrides.put("railflow.cache.dir", cacheDir.toString());
+		overrides.put("railflow.index.enabled", "false");
+		overrides.put("railflow.metrics.enabled", "false");
+		for (String property : properties) {
+			String[] pair = property.split("=", 2);
+			overrides.put(pair[0], pair[1]);
+		}
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", overrides));
+		context.getEnvironment().getPropertySources()
+				.addLast(new ResourcePropertySource("classpath:application.properties"));
+
+		List<Class<?>> components = new ArrayList<Class<?>>(Arrays.asList(RailflowLauncher.components));
+		components.remove(HttpTransportConfiguration.class);
+
+		context.registerBean(PropertySourcesPlaceholderConfigurer.class);
+		context.registerBean(HttpTransport.class, () -> transport);
+		context.register(components.toArray(new Class<?>[0]));
+		context.refresh();
+
+		return context;
+	}
+
+}
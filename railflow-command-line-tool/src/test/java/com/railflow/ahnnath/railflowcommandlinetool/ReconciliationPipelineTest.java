@@ -0,0 +1,79 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ReconciliationPipeline;
+
+/**
+ * Class created to test that the test cases submitted to the pipeline are
+ * handled in batches by several workers, and that every occurrence of a
+ * metadata value is handled by the same worker, in the order it was read.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ReconciliationPipelineTest {
+
+	/**
+	 * Test asserts that 20 tests read 20 times each are handled in batches of at
+	 * most 3 test cases by more than one worker, and that every test is always
+	 * handled by the same worker, in the order its occurrences were submitted.
+	 */
+	@Test
+	void handlesEachMetadataOnASingleWorkerInOrder() throws Exception {
+		Map<String, Set<String>> workersByMetadata = new ConcurrentHashMap<String, Set<String>>();
+		Map<String, List<Integer>> indexesByMetadata = new ConcurrentHashMap<String, List<Integer>>();
+		AtomicInteger handled = new AtomicInteger();
+		AtomicInteger largestBatch = new AtomicInteger();
+
+		ReconciliationPipeline pipeline = new ReconciliationPipeline((batch, changes) -> {
+			largestBatch.accumulateAndGet(batch.size(), Math::max);
+			for (TestCaseResult testCase : batch) {
+				workersByMetadata.computeIfAbsent(testCase.getMetadata(), key -> ConcurrentHashMap.newKeySet())
+						.add(Thread.currentThread().getName());
+				indexesByMetadata.computeIfAbsent(testCase.getMetadata(), key -> new ArrayList<Integer>())
+						.add(testCase.getIndex());
+				handled.incrementAndGet();
+			}
+		}, 4, 8, 3);
+
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", "20", "1.0", 0);
+		for (int i = 0; i < 400; i++) {
+			pipeline.submit(new TestCaseResult(suite, i, "test" + (i % 20), "com.example.Tests", i % 3 == 0));
+		}
+		pipeline.close();
+
+		assertEquals(400, handled.get());
+		assertTrue(largestBatch.get() <= 3);
+		assertEquals(20, workersByMetadata.size());
+
+		Set<String> workers = ConcurrentHashMap.newKeySet();
+		for (Set<String> metadataWorkers : workersByMetadata.values()) {
+			assertEquals(1, metadataWorkers.size());
+			workers.addAll(metadataWorkers);
+		}
+		assertTrue(workers.size() > 1);
+
+		for (List<Integer> indexes : indexesByMetadata.values()) {
+			assertEquals(20, indexes.size());
+			for (int i = 1; i < indexes.size(); i++) {
+				assertTrue(indexes.get(i - 1) < indexes.get(i));
+			}
+		}
+	}
+
+}
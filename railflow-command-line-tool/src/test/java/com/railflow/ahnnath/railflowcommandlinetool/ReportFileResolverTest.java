@@ -0,0 +1,57 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.railflow.ahnnath.railflowcommandlinetool.util.ReportFileResolver;
+
+/**
+ * Class created to test that the inputs of the 'parse' sub command are resolved
+ * into the expected report files.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ReportFileResolverTest {
+
+	@TempDir
+	Path reports;
+
+	private final ReportFileResolver resolver = new ReportFileResolver();
+
+	/**
+	 * Test asserts that directories are walked recursively for XML files, that
+	 * glob patterns are matched relative to their base directory and that files
+	 * given more than once are returned once.
+	 */
+	@Test
+	void resolvesFilesDirectoriesAndPatterns() throws IOException {
+		Path module = Files.createDirectories(reports.resolve("module/surefire-reports"));
+		Path first = Files.createFile(module.resolve("TEST-a.xml"));
+		Path second = Files.createFile(module.resolve("TEST-b.xml"));
+		Files.createFile(module.resolve("a.txt"));
+		Path single = Files.createFile(reports.resolve("single.xml"));
+
+		List<File> directory = resolver.resolve(Arrays.asList(reports.resolve("module").toString()));
+		assertEquals(Arrays.asList(first.toFile(), second.toFile()), directory);
+
+		List<File> pattern = resolver.resolve(Arrays.asList(reports.toString() + "/**/TEST-*.xml",
+				single.toString(), first.toString()));
+		assertEquals(Arrays.asList(first.toFile(), second.toFile(), single.toFile()), pattern);
+
+		List<File> noMatch = resolver.resolve(Arrays.asList(reports.toString() + "/*/TEST-*.xml"));
+		assertEquals(0, noMatch.size());
+	}
+
+}
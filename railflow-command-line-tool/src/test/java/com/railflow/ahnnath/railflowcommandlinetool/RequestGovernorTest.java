@@ -0,0 +1,163 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.PerHostTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.RequestGovernor;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportRequest;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+
+/**
+ * Class created to test that the request governor retries throttled requests,
+ * only resends requests that are safe to send twice, and stops sending
+ * requests to an instance that keeps failing, without affecting other hosts.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class RequestGovernorTest {
+
+	private static final String instance = "https://example.atlassian.net";
+
+	/**
+	 * Test asserts that a throttled request is sent again after the pause given
+	 * by Jira, and that the concurrency limit is lowered.
+	 */
+	@Test
+	void retriesThrottledRequests() {
+		AtomicInteger sent = new AtomicInteger();
+		HttpTransport jira = request -> CompletableFuture.completedFuture(sent.incrementAndGet() == 1
+				? response(429, Collections.singletonMap("Retry-After", List.of("0")))
+				: response(201, Collections.emptyMap()));
+		RequestGovernor governor = new RequestGovernor(jira, settings());
+
+		TransportResponse response = governor
+				.sendAsync(TransportRequest.post(instance + "/rest/api/3/issue/bulk", "{}")).join();
+
+		assertEquals(201, response.getStatus());
+		assertEquals(2, sent.get());
+		assertEquals(4, governor.getConcurrencyLimit());
+	}
+
+	/**
+	 * Test asserts that a request that may have created an issue or a comment
+	 * is not sent again after a server error, unless it never reached Jira, and
+	 * that transitions are.
+	 */
+	@Test
+	void onlyRetriesRequestsSafeToSendTwice() {
+		AtomicInteger sent = new AtomicInteger();
+		HttpTransport failing = request -> {
+			sent.incrementAndGet();
+			return CompletableFuture.completedFuture(response(502, Collections.emptyMap()));
+		};
+		RequestGovernor governor = new RequestGovernor(failing, settings());
+
+		assertEquals(502,
+				governor.sendAsync(TransportRequest.post(instance + "/rest/api/3/issue", "{}")).join().getStatus());
+		assertEquals(1, sent.get());
+
+		sent.set(0);
+		CompletionException error = assertThrows(CompletionException.class,
+				() -> governor.sendAsync(TransportRequest.get(instance + "/rest/api/3/search")).join());
+		assertTrue(error.getCause() instanceof IOException);
+		assertEquals(3, sent.get());
+
+		// closing an issue moves it to a fixed status, so it is sent again
+		sent.set(0);
+		error = assertThrows(CompletionException.class, () -> governor
+				.sendAsync(TransportRequest.post(instance + "/rest/api/2/issue/10001/transitions", "{}")).join());
+		assertTrue(error.getCause() instanceof IOException);
+		assertEquals(3, sent.get());
+
+		sent.set(0);
+		assertEquals(502, governor
+				.sendAsync(TransportRequest.post(instance + "/rest/api/2/issue/10001/comment", "{}")).join()
+				.getStatus());
+		assertEquals(1, sent.get());
+
+		AtomicInteger attempts = new AtomicInteger();
+		HttpTransport unreachable = request -> attempts.incrementAndGet() < 3
+				? CompletableFuture.failedFuture(new ConnectException("Connection refused"))
+				: CompletableFuture.completedFuture(response(201, Collections.emptyMap()));
+
+		assertEquals(201, new RequestGovernor(unreachable, settings())
+				.sendAsync(TransportRequest.post(instance + "/rest/api/3/issue", "{}")).join().getStatus());
+		assertEquals(3, attempts.get());
+	}
+
+	/**
+	 * Test asserts that requests are refused without being sent once the
+	 * failure threshold is reached.
+	 */
+	@Test
+	void refusesRequestsWhileTheCircuitIsOpen() {
+		AtomicInteger sent = new AtomicInteger();
+		HttpTransport down = request -> {
+			sent.incrementAndGet();
+			return CompletableFuture.failedFuture(new IOException("Connection reset"));
+		};
+		RequestGovernor governor = new RequestGovernor(down,
+				new RequestGovernor.Settings().retries(0, 1, 1, 0).circuit(3, 60));
+
+		for (int i = 0; i < 3; i++) {
+			assertThrows(CompletionException.class,
+					() -> governor.sendAsync(TransportRequest.get(instance + "/rest/api/3/myself")).join());
+		}
+		assertTrue(governor.isCircuitOpen());
+
+		CompletionException error = assertThrows(CompletionException.class,
+				() -> governor.sendAsync(TransportRequest.get(instance + "/rest/api/3/myself")).join());
+		assertTrue(error.getCause() instanceof IOException);
+		assertEquals(3, sent.get());
+	}
+
+	/**
+	 * Test asserts that a host whose circuit is open does not stop the requests
+	 * to another host.
+	 */
+	@Test
+	void governsEachHostSeparately() {
+		String testRail = "https://example.testrail.io";
+		HttpTransport hosts = request -> request.getUrl().startsWith(testRail)
+				? CompletableFuture.failedFuture(new IOException("Connection reset"))
+				: CompletableFuture.completedFuture(response(200, Collections.emptyMap()));
+		PerHostTransport transport = new PerHostTransport(hosts,
+				new RequestGovernor.Settings().retries(0, 1, 1, 0).circuit(3, 60));
+
+		for (int i = 0; i < 3; i++) {
+			assertThrows(CompletionException.class, () -> transport
+					.sendAsync(TransportRequest.get(testRail + "/index.php?/api/v2/get_cases/3")).join());
+		}
+
+		assertTrue(transport.getGovernor("example.testrail.io").isCircuitOpen());
+		assertFalse(transport.getGovernor("example.atlassian.net").isCircuitOpen());
+		assertEquals(200, transport.sendAsync(TransportRequest.get(instance + "/rest/api/3/myself")).join().getStatus());
+	}
+
+	private static RequestGovernor.Settings settings() {
+		return new RequestGovernor.Settings().limits(8, 1000).retries(2, 1, 5, 1000).circuit(10, 60);
+	}
+
+	private static TransportResponse response(int status, Map<String, List<String>> headers) {
+		return new TransportResponse(status, headers, "");
+	}
+
+}
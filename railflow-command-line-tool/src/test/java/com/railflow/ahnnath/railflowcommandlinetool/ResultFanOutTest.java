@@ -0,0 +1,178 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.DefectLookup;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ResultFanOut;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.ResultSink;
+
+/**
+ * Class created to test that the test cases of a run reach every result sink,
+ * that the test cases a slow sink did not take yet are bounded, and that a
+ * sink that fails a batch or cannot finish the run fails it.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class ResultFanOutTest {
+
+	private static final int cases = 500;
+
+	/**
+	 * Test asserts that a fast sink receives the test cases a blocked sink
+	 * cannot take yet, that the parser waits once the backlog of the blocked
+	 * sink is full instead of keeping the rest of the run in memory, and that
+	 * both sinks handle and finish the whole run once it is released.
+	 */
+	@Test
+	void blockedSinkPausesTheParserOnceItsBacklogIsFull() throws Exception {
+		CountDownLatch released = new CountDownLatch(1);
+		CountingSink slow = new CountingSink("slow", released);
+		CountingSink fast = new CountingSink("fast", null);
+
+		ResultFanOut fanOut = new ResultFanOut(Arrays.asList(slow, fast), "1042", new RunMetrics(), 4, 2);
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", String.valueOf(cases), "1.0", 0);
+		AtomicInteger submitted = new AtomicInteger();
+		Thread parser = new Thread(() -> {
+			try {
+				for (int i = 0; i < cases; i++) {
+					fanOut.submit(new TestCaseResult(suite, i, "test" + i, "com.example.Tests", false));
+					submitted.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		parser.start();
+
+		// waits until the parser stops making progress
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+		int last = -1;
+		while (submitted.get() != last && System.currentTimeMillis() < deadline) {
+			last = submitted.get();
+			Thread.sleep(200);
+		}
+		assertTrue(submitted.get() < cases);
+		assertTrue(fast.handled.get() > 4);
+		assertEquals(0, slow.handled.get());
+
+		released.countDown();
+		parser.join();
+		fanOut.close();
+
+		assertEquals(cases, slow.handled.get());
+		assertEquals(cases, fast.handled.get());
+		assertEquals(1, slow.finished.get());
+		assertEquals(1, fast.finished.get());
+	}
+
+	/**
+	 * Test asserts that closing fails when a sink cannot finish the run, once the
+	 * other sinks finished it.
+	 */
+	@Test
+	void sinkThatCannotFinishFailsTheClose() throws Exception {
+		CountingSink failing = new CountingSink("failing", null) {
+
+			@Override
+			public void finish() {
+				throw new IllegalStateException("The outcomes could not be saved");
+			}
+		};
+		CountingSink other = new CountingSink("other", null);
+
+		ResultFanOut fanOut = new ResultFanOut(Arrays.asList(failing, other), "1043", new RunMetrics(), 4, 2);
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", "1", "1.0", 0);
+		fanOut.submit(new TestCaseResult(suite, 0, "test0", "com.example.Tests", false));
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, fanOut::close);
+		assertTrue(e.getMessage().contains("failing"));
+		assertEquals(1, failing.handled.get());
+		assertEquals(1, other.finished.get());
+	}
+
+	/**
+	 * Test asserts that closing fails when a sink failed to handle a batch, while
+	 * the sinks still handle the other batches and finish the run.
+	 */
+	@Test
+	void failedBatchFailsTheClose() throws Exception {
+		CountingSink failing = new CountingSink("failing", null) {
+
+			@Override
+			public void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes) {
+				if (batch.stream().anyMatch(testCase -> testCase.getName().equals("test0"))) {
+					throw new IllegalStateException("Jira answered with an unexpected response");
+				}
+				super.handle(batch, changes);
+			}
+		};
+		CountingSink other = new CountingSink("other", null);
+
+		ResultFanOut fanOut = new ResultFanOut(Arrays.asList(failing, other), "1044", new RunMetrics(), 4, 1);
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", "3", "1.0", 0);
+		for (int i = 0; i < 3; i++) {
+			fanOut.submit(new TestCaseResult(suite, i, "test" + i, "com.example.Tests", false));
+		}
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, fanOut::close);
+		assertTrue(e.getMessage().contains("failing sink could not handle 1 batches"));
+		assertEquals(2, failing.handled.get());
+		assertEquals(1, failing.finished.get());
+		assertEquals(3, other.handled.get());
+		assertEquals(1, other.finished.get());
+	}
+
+	private static class CountingSink implements ResultSink {
+
+		private final String name;
+		private final CountDownLatch released;
+		private final AtomicInteger handled = new AtomicInteger();
+		private final AtomicInteger finished = new AtomicInteger();
+
+		CountingSink(String name, CountDownLatch released) {
+			this.name = name;
+			this.released = released;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void handle(List<TestCaseResult> batch, Map<String, DefectLookup> changes) {
+			try {
+				if (released != null) {
+					released.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			handled.addAndGet(batch.size());
+		}
+
+		@Override
+		public void finish() {
+			finished.incrementAndGet();
+		}
+
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.LatencyHistogram;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+
+/**
+ * Class created to test that request latencies are summarized into the expected
+ * percentiles and exported in the Prometheus text format.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class RunMetricsTest {
+
+	/**
+	 * Test asserts that percentiles fall in the logarithmic bucket of the exact
+	 * value, which is at most 19% above it.
+	 */
+	@Test
+	void percentilesAreWithinOneBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int millis = 1; millis <= 100; millis++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertWithinBucket(0.050, histogram.getQuantileSeconds(0.5));
+		assertWithinBucket(0.095, histogram.getQuantileSeconds(0.95));
+		assertWithinBucket(0.099, histogram.getQuantileSeconds(0.99));
+		assertEquals(0.100, histogram.getQuantileSeconds(1), 1e-9);
+	}
+
+	/**
+	 * Test asserts that requests and errors are counted by endpoint and that the
+	 * parse rate is exported.
+	 */
+	@Test
+	void exportsCountsErrorsAndParseRate() {
+		RunMetrics metrics = new RunMetrics();
+		metrics.recordRequest("POST /rest/api/3/search", TimeUnit.MILLISECONDS.toNanos(20), false);
+		metrics.recordRequest("POST /rest/api/3/search", TimeUnit.MILLISECONDS.toNanos(40), true);
+		metrics.recordParse(5000, TimeUnit.SECONDS.toNanos(2));
+
+		String text = metrics.toPrometheus();
+		assertTrue(text.contains("railflow_http_requests_total{endpoint=\"POST /rest/api/3/search\"} 2\n"));
+		assertTrue(text.contains("railflow_http_request_errors_total{endpoint=\"POST /rest/api/3/search\"} 1\n"));
+		assertTrue(text.contains(
+				"railflow_http_request_duration_seconds_bucket{endpoint=\"POST /rest/api/3/search\",le=\"+Inf\"} 2\n"));
+		assertTrue(text.contains("railflow_parse_rate_testcases_per_second 2500.000\n"));
+
+		assertEquals(5000, metrics.getTestCases());
+		assertEquals(2, metrics.getEndpoints().get("POST /rest/api/3/search").getRequests());
+	}
+
+	private static void assertWithinBucket(double expected, double actual) {
+		assertTrue(actual >= expected && actual <= expected * 1.19,
+				String.format("%s is not within a bucket of %s", actual, expected));
+	}
+
+}
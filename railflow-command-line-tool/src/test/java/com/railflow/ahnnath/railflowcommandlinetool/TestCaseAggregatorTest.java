@@ -0,0 +1,84 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.TestCaseAggregator;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.TestCaseAggregator.Policy;
+
+/**
+ * Class created to test that repeated test cases are collapsed into a single
+ * result with the outcome decided by each policy.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class TestCaseAggregatorTest {
+
+	private final TestSuiteResult firstShard = new TestSuiteResult(0, "io.railflow.ParserTest", "2", "0.5", 1);
+	private final TestSuiteResult secondShard = new TestSuiteResult(1, "io.railflow.ParserTest", "2", "0.7", 0);
+
+	/**
+	 * Test asserts that a test failing, then passing twice, is failed with
+	 * any-fail and passed with last-wins and majority, and that tests are
+	 * returned in the order they first occurred.
+	 */
+	@Test
+	void collapsesOccurrencesByPolicy() {
+		assertOutcome(Policy.ANY_FAIL, true);
+		assertOutcome(Policy.LAST_WINS, false);
+		assertOutcome(Policy.MAJORITY, false);
+		assertEquals(Policy.LAST_WINS, Policy.parse(" last-wins"));
+	}
+
+	/**
+	 * Test asserts that the last occurrence is decided by its ordinal and not by
+	 * the order it was added in, and that a tie is a failure with majority.
+	 */
+	@Test
+	void ordersOccurrencesByOrdinal() {
+		TestCaseAggregator lastWins = new TestCaseAggregator(Policy.LAST_WINS);
+		TestCaseResult last = testCase(secondShard, "parses", false);
+		lastWins.add(last, 10);
+		lastWins.add(testCase(firstShard, "parses", true), 1);
+
+		assertSame(last, lastWins.getResults().get(0));
+
+		TestCaseAggregator majority = new TestCaseAggregator(Policy.MAJORITY);
+		majority.add(testCase(firstShard, "parses", true), 1);
+		majority.add(testCase(secondShard, "parses", false), 2);
+
+		assertTrue(majority.getResults().get(0).isFailed());
+	}
+
+	private void assertOutcome(Policy policy, boolean isFailed) {
+		TestCaseAggregator aggregator = new TestCaseAggregator(policy);
+		aggregator.add(testCase(firstShard, "parses", true), 0);
+		aggregator.add(testCase(firstShard, "formats", false), 1);
+		aggregator.add(testCase(secondShard, "parses", false), 2);
+		aggregator.add(testCase(secondShard, "parses", false), 3);
+
+		List<TestCaseResult> results = aggregator.getResults();
+		assertEquals(2, results.size());
+		assertEquals(2, aggregator.getDuplicates());
+		assertEquals("parses", results.get(0).getName());
+		assertEquals(isFailed, results.get(0).isFailed());
+		assertEquals(secondShard, results.get(0).getSuite());
+		assertFalse(results.get(1).isFailed());
+	}
+
+	private static TestCaseResult testCase(TestSuiteResult suite, String name, boolean isFailed) {
+		return new TestCaseResult(suite, 0, name, "io.railflow.ParserTest", isFailed);
+	}
+
+}
@@ -0,0 +1,307 @@
+package com.railflow.ahnnath.railflowcommandlinetool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.railflow.ahnnath.railflowcommandlinetool.api.TestRailsApiService;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.HttpTransport;
+import com.railflow.ahnnath.railflowcommandlinetool.api.http.TransportResponse;
+import com.railflow.ahnnath.railflowcommandlinetool.metrics.RunMetrics;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestCaseResult;
+import com.railflow.ahnnath.railflowcommandlinetool.model.TestSuiteResult;
+import com.railflow.ahnnath.railflowcommandlinetool.reconcile.TestRailReporter;
+import com.railflow.ahnnath.railflowcommandlinetool.store.TestRailCaseCache;
+
+/**
+ * Class created to test that the results of a run are sent to TestRail with
+ * bulk requests, that the case listing is cached between runs and listed at
+ * most once per run, and that TestRail failing does not fail the run.
+ *
+ * @author ahn-nath
+ * @version 1.0
+ * @since 3.0
+ *
+ */
+class TestRailReporterTest {
+
+	private static final int cases = 300;
+
+	@TempDir
+	Path cacheDir;
+
+	/**
+	 * Test asserts that a run is sent with one request per chunk of results, and
+	 * that the next run finds its cases in the cached listing.
+	 */
+	@Test
+	void sendsResultsInBulkWithCachedCases() {
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		TestRailReporter reporter = reporter(request -> {
+			String url = request.getUrl();
+			String endpoint = url.substring(url.indexOf("/api/v2/") + 8).replaceAll("[/&].*", "");
+			requests.merge(endpoint, 1, Integer::sum);
+
+			if (endpoint.equals("get_cases")) {
+				return CompletableFuture.completedFuture(response(casesPage(url.contains("offset=0"))));
+			}
+			if (endpoint.equals("add_run")) {
+				return CompletableFuture.completedFuture(response("{\"id\": 7}"));
+			}
+			return CompletableFuture.completedFuture(response(results(request.getBody().split("case_id").length - 1)));
+		});
+
+		reporter.begin("1042");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertEquals(2, requests.get("get_cases"));
+		assertEquals(1, requests.get("add_run"));
+		assertEquals(3, requests.get("add_results_for_cases"));
+
+		requests.clear();
+		reporter.begin("1042");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertEquals(null, requests.get("get_cases"));
+		assertEquals(3, requests.get("add_results_for_cases"));
+	}
+
+	/**
+	 * Test asserts that the cases of a run handled in several batches are listed
+	 * once, and that a cached listing missing a test case is listed again only
+	 * once per run.
+	 */
+	@Test
+	void listsTheCasesOncePerRun() {
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		TestRailReporter reporter = reporter(request -> {
+			String endpoint = endpoint(request.getUrl());
+			requests.merge(endpoint, 1, Integer::sum);
+
+			if (endpoint.equals("get_cases")) {
+				return CompletableFuture.completedFuture(response(casesPage(request.getUrl().contains("offset=0"))));
+			}
+			if (endpoint.equals("add_run")) {
+				return CompletableFuture.completedFuture(response("{\"id\": 7}"));
+			}
+			return CompletableFuture.completedFuture(response(results(request.getBody().split("case_id").length - 1)));
+		});
+
+		List<TestCaseResult> run = run();
+		reporter.begin("1042");
+		for (int i = 0; i < cases; i += 50) {
+			reporter.handle(run.subList(i, i + 50), null);
+		}
+		reporter.finish();
+
+		assertEquals(2, requests.get("get_cases"));
+		assertEquals(3, requests.get("add_results_for_cases"));
+
+		requests.clear();
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", "1", "1.0", 0);
+		reporter.begin("1043");
+		for (int i = 0; i < cases; i += 50) {
+			reporter.handle(run.subList(i, i + 50), null);
+			TestCaseResult untitled = new TestCaseResult(suite, i, "untitled" + i, "com.example.Tests", false);
+			reporter.handle(Collections.singletonList(untitled), null);
+		}
+		reporter.finish();
+
+		assertEquals(2, requests.get("get_cases"));
+		assertEquals(3, requests.get("add_results_for_cases"));
+	}
+
+	/**
+	 * Test asserts that the chunks after one TestRail refused are still sent.
+	 */
+	@Test
+	void sendsEveryChunkWhenOneIsRefused() {
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		AtomicInteger chunks = new AtomicInteger();
+		TestRailReporter reporter = reporter(request -> {
+			String endpoint = endpoint(request.getUrl());
+			requests.merge(endpoint, 1, Integer::sum);
+
+			if (endpoint.equals("get_cases")) {
+				return CompletableFuture.completedFuture(response(casesPage(request.getUrl().contains("offset=0"))));
+			}
+			if (endpoint.equals("add_run")) {
+				return CompletableFuture.completedFuture(response("{\"id\": 7}"));
+			}
+			if (chunks.incrementAndGet() == 1) {
+				return CompletableFuture
+						.completedFuture(new TransportResponse(500, Collections.emptyMap(), "{\"error\": \"busy\"}"));
+			}
+			return CompletableFuture.completedFuture(response(results(request.getBody().split("case_id").length - 1)));
+		});
+
+		reporter.begin("1042");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertEquals(3, requests.get("add_results_for_cases"));
+	}
+
+	/**
+	 * Test asserts that a listing TestRail refused halfway is not cached, so the
+	 * next run lists the cases again, while the cases listed are still sent.
+	 */
+	@Test
+	void doesNotCacheAnIncompleteListing() {
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		AtomicInteger secondPages = new AtomicInteger();
+		TestRailReporter reporter = reporter(request -> {
+			String endpoint = endpoint(request.getUrl());
+			requests.merge(endpoint, 1, Integer::sum);
+
+			if (endpoint.equals("get_cases")) {
+				boolean first = request.getUrl().contains("offset=0");
+				if (!first && secondPages.incrementAndGet() == 1) {
+					return CompletableFuture.completedFuture(new TransportResponse(500, Collections.emptyMap(), "{}"));
+				}
+				return CompletableFuture.completedFuture(response(casesPage(first)));
+			}
+			if (endpoint.equals("add_run")) {
+				return CompletableFuture.completedFuture(response("{\"id\": 7}"));
+			}
+			return CompletableFuture.completedFuture(response(results(request.getBody().split("case_id").length - 1)));
+		});
+
+		reporter.begin("1042");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertEquals(2, requests.get("get_cases"));
+		assertEquals(3, requests.get("add_results_for_cases"));
+
+		requests.clear();
+		reporter.begin("1043");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertEquals(2, requests.get("get_cases"));
+
+		requests.clear();
+		reporter.begin("1044");
+		reporter.handle(run(), null);
+		reporter.finish();
+
+		assertNull(requests.get("get_cases"));
+	}
+
+	/**
+	 * Test asserts that a run whose results cannot reach TestRail finishes
+	 * without an error, and that no results are sent when the run could not be
+	 * created.
+	 */
+	@Test
+	void finishesWhenTestRailFails() {
+		Map<String, Integer> requests = new ConcurrentHashMap<String, Integer>();
+		TestRailReporter unreachable = reporter(request -> {
+			requests.merge(endpoint(request.getUrl()), 1, Integer::sum);
+			CompletableFuture<TransportResponse> failed = new CompletableFuture<TransportResponse>();
+			failed.completeExceptionally(new ConnectException("Connection refused"));
+			return failed;
+		});
+
+		unreachable.begin("1042");
+		unreachable.handle(run(), null);
+		unreachable.finish();
+
+		assertEquals(1, requests.get("get_cases"));
+		assertNull(requests.get("add_run"));
+
+		requests.clear();
+		TestRailReporter refused = reporter(request -> {
+			String endpoint = endpoint(request.getUrl());
+			requests.merge(endpoint, 1, Integer::sum);
+
+			if (endpoint.equals("get_cases")) {
+				return CompletableFuture.completedFuture(response(casesPage(request.getUrl().contains("offset=0"))));
+			}
+			return CompletableFuture.completedFuture(new TransportResponse(403, Collections.emptyMap(), "{}"));
+		});
+
+		refused.begin("1042");
+		refused.handle(run(), null);
+		refused.finish();
+
+		assertEquals(1, requests.get("add_run"));
+		assertNull(requests.get("add_results_for_cases"));
+	}
+
+	private TestRailReporter reporter(HttpTransport transport) {
+		TestRailCaseCache caseCache = new TestRailCaseCache();
+		ReflectionTestUtils.setField(caseCache, "cacheDir", cacheDir.toString());
+		ReflectionTestUtils.setField(caseCache, "ttlMinutes", 60L);
+
+		TestRailsApiService service = new TestRailsApiService();
+		ReflectionTestUtils.setField(service, "apiInstanceUrl", "https://example.testrail.io/");
+		ReflectionTestUtils.setField(service, "projectId", 3);
+		ReflectionTestUtils.setField(service, "resultsPerRequest", 100);
+		ReflectionTestUtils.setField(service, "passedStatusId", 1);
+		ReflectionTestUtils.setField(service, "failedStatusId", 5);
+		ReflectionTestUtils.setField(service, "transport", transport);
+		ReflectionTestUtils.setField(service, "caseCache", caseCache);
+		ReflectionTestUtils.invokeMethod(service, "init");
+
+		TestRailReporter reporter = new TestRailReporter();
+		ReflectionTestUtils.setField(reporter, "testRailService", service);
+		ReflectionTestUtils.setField(reporter, "metrics", new RunMetrics());
+		return reporter;
+	}
+
+	private static String endpoint(String url) {
+		return url.substring(url.indexOf("/api/v2/") + 8).replaceAll("[/&].*", "");
+	}
+
+	// a test case per case, half of them titled after their class too
+	private static List<TestCaseResult> run() {
+		TestSuiteResult suite = new TestSuiteResult(0, "suite", String.valueOf(cases), "1.0", 0);
+		List<TestCaseResult> testCases = new ArrayList<TestCaseResult>();
+
+		for (int i = 0; i < cases; i++) {
+			testCases.add(new TestCaseResult(suite, i, "test" + i, "com.example.Tests", i % 10 == 0));
+		}
+		return testCases;
+	}
+
+	// the cases are listed in two pages of the paginated format
+	private static String casesPage(boolean first) {
+		StringBuilder body = new StringBuilder("{\"cases\": [");
+		int from = first ? 0 : 250;
+		int to = first ? 250 : cases;
+
+		for (int i = from; i < to; i++) {
+			String title = i % 2 == 0 ? "test" + i : "com.example.Tests.test" + i;
+			body.append(i > from ? "," : "").append(String.format("{\"id\": %s, \"title\": \"%s\"}", 1000 + i, title));
+		}
+
+		return body.append(String.format("], \"_links\": {\"next\": %s}}",
+				first ? "\"/api/v2/get_cases/3&limit=250&offset=250\"" : "null")).toString();
+	}
+
+	private static String results(int count) {
+		return "[" + String.join(",", Collections.nCopies(count, "{}")) + "]";
+	}
+
+	private static TransportResponse response(String body) {
+		return new TransportResponse(200, Collections.emptyMap(), body);
+	}
+
+}